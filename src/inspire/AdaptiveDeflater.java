@@ -0,0 +1,184 @@
+package inspire;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses file chunks with a raw {@code Deflater}, adapting the
+ * compression level to how fast the link drains compared to how fast
+ * the CPU compresses. Chunks which do not shrink are reported as
+ * incompressible, and after such a chunk compression is skipped for
+ * a growing number of chunks, so incompressible data costs little CPU.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see FrameWriter
+ * @since 18-10-2026
+ */
+class AdaptiveDeflater {
+    /**
+     * Highest number of chunks to skip after an incompressible chunk
+     */
+    private static final int MAX_SKIP = 64;
+    /**
+     * Number of compressed chunks between two level adjustments
+     */
+    private static final int ADJUST_INTERVAL = 8;
+    /**
+     * Largest compressed size, as a fraction of the raw size, worth sending
+     */
+    private static final double MAX_RATIO = 0.9;
+
+    /**
+     * Deflater reset for every chunk, so chunks can be inflated independently
+     */
+    private final Deflater deflater;
+    /**
+     * Current compression level (0 means compression is only probed now and then)
+     */
+    private int level;
+    /**
+     * Number of chunks to skip after the last incompressible chunk
+     */
+    private int skip;
+    /**
+     * Number of chunks left to skip
+     */
+    private int skipLeft;
+    /**
+     * Number of chunks compressed since the last level adjustment
+     */
+    private int chunksSinceAdjust;
+    /**
+     * Moving average of the compression speed in bytes per second
+     */
+    private double compressSpeed;
+    /**
+     * Moving average of the link speed in bytes per second
+     */
+    private double linkSpeed;
+
+    /**
+     * Constructs a deflater starting at a level
+     *
+     * @param level Initial compression level (1 to 9)
+     */
+    AdaptiveDeflater(int level) {
+        this.deflater = new Deflater(level, true);
+        this.level = level;
+    }
+
+    /**
+     * Tells whether the next chunk is to be sent raw without trying to
+     * compress it, as while backing off after an incompressible chunk;
+     * if so, the chunk counts as skipped
+     *
+     * @return {@code true} if the next chunk should be sent raw
+     */
+    boolean skipChunk() {
+        if (skipLeft > 0) {
+            skipLeft--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compresses a chunk
+     *
+     * @param raw Chunk to be compressed (position to limit); its position is left unchanged
+     * @param out Buffer receiving the compressed chunk, cleared first
+     * @return {@code true} if {@code out} holds a compressed chunk worth sending,
+     * {@code false} if the chunk should be sent raw
+     */
+    boolean compress(ByteBuffer raw, ByteBuffer out) {
+        if (skipChunk()) {
+            return false;
+        }
+        int rawLength = raw.remaining();
+        int maxLength = (int) (rawLength * MAX_RATIO);
+        out.clear();
+        out.limit(Math.min(out.capacity(), maxLength));
+        int position = raw.position();
+        long start = System.nanoTime();
+        deflater.reset();
+        deflater.setLevel(Math.max(level, 1));
+        deflater.setInput(raw);
+        deflater.finish();
+        while (!deflater.finished() && out.hasRemaining()) {
+            deflater.deflate(out);
+        }
+        boolean shrunk = deflater.finished();
+        long nanos = System.nanoTime() - start;
+        raw.position(position);
+        out.flip();
+        compressSpeed = average(compressSpeed, rawLength, nanos);
+        if (shrunk && level > 0) {
+            skip = 0;
+        } else {
+            // Incompressible (or compression switched off): back off before trying again
+            skip = Math.min(Math.max(skip * 2, 1), MAX_SKIP);
+            skipLeft = level > 0 ? skip : MAX_SKIP;
+            shrunk = false;
+        }
+        if (++chunksSinceAdjust >= ADJUST_INTERVAL) {
+            chunksSinceAdjust = 0;
+            adjustLevel();
+        }
+        return shrunk;
+    }
+
+    /**
+     * Records a write to the link, used to estimate its speed
+     *
+     * @param bytes Number of bytes written
+     * @param nanos Time taken by the write
+     */
+    void recordWrite(long bytes, long nanos) {
+        linkSpeed = average(linkSpeed, bytes, nanos);
+    }
+
+    /**
+     * Get current compression level
+     *
+     * @return Compression level (0 if compression is only probed now and then)
+     */
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * Lowers the level while compressing is slower than the link drains,
+     * and raises it while there is CPU to spare
+     */
+    private void adjustLevel() {
+        if (compressSpeed == 0 || linkSpeed == 0) {
+            return;
+        }
+        if (compressSpeed < linkSpeed && level > 0) {
+            level--;
+        } else if (compressSpeed > 4 * linkSpeed && level < Deflater.BEST_COMPRESSION) {
+            level++;
+        }
+    }
+
+    /**
+     * Updates an exponential moving average of a speed
+     *
+     * @param average Current average in bytes per second
+     * @param bytes   Bytes of the new sample
+     * @param nanos   Duration of the new sample
+     * @return New average in bytes per second
+     */
+    private static double average(double average, long bytes, long nanos) {
+        double speed = bytes * 1e9 / Math.max(nanos, 1);
+        return average == 0 ? speed : 0.75 * average + 0.25 * speed;
+    }
+
+    /**
+     * Frees the native resources of the deflater
+     */
+    void end() {
+        deflater.end();
+    }
+}
@@ -0,0 +1,23 @@
+package inspire;
+
+import java.io.IOException;
+
+/**
+ * Makes a received batch durable before its sender is told the batch is
+ * through. Until then the sender keeps the batch and sends it again, so a
+ * receiver which fails in between loses nothing.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniClient
+ * @since 18-10-2026
+ */
+interface BatchCommitter {
+    /**
+     * Called on the receiving thread once every file of the batch has been
+     * received, and before the sender is told so
+     *
+     * @throws IOException If the batch cannot be made durable, in which case the sender is not told
+     */
+    void commit() throws IOException;
+}
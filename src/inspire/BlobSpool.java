@@ -0,0 +1,258 @@
+package inspire;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content-addressed store for the files the Server holds until they
+ * are delivered. Every file is kept once as a blob named after the
+ * SHA-256 of its contents, whatever its name and however many senders
+ * sent it, with one reference for each delivery still pending. A blob
+ * is deleted when its last reference is released.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see ServerModel
+ * @see SpooledFile
+ * @since 18-10-2026
+ */
+class BlobSpool {
+    /**
+     * Name of the folder holding the blobs
+     */
+    static final String FOLDER = ".spool";
+    /**
+     * Hexadecimal digits
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Map from blob path to the number of pending deliveries of the blob
+     */
+    private final Map<String, Integer> referenceMap;
+    /**
+     * Folder holding the blobs
+     */
+    private volatile Path folder;
+
+    /**
+     * Constructs a spool inside a folder
+     *
+     * @param parentFolder Folder in which the spool folder is created
+     */
+    BlobSpool(String parentFolder) {
+        this.referenceMap = new HashMap<>();
+        setParentFolder(parentFolder);
+    }
+
+    /**
+     * Moves the spool to a new folder; blobs already stored stay where they are
+     *
+     * @param parentFolder Folder in which the spool folder is created
+     */
+    void setParentFolder(String parentFolder) {
+        this.folder = new File(parentFolder, FOLDER).toPath().toAbsolutePath();
+    }
+
+    /**
+     * Creates a digest of the kind the spool names its blobs after
+     *
+     * @return SHA-256 digest
+     * @throws IOException If SHA-256 is not available
+     */
+    static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Updates a digest with the start of a file
+     *
+     * @param messageDigest Digest to be updated
+     * @param fileChannel   Channel of the file to be read
+     * @param size          Number of bytes to be read
+     * @throws IOException If the file cannot be read or is shorter than {@code size}
+     */
+    static void update(MessageDigest messageDigest, FileChannel fileChannel, long size) throws IOException {
+        ByteBuffer buffer = BufferPool.getShared().acquireForTransfer();
+        try {
+            long count = 0;
+            while (count < size) {
+                buffer.clear();
+                if (size - count < buffer.capacity()) {
+                    buffer.limit((int) (size - count));
+                }
+                int bytesRead = fileChannel.read(buffer, count);
+                if (bytesRead < 0) {
+                    throw new IOException("File is shorter than " + size + " bytes");
+                }
+                buffer.flip();
+                messageDigest.update(buffer);
+                count += bytesRead;
+            }
+        } finally {
+            BufferPool.getShared().release(buffer);
+        }
+    }
+
+    /**
+     * Encodes a digest as a blob name
+     *
+     * @param hash Digest bytes
+     * @return Hexadecimal digest
+     */
+    static String toHex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Computes the SHA-256 of a file
+     *
+     * @param file File to be read
+     * @return Hexadecimal SHA-256 of the file's contents
+     * @throws IOException If the file cannot be read
+     */
+    static String digest(File file) throws IOException {
+        MessageDigest messageDigest = newDigest();
+        FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            update(messageDigest, fileChannel, fileChannel.size());
+        } finally {
+            fileChannel.close();
+        }
+        return toHex(messageDigest.digest());
+    }
+
+    /**
+     * Tells whether a file is a blob of a spool, which is named after its digest
+     *
+     * @param file File to be checked
+     * @return {@code true} if the file's name is its digest
+     */
+    static boolean isBlob(File file) {
+        File parent = file.getParentFile();
+        return parent != null && FOLDER.equals(parent.getName()) && file.getName().length() == 64;
+    }
+
+    /**
+     * Takes a received file into the spool. The file is moved in if its
+     * contents are new, or else deleted in favour of the blob already stored.
+     *
+     * @param file       Received file, which is gone from its place afterwards
+     * @param references Number of pending deliveries of the file
+     * @return The blob holding the file's contents ({@code null} if there are no references)
+     * @throws IOException If the file cannot be read or moved
+     */
+    File add(File file, int references) throws IOException {
+        if (references <= 0) {
+            Files.deleteIfExists(file.toPath());
+            return null;
+        }
+        Path blob = folder.resolve(digest(file));
+        synchronized (referenceMap) {
+            Integer count = referenceMap.get(blob.toString());
+            if (count == null && !Files.isRegularFile(blob)) {
+                Files.createDirectories(folder);
+                try {
+                    Files.move(file.toPath(), blob, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(file.toPath(), blob);
+                }
+            } else {
+                // Same contents already stored
+                Files.delete(file.toPath());
+            }
+            referenceMap.put(blob.toString(), (count == null ? 0 : count) + references);
+        }
+        return blob.toFile();
+    }
+
+    /**
+     * Releases one reference to a blob, deleting the blob with its last reference
+     *
+     * @param blob Blob returned by {@link #add(File, int)}
+     * @return {@code true} if the blob has been deleted
+     */
+    boolean release(File blob) {
+        synchronized (referenceMap) {
+            Integer count = referenceMap.get(blob.getPath());
+            if (count == null) {
+                return false;
+            }
+            if (count > 1) {
+                referenceMap.put(blob.getPath(), count - 1);
+                return false;
+            }
+            referenceMap.remove(blob.getPath());
+            blob.delete();
+            return true;
+        }
+    }
+
+    /**
+     * Takes back a blob stored before a restart, with its pending deliveries
+     *
+     * @param blob       Blob in the spool folder
+     * @param references Number of pending deliveries of the blob
+     */
+    void restore(File blob, int references) {
+        synchronized (referenceMap) {
+            Integer count = referenceMap.get(blob.getPath());
+            referenceMap.put(blob.getPath(), (count == null ? 0 : count) + references);
+        }
+    }
+
+    /**
+     * Deletes the blobs in the spool folder which have no pending deliveries,
+     * as left behind by a restart between a delivery and its release
+     *
+     * @return Number of blobs deleted
+     */
+    int removeUnreferenced() {
+        File[] blobs = folder.toFile().listFiles();
+        if (blobs == null) {
+            return 0;
+        }
+        int removed = 0;
+        synchronized (referenceMap) {
+            for (File blob : blobs) {
+                if (!referenceMap.containsKey(blob.getPath()) && blob.delete()) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Get number of pending deliveries of a blob
+     *
+     * @param blob Blob returned by {@link #add(File, int)}
+     * @return Number of references (0 once the blob has been deleted)
+     */
+    int getReferences(File blob) {
+        synchronized (referenceMap) {
+            Integer count = referenceMap.get(blob.getPath());
+            return count == null ? 0 : count;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package inspire;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+/**
+ * Test for {@link BlobSpool} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class BlobSpoolTest {
+    private File folder;
+    private BlobSpool spool;
+
+    private File createFile(String name, String data) throws Exception {
+        File file = new File(folder, name);
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(data.getBytes("UTF-8"));
+        fos.close();
+        return file;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("__BlobSpoolTest__").toFile();
+        spool = new BlobSpool(folder.getPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] blobs = new File(folder, BlobSpool.FOLDER).listFiles();
+        if (blobs != null) {
+            for (File blob : blobs) {
+                blob.delete();
+            }
+        }
+        new File(folder, BlobSpool.FOLDER).delete();
+        folder.delete();
+    }
+
+    @Test
+    public void deduplicate() throws Exception {
+        File first = createFile("bundle.tar", "telemetry");
+        File second = createFile("copy.tar", "telemetry");
+        File blob = spool.add(first, 2);
+        Assert.assertEquals(spool.add(second, 3), blob);
+        Assert.assertFalse(first.exists());
+        Assert.assertFalse(second.exists());
+        Assert.assertEquals(spool.getReferences(blob), 5);
+        Assert.assertEquals(new File(folder, BlobSpool.FOLDER).list().length, 1);
+        Assert.assertEquals(new String(Files.readAllBytes(blob.toPath()), "UTF-8"), "telemetry");
+        Assert.assertFalse(spool.add(createFile("bundle.tar", "other telemetry"), 1).equals(blob));
+    }
+
+    @Test
+    public void release() throws Exception {
+        File blob = spool.add(createFile("bundle.tar", "telemetry"), 2);
+        spool.release(blob);
+        Assert.assertTrue(blob.exists());
+        spool.release(blob);
+        Assert.assertFalse(blob.exists());
+        Assert.assertEquals(spool.getReferences(blob), 0);
+        Assert.assertNull(spool.add(createFile("nobody.tar", "telemetry"), 0));
+        Assert.assertFalse(new File(folder, "nobody.tar").exists());
+    }
+}
@@ -0,0 +1,203 @@
+package inspire;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe pool of direct transfer buffers. One shared
+ * instance is used by every {@code MiniServer} and {@code MiniClient}
+ * in the JVM, so a transfer reuses a buffer instead of allocating
+ * a new one per file. The shared pool is configured with the
+ * {@code inspire.bufferSize}, {@code inspire.bufferCount} and
+ * {@code inspire.bufferPoolBlocking} system properties. The disk writers
+ * of the receivers queue bytes in smaller buffers of a pool of their own,
+ * sized with {@code inspire.writeBufferCount}, so that the buffers a
+ * receiver holds for its queue are not taken from the transfers.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see FrameReader
+ * @since 18-10-2026
+ */
+class BufferPool {
+    /**
+     * Pool shared by all transfers
+     */
+    private static final BufferPool sharedPool = new BufferPool(
+            Integer.getInteger("inspire.bufferSize", 1024 * 1024),
+            Integer.getInteger("inspire.bufferCount", 32),
+            Boolean.getBoolean("inspire.bufferPoolBlocking"));
+    /**
+     * Pool of the buffers queued for the disk by all receivers
+     */
+    private static final BufferPool writeQueuePool = new BufferPool(Protocol.CHUNK_SIZE,
+            Integer.getInteger("inspire.writeBufferCount", 128), false);
+
+    /**
+     * Capacity of each buffer
+     */
+    private final int bufferSize;
+    /**
+     * Maximum number of pooled buffers
+     */
+    private final int bufferCount;
+    /**
+     * Flag to indicate whether {@code acquire} waits for a buffer when all are in use,
+     * instead of allocating one outside the pool
+     */
+    private final boolean blocking;
+    /**
+     * Buffers which are free to be acquired
+     */
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    /**
+     * Number of pooled buffers allocated so far
+     */
+    private final AtomicInteger allocated;
+    /**
+     * Number of requests served with a free pooled buffer
+     */
+    private final AtomicLong hits;
+    /**
+     * Number of requests which had to allocate or wait for a buffer
+     */
+    private final AtomicLong misses;
+
+    /**
+     * Constructs an empty pool; buffers are allocated lazily
+     *
+     * @param bufferSize  Capacity of each buffer
+     * @param bufferCount Maximum number of pooled buffers
+     * @param blocking    {@code true} to wait for a buffer when all are in use,
+     *                    {@code false} to allocate an unpooled one
+     */
+    BufferPool(int bufferSize, int bufferCount, boolean blocking) {
+        this.bufferSize = bufferSize;
+        this.bufferCount = bufferCount;
+        this.blocking = blocking;
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        this.allocated = new AtomicInteger();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Get the pool shared by all transfers in the JVM
+     *
+     * @return Shared pool
+     */
+    static BufferPool getShared() {
+        return sharedPool;
+    }
+
+    /**
+     * Get the pool of the buffers queued for the disk in the JVM
+     *
+     * @return Pool of chunk-sized buffers
+     */
+    static BufferPool getWriteQueue() {
+        return writeQueuePool;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool
+     *
+     * @return A buffer of {@code getBufferSize()} bytes
+     * @throws InterruptedException If interrupted while waiting in blocking mode
+     */
+    ByteBuffer acquire() throws InterruptedException {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            hits.incrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+        misses.incrementAndGet();
+        // Grow the pool up to its bound
+        while (true) {
+            int count = allocated.get();
+            if (count >= bufferCount) {
+                break;
+            }
+            if (allocated.compareAndSet(count, count + 1)) {
+                return ByteBuffer.allocateDirect(bufferSize);
+            }
+        }
+        if (blocking) {
+            buffer = freeBuffers.take();
+            buffer.clear();
+            return buffer;
+        }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, treating an interrupt
+     * while waiting as an I/O failure of the transfer
+     *
+     * @return A buffer of {@code getBufferSize()} bytes
+     * @throws InterruptedIOException If interrupted while waiting in blocking mode
+     */
+    ByteBuffer acquireForTransfer() throws InterruptedIOException {
+        try {
+            return acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a transfer buffer");
+        }
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers of a different size, and
+     * buffers beyond the bound of the pool, are left to the garbage collector.
+     *
+     * @param buffer Buffer previously returned by {@code acquire}
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize && buffer.isDirect()) {
+            freeBuffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Get the capacity of each buffer
+     *
+     * @return Buffer capacity in bytes
+     */
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Get number of requests served with a free pooled buffer
+     *
+     * @return Hit count
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get number of requests which had to allocate or wait for a buffer
+     *
+     * @return Miss count
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get string representation
+     *
+     * @return String representation
+     */
+    @Override
+    public String toString() {
+        return "BufferPool[size=" + bufferSize + ", count=" + bufferCount + ", free=" + freeBuffers.size()
+                + ", hits=" + hits.get() + ", misses=" + misses.get() + "]";
+    }
+}
@@ -0,0 +1,73 @@
+package inspire;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Test for {@link BufferPool} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class BufferPoolTest {
+    private BufferPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new BufferPool(1024, 2, false);
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        ByteBuffer buffer = pool.acquire();
+        Assert.assertEquals(buffer.capacity(), 1024);
+        buffer.put((byte) 1);
+        pool.release(buffer);
+        ByteBuffer reused = pool.acquire();
+        Assert.assertSame(reused, buffer);
+        Assert.assertEquals(reused.position(), 0);
+        Assert.assertEquals(pool.getHits(), 1);
+        Assert.assertEquals(pool.getMisses(), 1);
+    }
+
+    @Test
+    public void fallback() throws Exception {
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        ByteBuffer third = pool.acquire();
+        Assert.assertEquals(pool.getMisses(), 3);
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        pool.acquire();
+        pool.acquire();
+        pool.acquire();
+        // Only two buffers were kept, so the third request misses again
+        Assert.assertEquals(pool.getHits(), 2);
+        Assert.assertEquals(pool.getMisses(), 4);
+    }
+
+    @Test
+    public void blocking() throws Exception {
+        final BufferPool blockingPool = new BufferPool(1024, 1, true);
+        final ByteBuffer buffer = blockingPool.acquire();
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                blockingPool.release(buffer);
+            }
+        });
+        releaser.start();
+        Assert.assertSame(blockingPool.acquire(), buffer);
+        releaser.join();
+    }
+}
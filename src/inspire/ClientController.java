@@ -92,7 +92,7 @@ class ClientController {
      */
     private static void autoServerConnector() {
         // A new thread for auto connections
-        Thread thread = new Thread(new Runnable() {
+        TaskExecutor.start(new Runnable() {
             @Override
             public void run() {
                 // Get auto server host name list file from the user
@@ -119,6 +119,5 @@ class ClientController {
                 }
             }
         });
-        thread.start();
     }
 }
\ No newline at end of file
@@ -2,10 +2,14 @@ package inspire;
 
 import java.io.*;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The actual client class which is responsible for performing
@@ -19,7 +23,7 @@ import java.util.*;
  * @see ClientController
  * @since 20-12-2016
  */
-class ClientModel extends Observable implements Runnable {
+class ClientModel extends EventSource implements Runnable {
     /**
      * Notifies receiving of client list from the server
      */
@@ -56,6 +60,23 @@ class ClientModel extends Observable implements Runnable {
      * Notifies end of a transfer sequence
      */
     static final char FILES_SENT = '8';
+    /**
+     * Codes of the events in the notification strings of {@code Observer}s
+     */
+    private static final Map<TransferEvent.Type, Character> notificationCodes =
+            new EnumMap<>(TransferEvent.Type.class);
+
+    static {
+        notificationCodes.put(TransferEvent.Type.LIST_CHANGED, LIST_CHANGED);
+        notificationCodes.put(TransferEvent.Type.DISCONNECTED, DISCONNECTED);
+        notificationCodes.put(TransferEvent.Type.TRANSFER_STARTED, TRANSFER_STARTED);
+        notificationCodes.put(TransferEvent.Type.FILE_RECEIVE_STARTED, FILE_RECEIVE_STARTED);
+        notificationCodes.put(TransferEvent.Type.FILE_RECEIVE_FINISHED, FILE_RECEIVE_FINISHED);
+        notificationCodes.put(TransferEvent.Type.FILES_RECEIVED, FILES_RECEIVED);
+        notificationCodes.put(TransferEvent.Type.FILE_SEND_STARTED, FILE_SEND_STARTED);
+        notificationCodes.put(TransferEvent.Type.FILE_SEND_FINISHED, FILE_SEND_FINISHED);
+        notificationCodes.put(TransferEvent.Type.FILES_SENT, FILES_SENT);
+    }
     /**
      * Port to connect to a server
      */
@@ -64,6 +85,11 @@ class ClientModel extends Observable implements Runnable {
      * Port to transfer/receive files
      */
     private static final int dataPort = 9600;
+    /**
+     * Time in milliseconds to wait for the server to say files are pending
+     * before connecting to the data port all the same, in case the signal was lost
+     */
+    private static final int fallbackPollInterval = 60000;
     /**
      * Stores client list sent by the server
      */
@@ -93,6 +119,23 @@ class ClientModel extends Observable implements Runnable {
      * Reference to socket's input stream
      */
     private BufferedReader bufferedReader;
+    /**
+     * Slot the server gave this client, from which its upload port is
+     * derived (0 until told, in which case the list order is used)
+     */
+    private volatile int mySlot;
+    /**
+     * Version of the client list held (0 until a whole list is received)
+     */
+    private volatile long listVersion;
+    /**
+     * Permits released when the server says files are pending for this client
+     */
+    private final Semaphore pendingSignal = new Semaphore(0);
+    /**
+     * Port of the server's data port, which uploads are also counted from
+     */
+    private final int serverDataPort;
 
     /**
      * Constructs a client connected to a server
@@ -101,6 +144,20 @@ class ClientModel extends Observable implements Runnable {
      * @throws IOException If the connection cannot be made
      */
     ClientModel(String serverHostName) throws IOException {
+        this(serverHostName, controlPort, dataPort);
+    }
+
+    /**
+     * Constructs a client connected to a server listening on the given ports
+     *
+     * @param serverHostName    Host name of the server to which client is connected
+     * @param serverControlPort Control port of the server
+     * @param serverDataPort    Data port of the server, which upload ports are counted from
+     * @throws IOException If the connection cannot be made
+     */
+    ClientModel(String serverHostName, int serverControlPort, int serverDataPort) throws IOException {
+        super(notificationCodes);
+        this.serverDataPort = serverDataPort;
         // Initialise client parameters
         try {
             this.clientList = new ArrayList<>();
@@ -113,21 +170,41 @@ class ClientModel extends Observable implements Runnable {
         }
 
         // Connect to the server via a socket
-        Socket socket = new Socket(serverHostName, controlPort);
+        Socket socket = new Socket(serverHostName, serverControlPort);
         // Initialise input and output streams
         bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
         printWriter = new PrintWriter(socket.getOutputStream());
+        // Uploads are taken at the port of this client's slot, if the server gives it one
+        printWriter.println("slots");
+        printWriter.flush();
         // A new thread to accept files from the server
-        Thread clientThread = new Thread(this);
-        clientThread.start();
+        TaskExecutor.start(this);
         // A new thread to read client list sent by the server
-        Thread listReaderThread = new Thread(new Runnable() {
+        TaskExecutor.start(new Runnable() {
             @Override
             public void run() {
                 try {
                     while (true) {
                         String string = bufferedReader.readLine();
-                        if (string != null && string.startsWith("SIZE")) {
+                        if (string == null) {
+                            // Control connection closed
+                            break;
+                        }
+                        if (string.startsWith("PENDING")) {
+                            // Files are waiting on the server
+                            pendingSignal.release();
+                        } else if (string.startsWith("SLOT")) {
+                            mySlot = Integer.parseInt(string.substring(4).trim());
+                        } else if (string.startsWith("ROSTER")) {
+                            // The server's list has changed
+                            if (Long.parseLong(string.substring(6).trim()) != listVersion) {
+                                getList();
+                            }
+                        } else if (string.startsWith("VERSION")) {
+                            listVersion = Long.parseLong(string.substring(7).trim());
+                        } else if (string.startsWith("DELTA")) {
+                            readChanges(string);
+                        } else if (string.startsWith("SIZE")) {
                             clientList.clear();
                             StringTokenizer stringTokenizer = new StringTokenizer(string);
                             stringTokenizer.nextToken();
@@ -137,8 +214,7 @@ class ClientModel extends Observable implements Runnable {
                                 String clientHostName = bufferedReader.readLine();
                                 clientList.add(new Person(clientName, clientHostName));
                             }
-                            setChanged();
-                            notifyObservers(String.valueOf(LIST_CHANGED));
+                            publish(TransferEvent.of(TransferEvent.Type.LIST_CHANGED));
                         }
                     }
                 } catch (IOException e) {
@@ -146,7 +222,43 @@ class ClientModel extends Observable implements Runnable {
                 }
             }
         });
-        listReaderThread.start();
+    }
+
+    /**
+     * Reads the changes to the client list since the version held and
+     * applies them, or asks for the whole list if they are from another version
+     *
+     * @param header Header line, {@code DELTA <from> <to> <count>}
+     * @throws IOException If the changes cannot be read
+     */
+    private void readChanges(String header) throws IOException {
+        StringTokenizer stringTokenizer = new StringTokenizer(header);
+        stringTokenizer.nextToken();
+        long from = Long.parseLong(stringTokenizer.nextToken());
+        long to = Long.parseLong(stringTokenizer.nextToken());
+        int count = Integer.parseInt(stringTokenizer.nextToken());
+        boolean applies = from == listVersion;
+        for (int i = 0; i < count; i++) {
+            String operation = bufferedReader.readLine();
+            String clientName = "ADD".equals(operation) ? bufferedReader.readLine() : null;
+            String clientHostName = bufferedReader.readLine();
+            if (applies) {
+                // Persons are equal by host name
+                clientList.remove(new Person(null, clientHostName));
+                if (clientName != null) {
+                    clientList.add(new Person(clientName, clientHostName));
+                }
+            }
+        }
+        if (!applies) {
+            listVersion = 0;
+            getList();
+            return;
+        }
+        listVersion = to;
+        if (count > 0) {
+            publish(TransferEvent.of(TransferEvent.Type.LIST_CHANGED));
+        }
     }
 
     /**
@@ -178,11 +290,15 @@ class ClientModel extends Observable implements Runnable {
     }
 
     /**
-     * Used to request list of clients from the server
+     * Used to request list of clients from the server: the changes since
+     * the version held if there is one, else the whole list
      */
     void getList() {
-        printWriter.println("getlist");
-        printWriter.flush();
+        long version = listVersion;
+        synchronized (printWriter) {
+            printWriter.println(version > 0 ? "getlist " + version : "getlist");
+            printWriter.flush();
+        }
     }
 
     /**
@@ -192,44 +308,59 @@ class ClientModel extends Observable implements Runnable {
      * @param receiverIndices Indices of receivers in the {@code clientList}
      *                        to which files are to be transferred
      */
-    void send(List<File> fileList, int[] receiverIndices) {
+    void send(final List<File> fileList, int[] receiverIndices) {
         try {
             // Construct the list of receivers for this operation
-            List<String> receiverList = new ArrayList<>();
+            final List<String> receiverList = new ArrayList<>();
             for (int i : receiverIndices) {
                 receiverList.add(clientList.get(i).getHostName());
             }
-            // Connect to the appropriate server port
-            ServerSocket serverSocket = new ServerSocket(dataPort + clientList.indexOf(new Person(null, myHostName))
-                    + 1);
-            Socket socket = serverSocket.accept();
-            setChanged();
-            notifyObservers(String.valueOf(TRANSFER_STARTED));
-            // A new thread to transfer the files to the server
-            MiniServer miniServer = new MiniServer(socket, fileList, receiverList, serverSocket, false);
-            Thread miniServerThread = new Thread(miniServer);
-            // Observer transfer for progress monitoring
-            miniServer.addObserver(new Observer() {
+            // Connect to the appropriate server port (opened via a channel
+            // so that the accepted socket supports zero-copy sends)
+            int slot = mySlot > 0 ? mySlot : clientList.indexOf(new Person(null, myHostName)) + 1;
+            final ServerSocket serverSocket = ServerSocketChannel.open().socket();
+            serverSocket.bind(new InetSocketAddress(serverDataPort + slot));
+            // Tell the server to connect now rather than at its next poll
+            synchronized (printWriter) {
+                printWriter.println("ready");
+                printWriter.flush();
+            }
+            // Passes on the progress of the transfer
+            final TransferListener listener = new TransferListener() {
                 @Override
-                public void update(Observable observable, Object o) {
-                    String action = (String) o;
-                    switch (action.charAt(0)) {
-                        case MiniServer.FILE_SEND_STARTED:
-                            setChanged();
-                            notifyObservers(String.valueOf(FILE_SEND_STARTED) + " " + action.substring(2));
-                            break;
-                        case MiniServer.FILE_SEND_FINISHED:
-                            setChanged();
-                            notifyObservers(String.valueOf(FILE_SEND_FINISHED) + " " + action.substring(2));
-                            break;
-                        case MiniServer.FILES_SENT:
-                            setChanged();
-                            notifyObservers(String.valueOf(FILES_SENT) + " " + action.substring(2));
+                public void onEvent(TransferEvent event) {
+                    switch (event.getType()) {
+                        case FILE_SEND_STARTED:
+                        case FILE_SEND_FINISHED:
+                        case FILES_SENT:
+                        case PROGRESS:
+                            publish(event);
                             break;
                     }
                 }
+            };
+            // A new thread to transfer the files to the server, which is
+            // let in again (and resumes the batch) if the transfer breaks off
+            TaskExecutor.start(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            Socket socket = serverSocket.accept();
+                            publish(TransferEvent.of(TransferEvent.Type.TRANSFER_STARTED));
+                            MiniServer miniServer = new MiniServer(socket, fileList, receiverList, serverSocket,
+                                    false);
+                            miniServer.addListener(listener);
+                            miniServer.run();
+                            if (miniServer.isCompleted()) {
+                                break;
+                            }
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
             });
-            miniServerThread.start();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -242,41 +373,34 @@ class ClientModel extends Observable implements Runnable {
     public void run() {
         while (true) {
             try {
-                Socket socket = new Socket(serverHostName, dataPort);
+                long start = System.nanoTime();
+                Socket socket = MiniClient.connect(serverHostName, serverDataPort);
                 MiniClient miniClient = new MiniClient(socket, downloadsFolder);
-                miniClientThread = new Thread(miniClient);
+                miniClient.setConnectTime((System.nanoTime() - start) / 1000000);
                 // Monitor thread for messages
-                miniClient.addObserver(new Observer() {
+                miniClient.addListener(new TransferListener() {
                     @Override
-                    public void update(Observable observable, Object o) {
-                        String action = (String) o;
-                        switch (action.charAt(0)) {
-                            case MiniClient.FILE_RECEIVE_STARTED:
-                                setChanged();
-                                notifyObservers(String.valueOf(ClientModel.FILE_RECEIVE_STARTED) + " "
-                                        + action.substring(2));
-                                break;
-                            case MiniClient.FILE_RECEIVE_FINISHED:
-                                setChanged();
-                                notifyObservers(String.valueOf(ClientModel.FILE_RECEIVE_FINISHED) + " "
-                                        + action.substring(2));
-                                break;
-                            case MiniClient.FILES_RECEIVED:
-                                setChanged();
-                                notifyObservers(String.valueOf(ClientModel.FILES_RECEIVED));
+                    public void onEvent(TransferEvent event) {
+                        switch (event.getType()) {
+                            case FILE_RECEIVE_STARTED:
+                            case FILE_RECEIVE_FINISHED:
+                            case FILES_RECEIVED:
+                            case PROGRESS:
+                                publish(event);
                                 break;
                         }
                     }
                 });
-                miniClientThread.start();
-                Thread.sleep(4000);
+                miniClientThread = TaskExecutor.start(miniClient);
+                miniClientThread.join();
+                // Until the server says files are pending; polling is only the fallback for a lost signal
+                pendingSignal.tryAcquire(fallbackPollInterval, TimeUnit.MILLISECONDS);
+                pendingSignal.drainPermits();
             } catch (IOException e) {
                 // Client has been disconnected from the server
-                setChanged();
-                notifyObservers(String.valueOf(DISCONNECTED));
+                publish(TransferEvent.of(TransferEvent.Type.DISCONNECTED));
                 clientList.clear();
-                setChanged();
-                notifyObservers(String.valueOf(LIST_CHANGED));
+                publish(TransferEvent.of(TransferEvent.Type.LIST_CHANGED));
                 break;
             } catch (InterruptedException e) {
                 e.printStackTrace();
@@ -1,12 +1,13 @@
 package inspire;
 
 import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -42,10 +43,6 @@ class ClientView extends Observable {
      * Notifies disconnection from the server
      */
     static final char DISCONNECTED_CLIENT = '4';
-    /**
-     * Format for log history timestamping
-     */
-    private static final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("h:mm a");
 
     /**
      * Start client button
@@ -90,7 +87,11 @@ class ClientView extends Observable {
     /**
      * Log of the application activity
      */
-    private JTextArea logHistory;
+    private JList<String> logHistory;
+    /**
+     * Latest entries of the log, and the status bar, updated on the event dispatch thread
+     */
+    private final LogModel logModel;
     /**
      * Clear log history
      */
@@ -176,13 +177,32 @@ class ClientView extends Observable {
         clearLogButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent actionEvent) {
-                logHistory.setText("");
+                logModel.clear();
             }
         });
         // Initialise client list table, file list and status bar
         clientListTable.setModel(new CustomTableModel(new ArrayList<>()));
         fileList.setModel(new DefaultListModel());
         statusBar.setText("");
+        logModel = new LogModel(LogModel.DEFAULT_CAPACITY, statusBar);
+        logHistory.setModel(logModel);
+        // Every row the same height, so that only the rows in view are measured
+        logHistory.setFixedCellHeight(logHistory.getFontMetrics(logHistory.getFont()).getHeight() + 2);
+        // Keep the latest entry in view
+        logModel.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                logHistory.ensureIndexIsVisible(e.getIndex1());
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+            }
+        });
         // Display the GUI frame
         JFrame frame = new JFrame("Client");
         frame.setContentPane(rootPanel);
@@ -330,40 +350,43 @@ class ClientView extends Observable {
             return;
         }
         setStatus("Connected to '" + clientModel.getServerHostName() + "'");
-        clientModel.addObserver(new Observer() {
+        clientModel.addListener(new TransferListener() {
             @Override
-            public void update(Observable observable, Object o) {
-                String action = (String) o;
-                switch (action.charAt(0)) {
-                    case ClientModel.LIST_CHANGED:
+            public void onEvent(TransferEvent event) {
+                switch (event.getType()) {
+                    case LIST_CHANGED:
                         clientListTable.setModel(new CustomTableModel(clientModel.getClientList()));
                         break;
-                    case ClientModel.DISCONNECTED:
+                    case DISCONNECTED:
                         setStatus("Disconnected from '" + clientModel.getServerHostName() + "'");
                         setChanged();
                         notifyObservers(String.valueOf(DISCONNECTED_CLIENT));
                         break;
-                    case ClientModel.TRANSFER_STARTED:
+                    case TRANSFER_STARTED:
                         fileList.setModel(new DefaultListModel());
                         break;
-                    case ClientModel.FILE_RECEIVE_STARTED:
-                        setStatus("Receiving " + action.substring(2));
+                    case FILE_RECEIVE_STARTED:
+                        setStatus("Receiving " + event.getSubject());
                         break;
-                    case ClientModel.FILE_RECEIVE_FINISHED:
-                        setStatus("Received " + action.substring(2));
+                    case FILE_RECEIVE_FINISHED:
+                        setStatus("Received " + event.getSubject());
                         break;
-                    case ClientModel.FILES_RECEIVED:
+                    case FILES_RECEIVED:
                         setStatus("Received all files from '" + clientModel.getServerHostName() + "'");
                         break;
-                    case ClientModel.FILE_SEND_STARTED:
-                        setStatus("Transferring " + action.substring(2));
+                    case FILE_SEND_STARTED:
+                        setStatus("Transferring " + event.getSubject());
                         break;
-                    case ClientModel.FILE_SEND_FINISHED:
-                        setStatus("Transferred " + action.substring(2));
+                    case FILE_SEND_FINISHED:
+                        setStatus("Transferred " + event.getSubject());
                         break;
-                    case ClientModel.FILES_SENT:
+                    case FILES_SENT:
                         setStatus("Transferred all files to '" + clientModel.getServerHostName() + "'");
                         break;
+                    case PROGRESS:
+                        // Too frequent for the log
+                        logModel.setStatus(((ProgressEvent) event).describe());
+                        break;
                 }
             }
         });
@@ -375,8 +398,7 @@ class ClientView extends Observable {
      * @param status Status of the application
      */
     private void setStatus(String status) {
-        statusBar.setText(status);
-        logHistory.append(simpleDateFormat.format(new Date()) + "   " + status + "\n");
+        logModel.log(status);
     }
 
     /**
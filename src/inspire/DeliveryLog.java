@@ -0,0 +1,569 @@
+package inspire;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of the Server's pending deliveries, kept in a
+ * {@code .journal} folder of the downloads folder so that files in the
+ * spool reach their receivers even if the Server restarts. Every file
+ * taken into the spool is logged with its blob, sender and receivers,
+ * and every delivery with its receiver. Records are appended to a log
+ * file; callers which need their records on disk wait in {@link #sync(long)},
+ * where one of them writes and forces everything appended so far for
+ * all of them. From time to time the pending deliveries are written
+ * out as a snapshot and the log starts over.
+ * <p>
+ * Replaying a record twice leaves the same state, so a crash between
+ * writing a snapshot and emptying the log loses nothing. Callers update
+ * their own state before logging a change, so that a snapshot never
+ * misses a record logged before it.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see ServerModel
+ * @see BlobSpool
+ * @since 18-10-2026
+ */
+class DeliveryLog {
+    /**
+     * Name of the folder holding the log
+     */
+    static final String FOLDER = ".journal";
+    /**
+     * Name of the log file
+     */
+    private static final String LOG_FILE = "deliveries.log";
+    /**
+     * Name of the snapshot file
+     */
+    private static final String SNAPSHOT_FILE = "deliveries.snapshot";
+    /**
+     * Record of a file taken into the spool, with its receivers
+     */
+    private static final byte ADDED = 1;
+    /**
+     * Record of a file delivered to one receiver
+     */
+    private static final byte DELIVERED = 2;
+    /**
+     * Default size the log may grow to before it is compacted
+     */
+    private static final long DEFAULT_COMPACTION_SIZE = 64L * 1024 * 1024;
+    /**
+     * Size of the read buffer used during recovery
+     */
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+    /**
+     * Largest record payload accepted during recovery; a longer length is torn
+     */
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    /**
+     * Folder holding the log and the snapshot
+     */
+    private final Path folder;
+    /**
+     * Size the log may grow to before it is compacted
+     */
+    private final long compactionSize;
+    /**
+     * Payload of the record being appended
+     */
+    private final ByteArrayOutputStream record;
+    /**
+     * Writer of {@code record}
+     */
+    private final DataOutputStream recordOut;
+    /**
+     * Records appended but not yet written to the log
+     */
+    private ByteArrayOutputStream pending;
+    /**
+     * Writer of {@code pending}
+     */
+    private DataOutputStream pendingOut;
+    /**
+     * Channel of the log file ({@code null} until recovered)
+     */
+    private FileChannel logChannel;
+    /**
+     * Size of the log file
+     */
+    private long logSize;
+    /**
+     * Number of records appended
+     */
+    private long appended;
+    /**
+     * Number of records forced to disk
+     */
+    private long synced;
+    /**
+     * Flag to indicate whether a caller is writing the log right now
+     */
+    private boolean flushing;
+    /**
+     * Error which stopped the log from being written ({@code null} if none)
+     */
+    private IOException failure;
+
+    /**
+     * Constructs a log inside a folder
+     *
+     * @param parentFolder Folder in which the log folder is created
+     */
+    DeliveryLog(String parentFolder) {
+        this(parentFolder, DEFAULT_COMPACTION_SIZE);
+    }
+
+    /**
+     * Constructs a log inside a folder
+     *
+     * @param parentFolder   Folder in which the log folder is created
+     * @param compactionSize Size in bytes the log may grow to before it is compacted
+     */
+    DeliveryLog(String parentFolder, long compactionSize) {
+        this.folder = new File(parentFolder, FOLDER).toPath().toAbsolutePath();
+        this.compactionSize = compactionSize;
+        this.record = new ByteArrayOutputStream();
+        this.recordOut = new DataOutputStream(record);
+        this.pending = new ByteArrayOutputStream();
+        this.pendingOut = new DataOutputStream(pending);
+    }
+
+    /**
+     * Reads the snapshot and the log into an index and opens the log for
+     * appending. A record torn by a crash ends the log and is cut off.
+     *
+     * @param pendingIndex Index to which the pending deliveries are added
+     * @throws IOException If the log cannot be read or opened
+     */
+    synchronized void recover(PendingIndex pendingIndex) throws IOException {
+        Files.createDirectories(folder);
+        Map<String, Object> internMap = new HashMap<>();
+        Path snapshotPath = folder.resolve(SNAPSHOT_FILE);
+        if (Files.isRegularFile(snapshotPath)) {
+            replay(snapshotPath, pendingIndex, internMap);
+        }
+        Path logPath = folder.resolve(LOG_FILE);
+        long validSize = Files.isRegularFile(logPath) ? replay(logPath, pendingIndex, internMap) : 0;
+        logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (logChannel.size() > validSize) {
+            logChannel.truncate(validSize);
+            logChannel.force(false);
+        }
+        logChannel.position(validSize);
+        logSize = validSize;
+    }
+
+    /**
+     * Applies the records of a file to the pending deliveries
+     *
+     * @param path       File to be read
+     * @param pendingIndex Index of the pending deliveries
+     * @param internMap    Map from each string read so far (blob paths, host names) to one shared copy
+     * @return Number of bytes of valid records at the start of the file
+     * @throws IOException If the file cannot be read
+     */
+    private static long replay(Path path, PendingIndex pendingIndex, Map<String, Object> internMap)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path),
+                READ_BUFFER_SIZE));
+        CRC32C crc = new CRC32C();
+        Payload payload = new Payload();
+        long validSize = 0;
+        try {
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    payload.reset(length);
+                    in.readFully(payload.bytes, 0, length);
+                } catch (EOFException e) {
+                    // Torn by a crash, or the end of the file
+                    break;
+                }
+                crc.reset();
+                crc.update(payload.bytes, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                apply(payload, pendingIndex, internMap);
+                validSize += 8 + length;
+            }
+        } finally {
+            in.close();
+        }
+        return validSize;
+    }
+
+    /**
+     * Applies one record to the pending deliveries
+     *
+     * @param payload      Payload of the record
+     * @param pendingIndex Index of the pending deliveries
+     * @param internMap    Map from each string read so far (blob paths, host names) to one shared copy
+     * @throws IOException If the record is malformed
+     */
+    private static void apply(Payload payload, PendingIndex pendingIndex, Map<String, Object> internMap)
+            throws IOException {
+        byte type = payload.readByte();
+        String name = payload.readUTF();
+        String blobPath = payload.readUTF();
+        File blob = (File) internMap.get(blobPath);
+        if (blob == null) {
+            blob = new File(blobPath);
+            internMap.put(blobPath, blob);
+        }
+        if (type == ADDED) {
+            SpooledFile spooledFile = new SpooledFile(name, blob, intern(payload.readUTF(), internMap));
+            int receivers = payload.readInt();
+            for (int i = 0; i < receivers; i++) {
+                pendingIndex.add(intern(payload.readUTF(), internMap), spooledFile);
+            }
+        } else if (type == DELIVERED) {
+            pendingIndex.remove(payload.readUTF(), new SpooledFile(name, blob));
+        } else {
+            throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * Returns one shared copy of a host name
+     *
+     * @param string    Host name read from a record
+     * @param internMap Map from each string read so far to one shared copy
+     * @return Shared copy of the host name
+     */
+    private static String intern(String string, Map<String, Object> internMap) {
+        Object shared = internMap.get(string);
+        if (shared == null) {
+            internMap.put(string, string);
+            return string;
+        }
+        return (String) shared;
+    }
+
+    /**
+     * Appends a record of a file taken into the spool
+     *
+     * @param spooledFile File taken into the spool
+     * @param receivers   Host names of its receivers
+     * @return Sequence number to wait for with {@link #sync(long)}
+     * @throws IOException If the record cannot be encoded
+     */
+    synchronized long added(SpooledFile spooledFile, Collection<String> receivers) throws IOException {
+        encodeAdded(spooledFile, receivers);
+        frame(pendingOut);
+        return ++appended;
+    }
+
+    /**
+     * Appends a record of a file delivered to one receiver
+     *
+     * @param receiver    Host name of the receiver
+     * @param spooledFile File delivered
+     * @return Sequence number to wait for with {@link #sync(long)}
+     * @throws IOException If the record cannot be encoded
+     */
+    synchronized long delivered(String receiver, SpooledFile spooledFile) throws IOException {
+        record.reset();
+        recordOut.writeByte(DELIVERED);
+        recordOut.writeUTF(spooledFile.getName());
+        recordOut.writeUTF(spooledFile.getBlob().getPath());
+        recordOut.writeUTF(receiver);
+        frame(pendingOut);
+        return ++appended;
+    }
+
+    /**
+     * Encodes a record of a file taken into the spool into {@code record}
+     *
+     * @param spooledFile File taken into the spool
+     * @param receivers   Host names of its receivers
+     * @throws IOException If the record cannot be encoded
+     */
+    private void encodeAdded(SpooledFile spooledFile, Collection<String> receivers) throws IOException {
+        record.reset();
+        recordOut.writeByte(ADDED);
+        recordOut.writeUTF(spooledFile.getName());
+        recordOut.writeUTF(spooledFile.getBlob().getPath());
+        recordOut.writeUTF(spooledFile.getSender() == null ? "" : spooledFile.getSender());
+        recordOut.writeInt(receivers.size());
+        for (String receiver : receivers) {
+            recordOut.writeUTF(receiver);
+        }
+    }
+
+    /**
+     * Writes the record in {@code record} out, framed with its length and CRC32C
+     *
+     * @param out Stream the framed record is written to
+     * @throws IOException If the record cannot be written
+     */
+    private void frame(DataOutputStream out) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(record.toByteArray(), 0, record.size());
+        out.writeInt(record.size());
+        out.writeInt((int) crc.getValue());
+        record.writeTo(out);
+    }
+
+    /**
+     * Waits until a record is on disk. The first caller to find nobody
+     * writing the log writes and forces every record appended so far, so
+     * that callers arriving meanwhile share one force.
+     *
+     * @param sequence Sequence number of the record
+     * @throws IOException If the log cannot be written
+     */
+    void sync(long sequence) throws IOException {
+        ByteArrayOutputStream batch;
+        long target;
+        synchronized (this) {
+            while (synced < sequence && flushing && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Interrupted while waiting for the log");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (synced >= sequence) {
+                return;
+            }
+            flushing = true;
+            batch = pending;
+            target = appended;
+            pending = new ByteArrayOutputStream();
+            pendingOut = new DataOutputStream(pending);
+        }
+        IOException error = null;
+        try {
+            write(batch);
+        } catch (IOException e) {
+            error = e;
+            throw e;
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                if (error == null) {
+                    synced = target;
+                } else {
+                    // Records in the lost batch can no longer be made durable
+                    failure = error;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of records to the end of the log and forces it to disk
+     *
+     * @param batch Framed records
+     * @throws IOException If the log cannot be written
+     */
+    private void write(ByteArrayOutputStream batch) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+        while (buffer.hasRemaining()) {
+            logChannel.write(buffer);
+        }
+        logChannel.force(false);
+        synchronized (this) {
+            logSize += buffer.capacity();
+        }
+    }
+
+    /**
+     * Tells whether the log has grown enough to be compacted
+     *
+     * @return {@code true} if {@link #compact(PendingIndex)} is due
+     */
+    synchronized boolean isCompactionDue() {
+        return logSize >= compactionSize;
+    }
+
+    /**
+     * Writes the pending deliveries out as a snapshot and empties the log.
+     * Appends wait until the snapshot is on disk.
+     *
+     * @param pendingIndex Index of the pending deliveries
+     * @throws IOException If the snapshot or the log cannot be written
+     */
+    synchronized void compact(PendingIndex pendingIndex) throws IOException {
+        while (flushing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting for the log");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        // Anything appended before the snapshot is already in the pending deliveries
+        pending.reset();
+        synced = appended;
+        Path snapshotPath = folder.resolve(SNAPSHOT_FILE);
+        Path tmpPath = folder.resolve(SNAPSHOT_FILE + ".tmp");
+        FileOutputStream fileOutputStream = new FileOutputStream(tmpPath.toFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream, READ_BUFFER_SIZE));
+        try {
+            for (String hostName : pendingIndex.getHostNames()) {
+                List<String> receiver = Collections.singletonList(hostName);
+                for (SpooledFile spooledFile : pendingIndex.list(hostName)) {
+                    encodeAdded(spooledFile, receiver);
+                    frame(out);
+                }
+            }
+            out.flush();
+            fileOutputStream.getFD().sync();
+        } finally {
+            out.close();
+        }
+        try {
+            Files.move(tmpPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        logChannel.truncate(0);
+        logChannel.position(0);
+        logChannel.force(false);
+        logSize = 0;
+    }
+
+    /**
+     * Closes the log, writing out what has been appended
+     *
+     * @throws IOException If the log cannot be written
+     */
+    void close() throws IOException {
+        long sequence;
+        synchronized (this) {
+            if (logChannel == null) {
+                return;
+            }
+            sequence = appended;
+        }
+        sync(sequence);
+        synchronized (this) {
+            logChannel.close();
+        }
+    }
+
+    /**
+     * Payload of a record being replayed, decoded in place. Strings are
+     * written in modified UTF-8 by {@link DataOutputStream#writeUTF(String)};
+     * ASCII ones, the usual case, are decoded without going through a stream.
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class Payload {
+        /**
+         * Bytes of the payload (longer than the payload if reused)
+         */
+        private byte[] bytes = new byte[256];
+        /**
+         * Number of bytes in the payload
+         */
+        private int length;
+        /**
+         * Position of the next byte to be read
+         */
+        private int position;
+
+        /**
+         * Makes room for the next payload
+         *
+         * @param length Number of bytes in the payload
+         */
+        void reset(int length) {
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            this.length = length;
+            this.position = 0;
+        }
+
+        /**
+         * Makes sure the payload holds more bytes
+         *
+         * @param count Number of bytes to be read
+         * @throws EOFException If the payload is shorter
+         */
+        private void require(int count) throws EOFException {
+            if (length - position < count) {
+                throw new EOFException("Record is too short");
+            }
+        }
+
+        /**
+         * Reads a byte
+         *
+         * @return Byte read
+         * @throws EOFException If the payload is too short
+         */
+        byte readByte() throws EOFException {
+            require(1);
+            return bytes[position++];
+        }
+
+        /**
+         * Reads a big-endian int
+         *
+         * @return Int read
+         * @throws EOFException If the payload is too short
+         */
+        int readInt() throws EOFException {
+            require(4);
+            int value = ((bytes[position] & 0xff) << 24) | ((bytes[position + 1] & 0xff) << 16)
+                    | ((bytes[position + 2] & 0xff) << 8) | (bytes[position + 3] & 0xff);
+            position += 4;
+            return value;
+        }
+
+        /**
+         * Reads a string written by {@link DataOutputStream#writeUTF(String)}
+         *
+         * @return String read
+         * @throws IOException If the payload is too short or malformed
+         */
+        String readUTF() throws IOException {
+            require(2);
+            int utfLength = ((bytes[position] & 0xff) << 8) | (bytes[position + 1] & 0xff);
+            require(2 + utfLength);
+            int start = position + 2;
+            for (int i = start; i < start + utfLength; i++) {
+                if (bytes[i] <= 0) {
+                    // Not plain ASCII (or an encoded NUL)
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, position,
+                            2 + utfLength));
+                    position += 2 + utfLength;
+                    return in.readUTF();
+                }
+            }
+            position += 2 + utfLength;
+            return new String(bytes, start, utfLength, StandardCharsets.US_ASCII);
+        }
+    }
+}
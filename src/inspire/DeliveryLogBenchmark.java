@@ -0,0 +1,80 @@
+package inspire;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures logging and recovering pending deliveries.
+ * Usage: {@code DeliveryLogBenchmark [entries] [threads]}
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see DeliveryLog
+ * @since 18-10-2026
+ */
+class DeliveryLogBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        File folder = Files.createTempDirectory("__DeliveryLogBenchmark__").toFile();
+        try {
+            // Never compacted, so that recovery replays every record
+            final DeliveryLog deliveryLog = new DeliveryLog(folder.getPath(), Long.MAX_VALUE);
+            deliveryLog.recover(new PendingIndex());
+            final List<String> receivers = Arrays.asList("Robo1", "Robo2", "Robo3");
+            final int perThread = entries / threads;
+            final CountDownLatch done = new CountDownLatch(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t * perThread;
+                TaskExecutor.start(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = offset; i < offset + perThread; i++) {
+                                File blob = new File("/spool/" + Integer.toHexString(i % 50000));
+                                SpooledFile spooledFile = new SpooledFile("file" + i + ".bag", blob, "Robo0");
+                                long sequence = deliveryLog.added(spooledFile, receivers);
+                                // Every 64th caller needs its record on disk before going on
+                                if (i % 64 == 0) {
+                                    deliveryLog.sync(sequence);
+                                }
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            done.await();
+            deliveryLog.close();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long logSize = new File(new File(folder, DeliveryLog.FOLDER), "deliveries.log").length();
+            System.out.printf("Logged %d records (%d MiB) in %.2f s%n", perThread * threads,
+                    logSize / (1024 * 1024), seconds);
+            start = System.nanoTime();
+            PendingIndex pendingIndex = new PendingIndex();
+            new DeliveryLog(folder.getPath(), Long.MAX_VALUE).recover(pendingIndex);
+            seconds = (System.nanoTime() - start) / 1e9;
+            long pending = 0;
+            for (String hostName : pendingIndex.getHostNames()) {
+                pending += pendingIndex.list(hostName).size();
+            }
+            System.out.printf("Recovered %d pending deliveries in %.2f s%n", pending, seconds);
+        } finally {
+            File[] files = new File(folder, DeliveryLog.FOLDER).listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            new File(folder, DeliveryLog.FOLDER).delete();
+            folder.delete();
+        }
+    }
+}
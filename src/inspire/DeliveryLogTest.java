@@ -0,0 +1,106 @@
+package inspire;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Test for {@link DeliveryLog} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class DeliveryLogTest {
+    private File folder;
+    private SpooledFile first;
+    private SpooledFile second;
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private PendingIndex recover() throws Exception {
+        PendingIndex pendingIndex = new PendingIndex();
+        new DeliveryLog(folder.getPath()).recover(pendingIndex);
+        return pendingIndex;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("__DeliveryLogTest__").toFile();
+        first = new SpooledFile("first.bag", new File(folder, "blob1").getAbsoluteFile(), "Robo1");
+        second = new SpooledFile("second.bag", new File(folder, "blob2").getAbsoluteFile(), "Robo1");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        delete(folder);
+    }
+
+    @Test
+    public void recoverAfterRestart() throws Exception {
+        DeliveryLog deliveryLog = new DeliveryLog(folder.getPath());
+        PendingIndex pendingIndex = new PendingIndex();
+        deliveryLog.recover(pendingIndex);
+        Assert.assertTrue(pendingIndex.getHostNames().isEmpty());
+        deliveryLog.added(first, Arrays.asList("Robo2", "Robo3"));
+        deliveryLog.added(second, Collections.singletonList("Robo2"));
+        deliveryLog.sync(deliveryLog.delivered("Robo3", first));
+        // Closed without compaction, as a crash would leave it
+        pendingIndex = recover();
+        Assert.assertEquals(pendingIndex.list("Robo2"), Arrays.asList(first, second));
+        Assert.assertTrue(pendingIndex.isEmpty("Robo3"));
+        Assert.assertEquals(pendingIndex.list("Robo2").get(0).getSender(), "Robo1");
+    }
+
+    @Test
+    public void tornRecord() throws Exception {
+        DeliveryLog deliveryLog = new DeliveryLog(folder.getPath());
+        deliveryLog.recover(new PendingIndex());
+        deliveryLog.added(first, Collections.singletonList("Robo2"));
+        deliveryLog.sync(deliveryLog.added(second, Collections.singletonList("Robo2")));
+        File logFile = new File(new File(folder, DeliveryLog.FOLDER), "deliveries.log");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(logFile, "rw");
+        randomAccessFile.setLength(randomAccessFile.length() - 3);
+        randomAccessFile.close();
+        deliveryLog = new DeliveryLog(folder.getPath());
+        PendingIndex pendingIndex = new PendingIndex();
+        deliveryLog.recover(pendingIndex);
+        Assert.assertEquals(pendingIndex.list("Robo2"), Collections.singletonList(first));
+        // Appended after the cut, not after the torn bytes
+        deliveryLog.sync(deliveryLog.delivered("Robo2", first));
+        Assert.assertTrue(recover().isEmpty("Robo2"));
+    }
+
+    @Test
+    public void compact() throws Exception {
+        DeliveryLog deliveryLog = new DeliveryLog(folder.getPath(), 1);
+        PendingIndex pendingIndex = new PendingIndex();
+        deliveryLog.recover(pendingIndex);
+        pendingIndex.add("Robo2", first);
+        pendingIndex.add("Robo2", second);
+        deliveryLog.sync(deliveryLog.added(first, Collections.singletonList("Robo2")));
+        deliveryLog.sync(deliveryLog.added(second, Collections.singletonList("Robo2")));
+        Assert.assertTrue(deliveryLog.isCompactionDue());
+        deliveryLog.compact(pendingIndex);
+        Assert.assertFalse(deliveryLog.isCompactionDue());
+        pendingIndex.remove("Robo2", first);
+        deliveryLog.sync(deliveryLog.delivered("Robo2", first));
+        deliveryLog.close();
+        Assert.assertEquals(recover().list("Robo2"), Collections.singletonList(second));
+    }
+}
@@ -0,0 +1,128 @@
+package inspire;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Digests of the files sent, as listed in the manifest of a batch. A
+ * blob of the spool is named after its digest, so it is never read for
+ * it; any other file is read once, and its digest is kept for as long
+ * as the file keeps its size and modification time, so that a batch
+ * sent again after a dropped link does not read its files again.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniServer
+ * @see BlobSpool
+ * @since 18-10-2026
+ */
+class DigestCache {
+    /**
+     * Largest number of files whose digests are kept
+     */
+    static final int MAX_ENTRIES = 1024;
+    /**
+     * Cache shared by every sender
+     */
+    private static final DigestCache shared = new DigestCache();
+
+    /**
+     * Map from absolute path to the digest of the file, least recently used first (guarded by {@code this})
+     */
+    private final Map<String, Entry> entryMap;
+
+    /**
+     * Constructs an empty cache
+     */
+    DigestCache() {
+        this.entryMap = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            /**
+             * Drops the least recently used digest once the cache is full
+             *
+             * @param eldest Least recently used entry
+             * @return {@code true} if the cache holds more than {@code MAX_ENTRIES}
+             */
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Get the cache shared by every sender
+     *
+     * @return Shared cache
+     */
+    static DigestCache getShared() {
+        return shared;
+    }
+
+    /**
+     * Get the SHA-256 of a file, reading the file only if its digest is
+     * not known for its current size and modification time
+     *
+     * @param file File to be sent
+     * @return Hexadecimal SHA-256 of the file's contents
+     * @throws IOException If the file cannot be read
+     */
+    String digest(File file) throws IOException {
+        if (BlobSpool.isBlob(file)) {
+            return file.getName();
+        }
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long modified = file.lastModified();
+        synchronized (this) {
+            Entry entry = entryMap.get(path);
+            if (entry != null && entry.size == size && entry.modified == modified) {
+                return entry.digest;
+            }
+        }
+        // Read outside the lock, so that other files are looked up meanwhile
+        String digest = BlobSpool.digest(file);
+        if (file.length() == size && file.lastModified() == modified) {
+            synchronized (this) {
+                entryMap.put(path, new Entry(size, modified, digest));
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * Digest of a file as of a size and modification time
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class Entry {
+        /**
+         * Size of the file when it was read
+         */
+        private final long size;
+        /**
+         * Modification time of the file when it was read
+         */
+        private final long modified;
+        /**
+         * Hexadecimal SHA-256 of the file
+         */
+        private final String digest;
+
+        /**
+         * Initialises an entry
+         *
+         * @param size     Size of the file when it was read
+         * @param modified Modification time of the file when it was read
+         * @param digest   Hexadecimal SHA-256 of the file
+         */
+        Entry(long size, long modified, String digest) {
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+        }
+    }
+}
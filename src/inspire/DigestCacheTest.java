@@ -0,0 +1,74 @@
+package inspire;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Test for {@link DigestCache} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class DigestCacheTest {
+    private File folder;
+    private DigestCache digestCache;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("__DigestCacheTest__").toFile();
+        digestCache = new DigestCache();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] children = new File(folder, BlobSpool.FOLDER).listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        new File(folder, BlobSpool.FOLDER).delete();
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void keptUntilModified() throws Exception {
+        File file = new File(folder, "telemetry.csv");
+        Files.write(file.toPath(), "1,2,3".getBytes("UTF-8"));
+        file.setLastModified(1000000000000L);
+        String digest = digestCache.digest(file);
+        Assert.assertEquals(digest, BlobSpool.digest(file));
+        // Changed behind the cache, but with the same size and time: the digest is not read again
+        Files.write(file.toPath(), "4,5,6".getBytes("UTF-8"));
+        file.setLastModified(1000000000000L);
+        Assert.assertEquals(digestCache.digest(file), digest);
+        // A new time means new contents
+        file.setLastModified(1000000001000L);
+        Assert.assertEquals(digestCache.digest(file), BlobSpool.digest(file));
+        Assert.assertTrue(!digest.equals(digestCache.digest(file)));
+    }
+
+    @Test
+    public void blobNamedAfterDigest() throws Exception {
+        File upload = new File(folder, "upload.bag");
+        Files.write(upload.toPath(), "telemetry".getBytes("UTF-8"));
+        String digest = BlobSpool.digest(upload);
+        File blob = new BlobSpool(folder.getPath()).add(upload, 1);
+        Assert.assertEquals(blob.getName(), digest);
+        // Taken from the name, as the blob is never read for it
+        Files.write(blob.toPath(), "overwritten".getBytes("UTF-8"));
+        Assert.assertEquals(digestCache.digest(blob), digest);
+    }
+}
@@ -0,0 +1,358 @@
+package inspire;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes file bytes on a thread of its own, so that the thread reading
+ * the network keeps draining the socket while the disk is slow. The
+ * bytes handed over are copied into one of a fixed number of buffers,
+ * contiguous bytes of a file sharing a buffer, and the full buffers are
+ * queued for the writing thread; once every buffer is queued, the reading
+ * thread waits for one to be written, so memory stays bounded. Each stage
+ * counts the times, and the time, it waited for the other.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see FrameReader
+ * @see MiniClient
+ * @since 18-10-2026
+ */
+class DiskWriter {
+    /**
+     * Segment queued to stop the writing thread
+     */
+    private static final Segment STOP = new Segment(null, 0, null);
+
+    /**
+     * Number of buffers
+     */
+    private final int depth;
+    /**
+     * Buffers which are free to be filled
+     */
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    /**
+     * Filled buffers waiting to be written, in order
+     */
+    private final BlockingQueue<Segment> fullSegments;
+    /**
+     * Thread writing the queued buffers
+     */
+    private final Thread thread;
+    /**
+     * Number of times the reading stage waited for a free buffer
+     */
+    private final AtomicLong networkStalls;
+    /**
+     * Time in nanoseconds the reading stage waited for a free buffer
+     */
+    private final AtomicLong networkStallNanos;
+    /**
+     * Number of times the writing stage waited for a full buffer
+     */
+    private final AtomicLong diskStalls;
+    /**
+     * Time in nanoseconds the writing stage waited for a full buffer
+     */
+    private final AtomicLong diskStallNanos;
+    /**
+     * Number of buffers taken from the write queue pool so far (reading stage only)
+     */
+    private int allocated;
+    /**
+     * Buffer being filled ({@code null} if none, reading stage only)
+     */
+    private ByteBuffer current;
+    /**
+     * Channel of the file the buffer being filled belongs to (reading stage only)
+     */
+    private FileChannel currentChannel;
+    /**
+     * Offset in the file of the buffer being filled (reading stage only)
+     */
+    private long currentPosition;
+    /**
+     * Number of segments queued (guarded by {@code this})
+     */
+    private long submitted;
+    /**
+     * Number of segments written or dropped (guarded by {@code this})
+     */
+    private long written;
+    /**
+     * Error which broke off a write ({@code null} if none, guarded by {@code this})
+     */
+    private IOException failure;
+
+    /**
+     * Constructs a writer and starts its thread; buffers are taken lazily
+     * from the write queue pool, not from the shared transfer pool
+     *
+     * @param depth Number of buffers, at least 1
+     */
+    DiskWriter(int depth) {
+        this.depth = depth;
+        this.freeBuffers = new ArrayBlockingQueue<>(depth);
+        // Room for every buffer, and for the stop marker
+        this.fullSegments = new ArrayBlockingQueue<>(depth + 1);
+        this.networkStalls = new AtomicLong();
+        this.networkStallNanos = new AtomicLong();
+        this.diskStalls = new AtomicLong();
+        this.diskStallNanos = new AtomicLong();
+        this.thread = TaskExecutor.start(new Runnable() {
+            @Override
+            public void run() {
+                writeSegments();
+            }
+        });
+    }
+
+    /**
+     * Hands bytes over to be written to a file
+     *
+     * @param fileChannel Channel of the file
+     * @param position    Offset in the file to write the bytes at
+     * @param source      Bytes to be written (position to limit), all consumed
+     * @throws IOException If an earlier write failed, or interrupted while waiting for a buffer
+     */
+    void write(FileChannel fileChannel, long position, ByteBuffer source) throws IOException {
+        checkFailure();
+        while (source.hasRemaining()) {
+            if (current != null && (fileChannel != currentChannel
+                    || position != currentPosition + current.position() || !current.hasRemaining())) {
+                submit();
+            }
+            if (current == null) {
+                current = takeBuffer();
+                currentChannel = fileChannel;
+                currentPosition = position;
+            }
+            int count = Math.min(source.remaining(), current.remaining());
+            int limit = source.limit();
+            source.limit(source.position() + count);
+            current.put(source);
+            source.limit(limit);
+            position += count;
+        }
+    }
+
+    /**
+     * Waits until every byte handed over has been written
+     *
+     * @throws IOException If a write failed, or interrupted while waiting
+     */
+    void drain() throws IOException {
+        if (current != null) {
+            submit();
+        }
+        synchronized (this) {
+            while (written < submitted) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the disk");
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stops the writing thread once it has written the buffers queued,
+     * dropping the one being filled, and returns the buffers to their pool
+     */
+    void close() {
+        if (current != null) {
+            freeBuffers.offer(current);
+            current = null;
+        }
+        fullSegments.offer(STOP);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ByteBuffer buffer;
+        while ((buffer = freeBuffers.poll()) != null) {
+            BufferPool.getWriteQueue().release(buffer);
+        }
+    }
+
+    /**
+     * Get number of times the reading stage waited for the disk
+     *
+     * @return Stall count
+     */
+    long getNetworkStalls() {
+        return networkStalls.get();
+    }
+
+    /**
+     * Get time the reading stage waited for the disk
+     *
+     * @return Stall time in nanoseconds
+     */
+    long getNetworkStallNanos() {
+        return networkStallNanos.get();
+    }
+
+    /**
+     * Get number of times the writing stage waited for the network
+     *
+     * @return Stall count
+     */
+    long getDiskStalls() {
+        return diskStalls.get();
+    }
+
+    /**
+     * Get time the writing stage waited for the network
+     *
+     * @return Stall time in nanoseconds
+     */
+    long getDiskStallNanos() {
+        return diskStallNanos.get();
+    }
+
+    /**
+     * Throws the error which broke off a write, if any
+     *
+     * @throws IOException The error
+     */
+    private synchronized void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write to disk failed", failure);
+        }
+    }
+
+    /**
+     * Takes a free buffer, from the write queue pool while fewer than
+     * {@code depth} have been taken, or else once one has been written
+     *
+     * @return A cleared buffer
+     * @throws InterruptedIOException If interrupted while waiting
+     */
+    private ByteBuffer takeBuffer() throws InterruptedIOException {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null && allocated < depth) {
+            allocated++;
+            return BufferPool.getWriteQueue().acquireForTransfer();
+        }
+        if (buffer == null) {
+            networkStalls.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                buffer = freeBuffers.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the disk");
+            } finally {
+                networkStallNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Queues the buffer being filled for the writing thread
+     */
+    private void submit() {
+        current.flip();
+        synchronized (this) {
+            submitted++;
+        }
+        // Never full, as there are no more segments than buffers
+        fullSegments.add(new Segment(currentChannel, currentPosition, current));
+        current = null;
+        currentChannel = null;
+    }
+
+    /**
+     * Writes the queued buffers in order until stopped; after a failure,
+     * the rest are dropped
+     */
+    private void writeSegments() {
+        boolean failed = false;
+        while (true) {
+            Segment segment = fullSegments.poll();
+            if (segment == null) {
+                diskStalls.incrementAndGet();
+                long start = System.nanoTime();
+                try {
+                    segment = fullSegments.take();
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    diskStallNanos.addAndGet(System.nanoTime() - start);
+                }
+            }
+            if (segment == STOP) {
+                return;
+            }
+            IOException error = null;
+            try {
+                long position = segment.position;
+                while (!failed && segment.buffer.hasRemaining()) {
+                    position += segment.fileChannel.write(segment.buffer, position);
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                // Such as a channel not opened for writing
+                error = new IOException(e);
+            }
+            failed |= error != null;
+            freeBuffers.offer(segment.buffer);
+            synchronized (this) {
+                if (failure == null) {
+                    failure = error;
+                }
+                written++;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A filled buffer and where it goes
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class Segment {
+        /**
+         * Channel of the file
+         */
+        private final FileChannel fileChannel;
+        /**
+         * Offset in the file
+         */
+        private final long position;
+        /**
+         * Bytes to be written (position to limit)
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Initialises a segment
+         *
+         * @param fileChannel Channel of the file
+         * @param position    Offset in the file
+         * @param buffer      Bytes to be written (position to limit)
+         */
+        Segment(FileChannel fileChannel, long position, ByteBuffer buffer) {
+            this.fileChannel = fileChannel;
+            this.position = position;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package inspire;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test for {@link DiskWriter} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class DiskWriterTest {
+    private DiskWriter diskWriter;
+    private Path first;
+    private Path second;
+
+    @Before
+    public void setUp() throws Exception {
+        diskWriter = new DiskWriter(2);
+        first = Files.createTempFile("DiskWriterTest", ".bin");
+        second = Files.createTempFile("DiskWriterTest", ".bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        diskWriter.close();
+        Files.deleteIfExists(first);
+        Files.deleteIfExists(second);
+    }
+
+    @Test
+    public void writeInPieces() throws Exception {
+        byte[] data = new byte[5 * BufferPool.getWriteQueue().getBufferSize() + 17];
+        new Random(5).nextBytes(data);
+        FileChannel firstChannel = FileChannel.open(first, StandardOpenOption.WRITE);
+        FileChannel secondChannel = FileChannel.open(second, StandardOpenOption.WRITE);
+        try {
+            // Interleaved between the files, and the second one written back to front
+            int piece = 4000;
+            for (int i = 0; i < data.length; i += piece) {
+                int length = Math.min(piece, data.length - i);
+                diskWriter.write(firstChannel, i, ByteBuffer.wrap(data, i, length));
+                int start = Math.max(0, data.length - i - piece);
+                diskWriter.write(secondChannel, start, ByteBuffer.wrap(data, start, data.length - i - start));
+            }
+            diskWriter.drain();
+        } finally {
+            firstChannel.close();
+            secondChannel.close();
+        }
+        Assert.assertArrayEquals(Files.readAllBytes(first), data);
+        Assert.assertArrayEquals(Files.readAllBytes(second), data);
+    }
+
+    @Test
+    public void keepOffSharedPool() throws Exception {
+        long sharedRequests = BufferPool.getShared().getHits() + BufferPool.getShared().getMisses();
+        long queueRequests = BufferPool.getWriteQueue().getHits() + BufferPool.getWriteQueue().getMisses();
+        FileChannel firstChannel = FileChannel.open(first, StandardOpenOption.WRITE);
+        try {
+            diskWriter.write(firstChannel, 0, ByteBuffer.wrap(new byte[3 * Protocol.CHUNK_SIZE]));
+            diskWriter.drain();
+        } finally {
+            firstChannel.close();
+        }
+        Assert.assertEquals(BufferPool.getShared().getHits() + BufferPool.getShared().getMisses(), sharedRequests);
+        // One buffer, or two if the first was not written yet when the second was needed
+        long taken = BufferPool.getWriteQueue().getHits() + BufferPool.getWriteQueue().getMisses() - queueRequests;
+        Assert.assertTrue(taken >= 1 && taken <= 2);
+    }
+
+    @Test
+    public void reportFailure() throws Exception {
+        FileChannel readOnly = FileChannel.open(first, StandardOpenOption.READ);
+        try {
+            diskWriter.write(readOnly, 0, ByteBuffer.wrap(new byte[100]));
+            try {
+                diskWriter.drain();
+                Assert.fail();
+            } catch (IOException e) {
+                // The write failed on the other thread
+            }
+            // And every later write fails straight away
+            try {
+                diskWriter.write(readOnly, 100, ByteBuffer.wrap(new byte[100]));
+                Assert.fail();
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            readOnly.close();
+        }
+        Assert.assertTrue(Arrays.equals(Files.readAllBytes(first), new byte[0]));
+    }
+}
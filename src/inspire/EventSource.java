@@ -0,0 +1,118 @@
+package inspire;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publishes {@code TransferEvent}s to {@code TransferListener}s. The
+ * listeners are kept in a copy-on-write list, so publishing takes no lock
+ * and builds nothing. {@code Observer}s added the old way are still
+ * notified, through an adapter which formats each event as the string
+ * the publisher used to send (its code, followed by the subject); the
+ * strings are only built while such observers are registered.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see TransferEvent
+ * @see TransferListener
+ * @since 18-10-2026
+ */
+class EventSource extends Observable {
+    /**
+     * Listeners, in the order added
+     */
+    private final List<TransferListener> listeners;
+    /**
+     * Map from type of event to its code in the notification strings of {@code Observer}s
+     */
+    private final Map<TransferEvent.Type, Character> notificationCodes;
+    /**
+     * Number of {@code Observer}s registered
+     */
+    private volatile int observerCount;
+
+    /**
+     * Constructs a source with no listeners
+     *
+     * @param notificationCodes Map from type of event to its code in the notification strings of
+     *                          {@code Observer}s (types not mapped are not notified to them)
+     */
+    EventSource(Map<TransferEvent.Type, Character> notificationCodes) {
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.notificationCodes = notificationCodes;
+    }
+
+    /**
+     * Adds a listener for the events published from now on
+     *
+     * @param listener Listener to be added
+     */
+    void addListener(TransferListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener
+     *
+     * @param listener Listener to be removed
+     */
+    void removeListener(TransferListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publishes an event to the listeners, and to the {@code Observer}s if there are any
+     *
+     * @param event Event to be published
+     */
+    void publish(TransferEvent event) {
+        for (TransferListener listener : listeners) {
+            listener.onEvent(event);
+        }
+        if (observerCount > 0) {
+            Character code = notificationCodes.get(event.getType());
+            if (code != null) {
+                String notification = event.toNotification(code);
+                // Together, so that another thread's notification cannot clear the change first
+                synchronized (this) {
+                    setChanged();
+                    notifyObservers(notification);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an {@code Observer}, which is notified of the events as strings
+     *
+     * @param observer Observer to be added
+     */
+    @Override
+    public synchronized void addObserver(Observer observer) {
+        super.addObserver(observer);
+        observerCount = countObservers();
+    }
+
+    /**
+     * Removes an {@code Observer}
+     *
+     * @param observer Observer to be removed
+     */
+    @Override
+    public synchronized void deleteObserver(Observer observer) {
+        super.deleteObserver(observer);
+        observerCount = countObservers();
+    }
+
+    /**
+     * Removes every {@code Observer}
+     */
+    @Override
+    public synchronized void deleteObservers() {
+        super.deleteObservers();
+        observerCount = 0;
+    }
+}
@@ -0,0 +1,80 @@
+package inspire;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Test for {@link EventSource} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class EventSourceTest {
+    private EventSource eventSource;
+    private List<TransferEvent> events;
+    private List<Object> notifications;
+
+    @Before
+    public void setUp() throws Exception {
+        Map<TransferEvent.Type, Character> codes = new EnumMap<>(TransferEvent.Type.class);
+        codes.put(TransferEvent.Type.FILE_SEND_STARTED, '0');
+        codes.put(TransferEvent.Type.FILES_RECEIVED, '2');
+        codes.put(TransferEvent.Type.MANIFEST_RECEIVED, '4');
+        eventSource = new EventSource(codes);
+        events = new ArrayList<>();
+        notifications = new ArrayList<>();
+    }
+
+    @Test
+    public void publishToListeners() throws Exception {
+        TransferListener listener = new TransferListener() {
+            @Override
+            public void onEvent(TransferEvent event) {
+                events.add(event);
+            }
+        };
+        eventSource.addListener(listener);
+        TransferEvent event = new TransferEvent(TransferEvent.Type.FILE_SEND_STARTED, "a.txt");
+        eventSource.publish(event);
+        // Passed on as it is, and events without a subject are shared
+        Assert.assertSame(events.get(0), event);
+        Assert.assertSame(TransferEvent.of(TransferEvent.Type.LIST_CHANGED),
+                TransferEvent.of(TransferEvent.Type.LIST_CHANGED));
+        eventSource.removeListener(listener);
+        eventSource.publish(event);
+        Assert.assertEquals(events.size(), 1);
+    }
+
+    @Test
+    public void notifyObservers() throws Exception {
+        Observer observer = new Observer() {
+            @Override
+            public void update(Observable observable, Object o) {
+                Assert.assertSame(observable, eventSource);
+                notifications.add(o);
+            }
+        };
+        eventSource.addObserver(observer);
+        eventSource.publish(new TransferEvent(TransferEvent.Type.FILE_SEND_STARTED, "a.txt"));
+        eventSource.publish(TransferEvent.of(TransferEvent.Type.FILES_RECEIVED));
+        eventSource.publish(new TransferEvent(TransferEvent.Type.MANIFEST_RECEIVED, null, 3, 1024));
+        // Not sent by this source
+        eventSource.publish(TransferEvent.of(TransferEvent.Type.LIST_CHANGED));
+        Assert.assertEquals(notifications.size(), 3);
+        Assert.assertEquals(notifications.get(0), "0 a.txt");
+        Assert.assertEquals(notifications.get(1), "2");
+        Assert.assertEquals(notifications.get(2), "4 3 1024");
+        eventSource.deleteObserver(observer);
+        eventSource.publish(TransferEvent.of(TransferEvent.Type.FILES_RECEIVED));
+        Assert.assertEquals(notifications.size(), 3);
+    }
+}
@@ -0,0 +1,125 @@
+package inspire;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shares spooled files between the {@code MiniServer} instances sending
+ * them to different receivers. A file is mapped once, read-only, while
+ * any receiver is being sent it, and every receiver reads it through its
+ * own cursor (a duplicate of the mapping), so a slow receiver holds no
+ * other back.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniServer
+ * @see BlobSpool
+ * @since 18-10-2026
+ */
+class FanOut {
+    /**
+     * Map from file path to its shared state
+     */
+    private final Map<String, Entry> entryMap;
+    /**
+     * Number of times a file has been mapped
+     */
+    private long mappings;
+
+    /**
+     * Constructs an empty fan-out
+     */
+    FanOut() {
+        this.entryMap = new HashMap<>();
+    }
+
+    /**
+     * Gets the shared mapping of a file, mapping it if no receiver is being sent it yet
+     *
+     * @param file File to be sent
+     * @return Read-only buffer over the whole file, not to be moved by the caller
+     * ({@code null} if the file is too large to be mapped in one piece)
+     * @throws IOException If the file cannot be mapped
+     */
+    ByteBuffer acquire(File file) throws IOException {
+        synchronized (entryMap) {
+            Entry entry = entryMap.get(file.getPath());
+            if (entry == null) {
+                entry = new Entry();
+                entryMap.put(file.getPath(), entry);
+            }
+            if (entry.users == 0 && file.length() <= Integer.MAX_VALUE) {
+                FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                try {
+                    entry.buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+                } finally {
+                    // The mapping stays valid after the channel is closed
+                    fileChannel.close();
+                }
+                mappings++;
+            }
+            entry.users++;
+            return entry.buffer;
+        }
+    }
+
+    /**
+     * Lets go of a file acquired with {@link #acquire(File)}; the mapping
+     * is dropped once no receiver is being sent the file
+     *
+     * @param file File which has been sent
+     */
+    void release(File file) {
+        synchronized (entryMap) {
+            Entry entry = entryMap.get(file.getPath());
+            if (entry != null && entry.users > 0 && --entry.users == 0) {
+                entry.buffer = null;
+            }
+        }
+    }
+
+    /**
+     * Forgets a file once it will not be sent again
+     *
+     * @param file File to be forgotten
+     */
+    void forget(File file) {
+        synchronized (entryMap) {
+            entryMap.remove(file.getPath());
+        }
+    }
+
+    /**
+     * Get number of times a file has been mapped
+     *
+     * @return Number of mappings
+     */
+    long getMappings() {
+        synchronized (entryMap) {
+            return mappings;
+        }
+    }
+
+    /**
+     * Shared state of a file
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class Entry {
+        /**
+         * Mapping of the file ({@code null} while no receiver is being sent it)
+         */
+        private ByteBuffer buffer;
+        /**
+         * Number of receivers being sent the file
+         */
+        private int users;
+    }
+}
@@ -0,0 +1,663 @@
+package inspire;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the transfer protocol from a channel through a single
+ * direct buffer taken from the shared {@code BufferPool}. Header
+ * fields are decoded straight from the buffer and file bodies are
+ * written from it to the file's channel, so received bytes never
+ * pass through the heap. With chunk checksums, every chunk is checked
+ * as it is written, and the chunks found damaged are noted, so that
+ * they alone can be asked for again. With a disk writer, file bytes are
+ * handed over to be written on another thread, and every call which
+ * writes to a file returns once they are on it.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniClient
+ * @since 18-10-2026
+ */
+class FrameReader {
+    /**
+     * Channel to read from
+     */
+    private final ReadableByteChannel channel;
+    /**
+     * Buffer holding bytes read but not consumed yet (always ready for reading)
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Protocol version which decides how counts, sizes and strings are framed
+     */
+    private int version;
+    /**
+     * Number of file body bytes written so far
+     */
+    private volatile long bodyBytes;
+    /**
+     * Decompressor for file bodies ({@code null} if bodies arrive as they are)
+     */
+    private Inflater inflater;
+    /**
+     * Pooled buffer holding an inflated chunk (only used with a decompressor)
+     */
+    private ByteBuffer rawChunk;
+    /**
+     * Flag to indicate whether chunks are followed by their checksums
+     */
+    private boolean chunkChecksums;
+    /**
+     * Checksum of the chunk being read (only used with chunk checksums)
+     */
+    private final CRC32C chunkChecksum;
+    /**
+     * Checksum of the body being read (only used with chunk checksums)
+     */
+    private final CRC32C bodyChecksum;
+    /**
+     * Checksum forwarding the bytes of a chunk to the chunk's and the body's checksums
+     */
+    private final TeeChecksum teeChecksum;
+    /**
+     * Writer the file bytes are handed over to ({@code null} to write them on this thread)
+     */
+    private DiskWriter diskWriter;
+    /**
+     * Offset and length of each chunk of the body being read which did not match its checksum
+     */
+    private final List<long[]> damagedChunks;
+
+
+    /**
+     * Constructs a reader over a channel
+     *
+     * @param channel Channel to read from
+     * @throws InterruptedIOException If interrupted while waiting for a pooled buffer
+     */
+    FrameReader(ReadableByteChannel channel) throws InterruptedIOException {
+        this.channel = channel;
+        this.buffer = BufferPool.getShared().acquireForTransfer();
+        this.buffer.flip();
+        this.version = Protocol.VERSION_1;
+        this.chunkChecksum = new CRC32C();
+        this.bodyChecksum = new CRC32C();
+        this.teeChecksum = new TeeChecksum(chunkChecksum, bodyChecksum);
+        this.damagedChunks = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a reader with a small unpooled buffer, for
+     * reading handshakes and replies on the sending side
+     *
+     * @param channel    Channel to read from
+     * @param bufferSize Size of the buffer
+     */
+    FrameReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+        this.version = Protocol.VERSION_1;
+        this.chunkChecksum = new CRC32C();
+        this.bodyChecksum = new CRC32C();
+        this.teeChecksum = new TeeChecksum(chunkChecksum, bodyChecksum);
+        this.damagedChunks = new ArrayList<>();
+    }
+
+    /**
+     * Set the protocol version negotiated for the connection
+     *
+     * @param version Protocol version
+     */
+    void setVersion(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Set the decompressor, once compression has been negotiated for the
+     * connection. File bodies then arrive as a sequence of chunks.
+     *
+     * @param inflater Raw ({@code nowrap}) decompressor for file bodies
+     */
+    void setInflater(Inflater inflater) {
+        this.inflater = inflater;
+    }
+
+    /**
+     * Set the writer file bytes are handed over to, so that the channel
+     * is read on while the disk catches up
+     *
+     * @param diskWriter Writer of the file bytes ({@code null} to write them on this thread)
+     */
+    void setDiskWriter(DiskWriter diskWriter) {
+        this.diskWriter = diskWriter;
+    }
+
+    /**
+     * Set chunk checksums flag, once they have been negotiated for the
+     * connection. File bodies then arrive as a sequence of chunks, each
+     * followed by its CRC32C, and then the CRC32C of the whole body,
+     * which is read by {@code finishBody}.
+     *
+     * @param chunkChecksums {@code true} if chunks and bodies are followed by their checksums
+     */
+    void setChunkChecksums(boolean chunkChecksums) {
+        this.chunkChecksums = chunkChecksums;
+    }
+
+    /**
+     * Makes sure that at least {@code count} bytes are buffered
+     *
+     * @param count Number of bytes required
+     * @throws IOException If the channel ends before enough bytes arrive
+     */
+    private void ensure(int count) throws IOException {
+        if (buffer.remaining() >= count) {
+            return;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < count) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Connection closed in the middle of a transfer");
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Reads a single byte
+     *
+     * @return The value read
+     * @throws IOException If the channel cannot be read
+     */
+    int readByte() throws IOException {
+        ensure(1);
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint
+     *
+     * @return The value read
+     * @throws IOException If the channel cannot be read or the varint is malformed
+     */
+    long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads a count (of receivers or files) as framed by the protocol version
+     *
+     * @return The count read
+     * @throws IOException If the channel cannot be read
+     */
+    int readCount() throws IOException {
+        if (version == Protocol.VERSION_1) {
+            return readInt();
+        }
+        long count = readVarint();
+        if (count > Integer.MAX_VALUE) {
+            throw new IOException("Count out of range: " + count);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Reads a file size as framed by the protocol version
+     *
+     * @return The size read
+     * @throws IOException If the channel cannot be read
+     */
+    long readSize() throws IOException {
+        return version == Protocol.VERSION_1 ? readLong() : readVarint();
+    }
+
+    /**
+     * Reads a string as framed by the protocol version
+     *
+     * @return The string read
+     * @throws IOException If the channel cannot be read
+     */
+    String readString() throws IOException {
+        if (version == Protocol.VERSION_1) {
+            return readChars(readInt());
+        }
+        int length = (int) Math.min(readVarint(), Integer.MAX_VALUE);
+        if (length > buffer.capacity()) {
+            throw new IOException("String too long: " + length);
+        }
+        ensure(length);
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+        // Decode straight from the buffer
+        String string = StandardCharsets.UTF_8.decode(buffer).toString();
+        buffer.limit(limit);
+        return string;
+    }
+
+    /**
+     * Reads a big-endian int
+     *
+     * @return The value read
+     * @throws IOException If the channel cannot be read
+     */
+    int readInt() throws IOException {
+        ensure(4);
+        return buffer.getInt();
+    }
+
+    /**
+     * Reads a big-endian int without consuming it
+     *
+     * @return The value read
+     * @throws IOException If the channel cannot be read
+     */
+    int peekInt() throws IOException {
+        ensure(4);
+        return buffer.getInt(buffer.position());
+    }
+
+    /**
+     * Reads a big-endian long
+     *
+     * @return The value read
+     * @throws IOException If the channel cannot be read
+     */
+    long readLong() throws IOException {
+        ensure(8);
+        return buffer.getLong();
+    }
+
+    /**
+     * Reads a string written as UTF-16 chars
+     *
+     * @param length Number of chars in the string
+     * @return The string read
+     * @throws IOException If the channel cannot be read
+     */
+    String readChars(int length) throws IOException {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            ensure(2);
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Get number of file body bytes written so far
+     *
+     * @return Body bytes written
+     */
+    long getBodyBytes() {
+        return bodyBytes;
+    }
+
+    /**
+     * Writes the next {@code size} file bytes of the channel to a file,
+     * reading them as chunks if a decompressor has been set or chunk
+     * checksums are on. Damaged chunks are written all the same, and
+     * noted until the body is finished.
+     *
+     * @param fileChannel Channel of the file to write to
+     * @param size        Number of bytes to be written
+     * @param checksum    Checksum to update with the bytes written ({@code null} for none)
+     * @throws IOException If the channel or the file cannot be accessed
+     */
+    void readTo(FileChannel fileChannel, long size, Checksum checksum) throws IOException {
+        try {
+            if (inflater == null && !chunkChecksums) {
+                copyTo(fileChannel, size, checksum);
+                return;
+            }
+            // Bytes written so far
+            long count = 0;
+            while (count < size) {
+                count += readChunk(fileChannel, checksum);
+            }
+            if (count != size) {
+                throw new IOException("Chunks overran the file size");
+            }
+        } finally {
+            drain();
+        }
+    }
+
+    /**
+     * Waits for the bytes handed over to the disk writer, if any, to be written
+     *
+     * @throws IOException If a write failed
+     */
+    private void drain() throws IOException {
+        if (diskWriter != null) {
+            diskWriter.drain();
+        }
+    }
+
+    /**
+     * Writes bytes to a file at the file's position, or hands them over
+     * to the disk writer, advancing the position either way
+     *
+     * @param fileChannel Channel of the file to write to
+     * @param source      Bytes to be written (position to limit), all consumed
+     * @throws IOException If the file cannot be written
+     */
+    private void write(FileChannel fileChannel, ByteBuffer source) throws IOException {
+        if (diskWriter == null) {
+            while (source.hasRemaining()) {
+                fileChannel.write(source);
+            }
+            return;
+        }
+        long position = fileChannel.position();
+        int count = source.remaining();
+        diskWriter.write(fileChannel, position, source);
+        fileChannel.position(position + count);
+    }
+
+    /**
+     * Reads one chunk of a body and writes it to a file at the file's position
+     *
+     * @param fileChannel Channel of the file to write to
+     * @param checksum    Checksum to update with the bytes written ({@code null} for none)
+     * @return Number of bytes written
+     * @throws IOException If the channel or the file cannot be accessed
+     */
+    private int readChunk(FileChannel fileChannel, Checksum checksum) throws IOException {
+        long position = fileChannel.position();
+        Checksum chunkChecksum = checksum;
+        if (chunkChecksums) {
+            this.chunkChecksum.reset();
+            teeChecksum.setOuter(checksum);
+            chunkChecksum = teeChecksum;
+        }
+        long tag = readVarint();
+        long payloadLength = tag >>> 1;
+        if (payloadLength > Protocol.CHUNK_SIZE) {
+            throw new IOException("Chunk too long: " + payloadLength);
+        }
+        int rawLength;
+        if ((tag & 1) == 0) {
+            copyTo(fileChannel, payloadLength, chunkChecksum);
+            rawLength = (int) payloadLength;
+        } else {
+            if (inflater == null) {
+                throw new IOException("Compressed chunk without compression");
+            }
+            rawLength = inflateTo(fileChannel, (int) payloadLength, (int) readVarint(), chunkChecksum);
+        }
+        if (chunkChecksums) {
+            if ((int) this.chunkChecksum.getValue() != readInt()) {
+                damagedChunks.add(new long[]{position, rawLength});
+            }
+        }
+        return rawLength;
+    }
+
+    /**
+     * Reads a chunk sent again for a damaged one, and writes it to a file
+     * (chunk checksums only)
+     *
+     * @param fileChannel Channel of the file to write to
+     * @param position    Offset of the chunk in the file
+     * @param length      Length of the chunk
+     * @return {@code true} if the chunk matches its checksum this time
+     * @throws IOException If the channel or the file cannot be accessed
+     */
+    boolean readChunkAt(FileChannel fileChannel, long position, long length) throws IOException {
+        fileChannel.position(position);
+        int damaged = damagedChunks.size();
+        int rawLength;
+        try {
+            rawLength = readChunk(fileChannel, null);
+        } finally {
+            drain();
+        }
+        // Not part of any body being read
+        bodyChecksum.reset();
+        if (rawLength != length) {
+            throw new IOException("Chunk sent again is " + rawLength + " bytes, not " + length);
+        }
+        if (damagedChunks.size() > damaged) {
+            damagedChunks.remove(damaged);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the checksum which follows a body and, if no chunk was found
+     * damaged, checks the body against it (chunk checksums only)
+     *
+     * @return Offset and length of each damaged chunk of the body (empty if none)
+     * @throws IOException If the channel cannot be read, or the body does not match its checksum
+     *                     although its chunks do
+     */
+    List<long[]> finishBody() throws IOException {
+        int expected = readInt();
+        int actual = (int) bodyChecksum.getValue();
+        bodyChecksum.reset();
+        List<long[]> damaged = new ArrayList<>(damagedChunks);
+        damagedChunks.clear();
+        if (damaged.isEmpty() && actual != expected) {
+            throw new IOException("Body checksum mismatch");
+        }
+        return damaged;
+    }
+
+    /**
+     * Get the offset of the first damaged chunk of the body being read
+     *
+     * @return Offset in the file ({@code Long.MAX_VALUE} if no chunk has been found damaged)
+     */
+    long getFirstDamage() {
+        long first = Long.MAX_VALUE;
+        for (long[] chunk : damagedChunks) {
+            first = Math.min(first, chunk[0]);
+        }
+        return first;
+    }
+
+    /**
+     * Inflates a compressed chunk and writes it to a file
+     *
+     * @param fileChannel   Channel of the file to write to
+     * @param payloadLength Length of the compressed payload
+     * @param rawLength     Length of the chunk once inflated
+     * @param checksum      Checksum to update with the bytes written ({@code null} for none)
+     * @return Number of bytes written
+     * @throws IOException If the channel or the file cannot be accessed or the chunk is corrupt
+     */
+    private int inflateTo(FileChannel fileChannel, int payloadLength, int rawLength, Checksum checksum)
+            throws IOException {
+        if (rawLength > Protocol.CHUNK_SIZE) {
+            throw new IOException("Chunk too long: " + rawLength);
+        }
+        if (rawChunk == null) {
+            rawChunk = BufferPool.getShared().acquireForTransfer();
+        }
+        ensure(payloadLength);
+        int limit = buffer.limit();
+        int end = buffer.position() + payloadLength;
+        buffer.limit(end);
+        rawChunk.clear();
+        rawChunk.limit(rawLength);
+        inflater.reset();
+        inflater.setInput(buffer);
+        try {
+            while (rawChunk.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(rawChunk) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed chunk");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed chunk", e);
+        } finally {
+            buffer.limit(limit);
+            buffer.position(end);
+        }
+        if (rawChunk.hasRemaining()) {
+            throw new IOException("Compressed chunk is shorter than announced");
+        }
+        rawChunk.flip();
+        if (checksum != null) {
+            checksum.update(rawChunk);
+            rawChunk.rewind();
+        }
+        write(fileChannel, rawChunk);
+        bodyBytes += rawLength;
+        return rawLength;
+    }
+
+    /**
+     * Writes the next {@code size} bytes of the channel to a file as they are
+     *
+     * @param fileChannel Channel of the file to write to
+     * @param size        Number of bytes to be written
+     * @param checksum    Checksum to update with the bytes written ({@code null} for none)
+     * @throws IOException If the channel or the file cannot be accessed
+     */
+    private void copyTo(FileChannel fileChannel, long size, Checksum checksum) throws IOException {
+        // Bytes written so far
+        long count = 0;
+        while (count < size) {
+            if (!buffer.hasRemaining()) {
+                ensure(1);
+            }
+            int chunk = (int) Math.min(buffer.remaining(), size - count);
+            int limit = buffer.limit();
+            buffer.limit(buffer.position() + chunk);
+            if (checksum != null) {
+                int position = buffer.position();
+                checksum.update(buffer);
+                buffer.position(position);
+            }
+            write(fileChannel, buffer);
+            buffer.limit(limit);
+            count += chunk;
+            bodyBytes += chunk;
+        }
+    }
+
+    /**
+     * Returns the buffer to the pool; the channel is left open
+     */
+    void close() {
+        BufferPool.getShared().release(buffer);
+        BufferPool.getShared().release(rawChunk);
+    }
+
+    /**
+     * Checksum which passes every update on to the checksums of a chunk
+     * and of its body, and to the caller's checksum if there is one
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class TeeChecksum implements Checksum {
+        /**
+         * Checksum of the chunk
+         */
+        private final Checksum chunk;
+        /**
+         * Checksum of the body
+         */
+        private final Checksum body;
+        /**
+         * Checksum of the caller ({@code null} if none)
+         */
+        private Checksum outer;
+
+        /**
+         * Initialises a tee over the checksums of a chunk and of its body
+         *
+         * @param chunk Checksum of the chunk
+         * @param body  Checksum of the body
+         */
+        TeeChecksum(Checksum chunk, Checksum body) {
+            this.chunk = chunk;
+            this.body = body;
+        }
+
+        /**
+         * Set the caller's checksum
+         *
+         * @param outer Checksum of the caller ({@code null} if none)
+         */
+        void setOuter(Checksum outer) {
+            this.outer = outer;
+        }
+
+        @Override
+        public void update(int b) {
+            chunk.update(b);
+            body.update(b);
+            if (outer != null) {
+                outer.update(b);
+            }
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            chunk.update(b, off, len);
+            body.update(b, off, len);
+            if (outer != null) {
+                outer.update(b, off, len);
+            }
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            int position = buffer.position();
+            chunk.update(buffer);
+            buffer.position(position);
+            body.update(buffer);
+            if (outer != null) {
+                buffer.position(position);
+                outer.update(buffer);
+            }
+        }
+
+        /**
+         * Get the checksum of the chunk
+         *
+         * @return Value of the chunk's checksum
+         */
+        @Override
+        public long getValue() {
+            return chunk.getValue();
+        }
+
+        /**
+         * Resets the checksum of the chunk
+         */
+        @Override
+        public void reset() {
+            chunk.reset();
+        }
+    }
+}
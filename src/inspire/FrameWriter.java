@@ -0,0 +1,736 @@
+package inspire;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes the transfer protocol to a channel through a single
+ * buffer taken from the shared {@code BufferPool}. Header fields
+ * and file bodies are coalesced in the buffer, which is only
+ * written out when it is full or when {@code flush} is called,
+ * so a batch of small files leaves in full segments instead of
+ * one segment per field. With body checksums, every body is followed
+ * by the CRC32C of its bytes, computed as they are sent; with chunk
+ * checksums, every chunk of a body is followed by the CRC32C of its raw
+ * bytes too. In zero-copy mode, full chunks which are not
+ * compressed are written straight from a read-only mapping of the file,
+ * their checksums computed over the same mapping, so that no body byte
+ * is copied through the buffer; each goes out in one gathered write
+ * with whatever is buffered before it, its tag and the previous chunk's
+ * checksum, so that no tiny segment is sent ahead of every chunk.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniServer
+ * @see FrameReader
+ * @since 18-10-2026
+ */
+class FrameWriter {
+    /**
+     * Size of the mapped windows which raw chunks are sent from, and bodies are checksummed over
+     */
+    private static final int WINDOW_SIZE = 32 * 1024 * 1024;
+    /**
+     * Largest number of bytes handed to one {@code transferTo} call, so that
+     * the body count moves on while a long range is being sent
+     */
+    private static final long MAX_TRANSFER = 4 * 1024 * 1024;
+
+    /**
+     * Channel to write to
+     */
+    private final WritableByteChannel channel;
+    /**
+     * Flag to indicate whether large file bodies and raw chunks are sent without going through the buffer
+     */
+    private final boolean zeroCopy;
+    /**
+     * Buffer holding bytes not written yet (always ready for putting)
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Protocol version which decides how counts, sizes and strings are framed
+     */
+    private int version;
+    /**
+     * Compressor for file bodies ({@code null} if bodies are sent as they are)
+     */
+    private AdaptiveDeflater deflater;
+    /**
+     * Flag to indicate whether bodies are followed by their checksums
+     */
+    private boolean bodyChecksums;
+    /**
+     * Flag to indicate whether chunks are followed by their checksums
+     */
+    private boolean chunkChecksums;
+    /**
+     * Checksum of the chunk being written (only used with chunk checksums)
+     */
+    private final CRC32C chunkChecksum;
+    /**
+     * Checksum of the body being written (only used with body or chunk checksums)
+     */
+    private final CRC32C bodyChecksum;
+    /**
+     * Pooled buffer holding a raw chunk (only used for chunks)
+     */
+    private ByteBuffer rawChunk;
+    /**
+     * Pooled buffer holding a compressed chunk (only used with a compressor)
+     */
+    private ByteBuffer packedChunk;
+    /**
+     * Mapping of a window of the file being sent ({@code null} if none)
+     */
+    private MappedByteBuffer window;
+    /**
+     * Channel of the file {@code window} maps ({@code null} if none)
+     */
+    private FileChannel windowChannel;
+    /**
+     * Offset in the file of the start of {@code window}
+     */
+    private long windowStart;
+    /**
+     * Number of bytes written to the channel so far
+     */
+    private volatile long bytesWritten;
+    /**
+     * Number of file body bytes written so far, before compression
+     */
+    private volatile long bodyBytes;
+
+    /**
+     * Constructs a writer over a channel
+     *
+     * @param channel  Channel to write to
+     * @param zeroCopy {@code true} to send large file bodies and raw chunks without going through the buffer
+     *                 (only useful if {@code channel} is a socket channel)
+     * @throws InterruptedIOException If interrupted while waiting for a pooled buffer
+     */
+    FrameWriter(WritableByteChannel channel, boolean zeroCopy) throws InterruptedIOException {
+        this.channel = channel;
+        this.zeroCopy = zeroCopy;
+        this.buffer = BufferPool.getShared().acquireForTransfer();
+        this.version = Protocol.VERSION_1;
+        this.chunkChecksum = new CRC32C();
+        this.bodyChecksum = new CRC32C();
+    }
+
+    /**
+     * Constructs a writer with a small unpooled buffer, for
+     * writing handshakes and replies on the receiving side
+     *
+     * @param channel    Channel to write to
+     * @param bufferSize Size of the buffer
+     */
+    FrameWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.zeroCopy = false;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.version = Protocol.VERSION_1;
+        this.chunkChecksum = new CRC32C();
+        this.bodyChecksum = new CRC32C();
+    }
+
+    /**
+     * Set the protocol version negotiated for the connection
+     *
+     * @param version Protocol version
+     */
+    void setVersion(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Set the compressor, once compression has been negotiated for the connection.
+     * File bodies are then sent as a sequence of chunks.
+     *
+     * @param deflater Compressor for file bodies
+     */
+    void setDeflater(AdaptiveDeflater deflater) {
+        this.deflater = deflater;
+    }
+
+    /**
+     * Set body checksums flag, once they have been negotiated for the
+     * connection. Every file body is then followed by the CRC32C of the
+     * bytes sent in it, computed as they are sent.
+     *
+     * @param bodyChecksums {@code true} to follow bodies with their checksums
+     */
+    void setBodyChecksums(boolean bodyChecksums) {
+        this.bodyChecksums = bodyChecksums;
+    }
+
+    /**
+     * Set chunk checksums flag, once they have been negotiated for the
+     * connection. File bodies are then sent as a sequence of chunks, each
+     * followed by its CRC32C, and then the CRC32C of the whole body.
+     *
+     * @param chunkChecksums {@code true} to follow chunks and bodies with their checksums
+     */
+    void setChunkChecksums(boolean chunkChecksums) {
+        this.chunkChecksums = chunkChecksums;
+    }
+
+    /**
+     * Get number of bytes written to the channel so far
+     *
+     * @return Bytes written
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Get number of file body bytes written so far, before compression
+     * (counted as they are buffered)
+     *
+     * @return Body bytes written
+     */
+    long getBodyBytes() {
+        return bodyBytes;
+    }
+
+    /**
+     * Makes sure that at least {@code count} bytes can be put into the buffer
+     *
+     * @param count Number of bytes required
+     * @throws IOException If the channel cannot be written
+     */
+    private void ensure(int count) throws IOException {
+        if (buffer.remaining() < count) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer
+     *
+     * @throws IOException If the channel cannot be written
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        long start = System.nanoTime();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (deflater != null) {
+            deflater.recordWrite(length, System.nanoTime() - start);
+        }
+        bytesWritten += length;
+        buffer.clear();
+    }
+
+    /**
+     * Puts a single byte
+     *
+     * @param value Value to be written
+     * @throws IOException If the channel cannot be written
+     */
+    void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Puts an unsigned LEB128 varint
+     *
+     * @param value Value to be written (treated as unsigned)
+     * @throws IOException If the channel cannot be written
+     */
+    void writeVarint(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Puts a count (of receivers or files) as framed by the protocol version
+     *
+     * @param count Count to be written
+     * @throws IOException If the channel cannot be written
+     */
+    void writeCount(int count) throws IOException {
+        if (version == Protocol.VERSION_1) {
+            writeInt(count);
+        } else {
+            writeVarint(count);
+        }
+    }
+
+    /**
+     * Puts a file size as framed by the protocol version
+     *
+     * @param size Size to be written
+     * @throws IOException If the channel cannot be written
+     */
+    void writeSize(long size) throws IOException {
+        if (version == Protocol.VERSION_1) {
+            writeLong(size);
+        } else {
+            writeVarint(size);
+        }
+    }
+
+    /**
+     * Puts a string as framed by the protocol version
+     *
+     * @param string String to be written
+     * @throws IOException If the channel cannot be written
+     */
+    void writeString(String string) throws IOException {
+        if (version == Protocol.VERSION_1) {
+            writeInt(string.length());
+            writeChars(string);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.capacity() - 10) {
+            throw new IOException("String too long: " + bytes.length);
+        }
+        writeVarint(bytes.length);
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Puts a big-endian int
+     *
+     * @param value Value to be written
+     * @throws IOException If the channel cannot be written
+     */
+    void writeInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Puts a big-endian long
+     *
+     * @param value Value to be written
+     * @throws IOException If the channel cannot be written
+     */
+    void writeLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Puts a string as UTF-16 chars
+     *
+     * @param string String to be written
+     * @throws IOException If the channel cannot be written
+     */
+    void writeChars(String string) throws IOException {
+        for (int i = 0; i < string.length(); i++) {
+            ensure(2);
+            buffer.putChar(string.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a file body. Small files are read into the buffer behind
+     * their header; once a file fills a whole buffer on its own, the
+     * rest of it is sent with {@code FileChannel.transferTo} in zero-copy mode.
+     * With a compressor or chunk checksums, the body is sent as chunks instead,
+     * full chunks which are not compressed going straight from a mapping.
+     * With body checksums, the body is followed by its checksum.
+     *
+     * @param fileChannel Channel of the file to be sent
+     * @param position    Offset in the file to start from (0 unless resuming)
+     * @param size        Size of the file
+     * @throws IOException If the file or the channel cannot be accessed
+     */
+    void writeFile(FileChannel fileChannel, long position, long size) throws IOException {
+        if (deflater != null || chunkChecksums) {
+            writeChunks(fileChannel, position, size);
+            return;
+        }
+        bodyChecksum.reset();
+        // Offset of the file sent or buffered so far
+        long count = position;
+        while (count < size) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            if (zeroCopy && buffer.position() == 0 && size - count >= buffer.capacity()) {
+                while (count < size) {
+                    // Window by window, so that transferTo finds the bytes just checksummed in the page cache
+                    long length = bodyChecksums ? Math.min(WINDOW_SIZE, size - count) : size - count;
+                    if (bodyChecksums) {
+                        bodyChecksum.update(mapChunk(fileChannel, count, (int) length));
+                    }
+                    transfer(fileChannel, count, length);
+                    count += length;
+                }
+                break;
+            }
+            if (size - count < buffer.remaining()) {
+                buffer.limit(buffer.position() + (int) (size - count));
+            }
+            int start = buffer.position();
+            // Number of bytes read
+            int bytesRead = fileChannel.read(buffer, count);
+            buffer.limit(buffer.capacity());
+            if (bytesRead < 0) {
+                throw new EOFException("File shrank while being sent");
+            }
+            if (bodyChecksums) {
+                ByteBuffer read = buffer.duplicate();
+                read.limit(start + bytesRead);
+                read.position(start);
+                bodyChecksum.update(read);
+            }
+            count += bytesRead;
+            bodyBytes += bytesRead;
+        }
+        writeBodyChecksum();
+    }
+
+    /**
+     * Writes a file body as chunks of up to {@code Protocol.CHUNK_SIZE} raw bytes.
+     * Each chunk starts with a varint tag holding the payload length shifted left
+     * by one, with the low bit set if the payload is compressed; a compressed
+     * payload is preceded by its raw length as a varint. With chunk checksums,
+     * each chunk is followed by the CRC32C of its raw bytes and the body by
+     * the CRC32C of all of them.
+     *
+     * @param fileChannel Channel of the file to be sent
+     * @param position    Offset in the file to start from (0 unless resuming)
+     * @param size        Size of the file
+     * @throws IOException If the file or the channel cannot be accessed
+     */
+    private void writeChunks(FileChannel fileChannel, long position, long size) throws IOException {
+        bodyChecksum.reset();
+        // Offset of the file sent or buffered so far
+        long count = position;
+        while (count < size) {
+            int length = (int) Math.min(Protocol.CHUNK_SIZE, size - count);
+            if (zeroCopy && length == Protocol.CHUNK_SIZE && (deflater == null || deflater.skipChunk())) {
+                writeRawChunk(fileChannel, count, length);
+            } else {
+                writeChunk(readChunk(fileChannel, count, length));
+            }
+            count += length;
+        }
+        writeBodyChecksum();
+    }
+
+    /**
+     * Sends a range of a file with {@code FileChannel.transferTo}, after
+     * whatever is buffered
+     *
+     * @param fileChannel Channel of the file
+     * @param position    Offset of the range in the file
+     * @param length      Length of the range
+     * @throws IOException If the file or the channel cannot be accessed
+     */
+    private void transfer(FileChannel fileChannel, long position, long length) throws IOException {
+        flush();
+        long start = System.nanoTime();
+        long end = position + length;
+        while (position < end) {
+            long bytesSent = fileChannel.transferTo(position, Math.min(MAX_TRANSFER, end - position), channel);
+            if (bytesSent <= 0 && fileChannel.size() <= position) {
+                throw new EOFException("File shrank while being sent");
+            }
+            position += bytesSent;
+            bytesWritten += bytesSent;
+            bodyBytes += bytesSent;
+        }
+        if (deflater != null) {
+            deflater.recordWrite(length, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes one chunk of a file body as it is, straight from a read-only
+     * mapping of the file
+     *
+     * @param fileChannel Channel of the file
+     * @param position    Offset of the chunk in the file
+     * @param length      Length of the chunk
+     * @throws IOException If the file or the channel cannot be accessed
+     */
+    private void writeRawChunk(FileChannel fileChannel, long position, int length) throws IOException {
+        writeRawChunk(mapChunk(fileChannel, position, length));
+    }
+
+    /**
+     * Get a chunk of a file from a read-only mapping of the window around
+     * it, mapping the next window if the chunk lies outside the current one
+     *
+     * @param fileChannel Channel of the file
+     * @param position    Offset of the chunk in the file
+     * @param length      Length of the chunk
+     * @return Buffer holding the chunk from position 0 to its limit
+     * @throws IOException If the file cannot be mapped, or has shrunk
+     */
+    private ByteBuffer mapChunk(FileChannel fileChannel, long position, int length) throws IOException {
+        if (window == null || fileChannel != windowChannel || position < windowStart
+                || position + length > windowStart + window.capacity()) {
+            long fileSize = fileChannel.size();
+            if (position + length > fileSize) {
+                throw new EOFException("File shrank while being sent");
+            }
+            // Unmapped once unreachable
+            window = fileChannel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(WINDOW_SIZE, fileSize - position));
+            windowChannel = fileChannel;
+            windowStart = position;
+        }
+        ByteBuffer chunk = window.duplicate();
+        chunk.position((int) (position - windowStart));
+        chunk.limit(chunk.position() + length);
+        return chunk.slice();
+    }
+
+    /**
+     * Reads a chunk of a file into the raw chunk buffer
+     *
+     * @param fileChannel Channel of the file
+     * @param position    Offset of the chunk in the file
+     * @param length      Length of the chunk
+     * @return The raw chunk buffer, holding the chunk from position to limit
+     * @throws IOException If the file cannot be read
+     */
+    private ByteBuffer readChunk(FileChannel fileChannel, long position, int length) throws IOException {
+        if (rawChunk == null) {
+            rawChunk = BufferPool.getShared().acquireForTransfer();
+        }
+        rawChunk.clear();
+        rawChunk.limit(length);
+        while (rawChunk.hasRemaining()) {
+            if (fileChannel.read(rawChunk, position + rawChunk.position()) < 0) {
+                throw new EOFException("File shrank while being sent");
+            }
+        }
+        rawChunk.flip();
+        return rawChunk;
+    }
+
+    /**
+     * Writes a chunk of a file again, as asked for by a receiver which
+     * found it damaged; it is framed as in a body (chunk checksums only)
+     *
+     * @param fileChannel Channel of the file
+     * @param position    Offset of the chunk in the file
+     * @param length      Length of the chunk
+     * @throws IOException If the file or the channel cannot be accessed
+     */
+    void writeChunkAt(FileChannel fileChannel, long position, int length) throws IOException {
+        writeChunk(readChunk(fileChannel, position, length));
+    }
+
+    /**
+     * Writes the checksum of the body just written (body or chunk checksums only)
+     *
+     * @throws IOException If the channel cannot be written
+     */
+    private void writeBodyChecksum() throws IOException {
+        if (bodyChecksums || chunkChecksums) {
+            writeInt((int) bodyChecksum.getValue());
+        }
+    }
+
+    /**
+     * Writes a file body held in a buffer shared with other writers, such as
+     * a mapping of the file. The buffer is read through a cursor of its own,
+     * so neither its position nor its limit is changed.
+     *
+     * @param source   Buffer holding the whole file from index 0
+     * @param position Offset in the file to start from (0 unless resuming)
+     * @param size     Size of the file
+     * @throws IOException If the channel cannot be written
+     */
+    void writeFile(ByteBuffer source, long position, long size) throws IOException {
+        ByteBuffer cursor = source.duplicate();
+        cursor.limit((int) size);
+        cursor.position((int) position);
+        if (deflater != null || chunkChecksums) {
+            bodyChecksum.reset();
+            while (cursor.hasRemaining()) {
+                ByteBuffer chunk = cursor.slice();
+                chunk.limit(Math.min(Protocol.CHUNK_SIZE, cursor.remaining()));
+                cursor.position(cursor.position() + chunk.remaining());
+                if (zeroCopy && chunk.remaining() == Protocol.CHUNK_SIZE
+                        && (deflater == null || deflater.skipChunk())) {
+                    writeRawChunk(chunk);
+                } else {
+                    writeChunk(chunk);
+                }
+            }
+            writeBodyChecksum();
+            return;
+        }
+        bodyChecksum.reset();
+        while (cursor.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            if (zeroCopy && buffer.position() == 0 && cursor.remaining() >= buffer.capacity()) {
+                if (bodyChecksums) {
+                    bodyChecksum.update(cursor.duplicate());
+                }
+                // Straight from the shared buffer to the channel
+                while (cursor.hasRemaining()) {
+                    int bytesSent = channel.write(cursor);
+                    bytesWritten += bytesSent;
+                    bodyBytes += bytesSent;
+                }
+                break;
+            }
+            ByteBuffer part = cursor.slice();
+            part.limit(Math.min(buffer.remaining(), cursor.remaining()));
+            cursor.position(cursor.position() + part.remaining());
+            bodyBytes += part.remaining();
+            if (bodyChecksums) {
+                bodyChecksum.update(part.duplicate());
+            }
+            buffer.put(part);
+        }
+        writeBodyChecksum();
+    }
+
+    /**
+     * Updates the checksum of the body with a chunk, if bodies or chunks
+     * are followed by their checksums, and computes the chunk's own
+     *
+     * @param raw Raw bytes of the chunk (position to limit, left as they are)
+     * @return Checksum of the chunk (0 unless chunk checksums are on)
+     */
+    private int checksumChunk(ByteBuffer raw) {
+        int position = raw.position();
+        int checksum = 0;
+        if (chunkChecksums) {
+            chunkChecksum.reset();
+            chunkChecksum.update(raw);
+            raw.position(position);
+            checksum = (int) chunkChecksum.getValue();
+        }
+        if (chunkChecksums || bodyChecksums) {
+            bodyChecksum.update(raw);
+            raw.position(position);
+        }
+        return checksum;
+    }
+
+    /**
+     * Writes one chunk of a file body as it is, straight from a buffer
+     * shared with other writers, such as a mapping of the file
+     *
+     * @param raw Chunk of {@code Protocol.CHUNK_SIZE} bytes (position to limit, consumed)
+     * @throws IOException If the channel cannot be written
+     */
+    private void writeRawChunk(ByteBuffer raw) throws IOException {
+        int length = raw.remaining();
+        int checksum = checksumChunk(raw);
+        writeVarint((long) length << 1);
+        drain(raw);
+        bodyBytes += length;
+        if (chunkChecksums) {
+            // Buffered, so it leaves with whatever follows the chunk
+            writeInt(checksum);
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer followed by a chunk, in one
+     * gathered write where the channel supports it
+     *
+     * @param chunk Bytes to be written after the buffer (position to limit, consumed)
+     * @throws IOException If the channel cannot be written
+     */
+    private void drain(ByteBuffer chunk) throws IOException {
+        buffer.flip();
+        long start = System.nanoTime();
+        int length = buffer.remaining() + chunk.remaining();
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gatheringChannel = (GatheringByteChannel) channel;
+            ByteBuffer[] sources = {buffer, chunk};
+            while (buffer.hasRemaining() || chunk.hasRemaining()) {
+                gatheringChannel.write(sources);
+            }
+        } else {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        }
+        if (deflater != null) {
+            deflater.recordWrite(length, System.nanoTime() - start);
+        }
+        bytesWritten += length;
+        buffer.clear();
+    }
+
+    /**
+     * Writes one chunk of a file body, compressed if there is a compressor
+     * and it shrinks, and followed by its checksum if chunk checksums are on
+     *
+     * @param raw Chunk of at most {@code Protocol.CHUNK_SIZE} bytes (position to limit)
+     * @throws IOException If the channel cannot be written
+     */
+    private void writeChunk(ByteBuffer raw) throws IOException {
+        int checksum = checksumChunk(raw);
+        boolean compressed = false;
+        if (deflater != null) {
+            if (packedChunk == null) {
+                packedChunk = BufferPool.getShared().acquireForTransfer();
+            }
+            compressed = deflater.compress(raw, packedChunk);
+        }
+        ByteBuffer payload = compressed ? packedChunk : raw;
+        int rawLength = raw.remaining();
+        ensure(24 + payload.remaining());
+        writeVarint(((long) payload.remaining() << 1) | (compressed ? 1 : 0));
+        if (compressed) {
+            writeVarint(rawLength);
+        }
+        buffer.put(payload);
+        if (chunkChecksums) {
+            buffer.putInt(checksum);
+        }
+        bodyBytes += rawLength;
+    }
+
+    /**
+     * Writes out everything buffered so far (at the end of a batch)
+     *
+     * @throws IOException If the channel cannot be written
+     */
+    void flush() throws IOException {
+        if (buffer.position() > 0) {
+            drain();
+        }
+    }
+
+    /**
+     * Returns the buffer to the pool; the channel is left open
+     * and anything not flushed is discarded
+     */
+    void close() {
+        window = null;
+        windowChannel = null;
+        BufferPool.getShared().release(buffer);
+        BufferPool.getShared().release(rawChunk);
+        BufferPool.getShared().release(packedChunk);
+    }
+}
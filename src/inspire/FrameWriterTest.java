@@ -0,0 +1,117 @@
+package inspire;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test for {@link FrameWriter} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class FrameWriterTest {
+    private Path source;
+    private Path target;
+
+    @Before
+    public void setUp() throws Exception {
+        source = Files.createTempFile("FrameWriterTest", ".bin");
+        target = Files.createTempFile("FrameWriterTest", ".bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+    }
+
+    @Test
+    public void gatherChunkHeaders() throws Exception {
+        byte[] data = new byte[4 * Protocol.CHUNK_SIZE];
+        new Random(7).nextBytes(data);
+        Files.write(source, data);
+        RecordingChannel channel = new RecordingChannel();
+        FrameWriter frameWriter = new FrameWriter(channel, true);
+        frameWriter.setVersion(Protocol.VERSION_2);
+        frameWriter.setChunkChecksums(true);
+        FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+        try {
+            frameWriter.writeFile(sourceChannel, 0, data.length);
+            frameWriter.flush();
+        } finally {
+            sourceChannel.close();
+            frameWriter.close();
+        }
+        // One write per chunk, its tag and the previous trailer gathered with it, and the last trailers
+        Assert.assertEquals(channel.writes.size(), 5);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(channel.writes.get(i) > Protocol.CHUNK_SIZE);
+        }
+        FrameReader frameReader = new FrameReader(Channels.newChannel(
+                new ByteArrayInputStream(channel.output.toByteArray())));
+        frameReader.setVersion(Protocol.VERSION_2);
+        frameReader.setChunkChecksums(true);
+        FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.WRITE);
+        try {
+            frameReader.readTo(targetChannel, data.length, null);
+            Assert.assertTrue(frameReader.finishBody().isEmpty());
+        } finally {
+            targetChannel.close();
+            frameReader.close();
+        }
+        Assert.assertArrayEquals(Files.readAllBytes(target), data);
+    }
+
+    private static class RecordingChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private final List<Long> writes = new ArrayList<>();
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            long count = 0;
+            for (int i = offset; i < offset + length; i++) {
+                while (sources[i].hasRemaining()) {
+                    output.write(sources[i].get());
+                    count++;
+                }
+            }
+            writes.add(count);
+            return count;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            return (int) write(new ByteBuffer[]{source});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
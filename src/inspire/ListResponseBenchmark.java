@@ -0,0 +1,103 @@
+package inspire;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Latency of {@code getlist} answered by a {@link ServerModel} with a large
+ * client list, while the list stays the same (served from the encoded
+ * snapshot) and while it changes before every request (encoded again).
+ * Usage: {@code ListResponseBenchmark [clients] [requests]}
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see ServerModel
+ * @since 18-10-2026
+ */
+class ListResponseBenchmark {
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        List<Person> clientList = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            clientList.add(new Person("Robot " + i, "Robo" + i));
+        }
+        List<Person> otherList = new ArrayList<>(clientList);
+        otherList.remove(otherList.size() - 1);
+        File folder = Files.createTempDirectory("__ListResponseBenchmark__").toFile();
+        ServerModel serverModel = new ServerModel(new ArrayList<>(clientList), folder.getPath(), 0, 0);
+        try (Socket socket = new Socket("localhost", serverModel.getControlPort())) {
+            PrintWriter printWriter = new PrintWriter(socket.getOutputStream());
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // Warm up both paths
+            measure(serverModel, null, printWriter, bufferedReader, requests, clientList, otherList);
+            measure(serverModel, null, printWriter, bufferedReader, requests, null, null);
+            measure(serverModel, "Unchanged list", printWriter, bufferedReader, requests, null, null);
+            measure(serverModel, "Changed list", printWriter, bufferedReader, requests, clientList, otherList);
+        } finally {
+            serverModel.close();
+            delete(folder);
+        }
+    }
+
+    /**
+     * Deletes a file or a folder with everything in it
+     *
+     * @param file File or folder to be deleted
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Requests the whole list again and again and prints the latencies
+     *
+     * @param serverModel    Server answering the requests
+     * @param name           Name of the run ({@code null} to print nothing)
+     * @param printWriter    Writer of the control connection
+     * @param bufferedReader Reader of the control connection
+     * @param requests       Number of requests
+     * @param clientList     List to alternate with {@code otherList} before every request
+     *                       ({@code null} to leave the list as it is)
+     * @param otherList      The other list
+     * @throws Exception If the connection fails
+     */
+    private static void measure(ServerModel serverModel, String name, PrintWriter printWriter,
+                                BufferedReader bufferedReader, int requests, List<Person> clientList,
+                                List<Person> otherList) throws Exception {
+        long[] latencies = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            if (clientList != null) {
+                serverModel.setClientList(i % 2 == 0 ? otherList : clientList);
+            }
+            long start = System.nanoTime();
+            printWriter.println("getlist");
+            printWriter.flush();
+            String line;
+            do {
+                // Change notices are skipped along with the list
+                line = bufferedReader.readLine();
+            } while (!line.startsWith("VERSION"));
+            latencies[i] = System.nanoTime() - start;
+        }
+        if (name == null) {
+            return;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-15s p50 %7.3f ms   p90 %7.3f ms   p99 %7.3f ms%n", name, latencies[requests / 2] / 1e6,
+                latencies[requests * 9 / 10] / 1e6, latencies[requests * 99 / 100] / 1e6);
+    }
+}
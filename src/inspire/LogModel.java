@@ -0,0 +1,202 @@
+package inspire;
+
+import javax.swing.*;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Log of the application activity, shown in a {@code JList}, along with
+ * the status bar. The log keeps a fixed number of the latest entries in a
+ * ring, dropping the oldest, so a long-running application does not grow
+ * it without end, and the list only renders the entries in view. Entries
+ * and status may be given on any thread; they are queued, and applied on
+ * the event dispatch thread by one task, which is posted only when none
+ * is pending, so a burst of updates costs one repaint rather than one each.
+ * The queue holds no more entries than the ring, dropping the oldest, so
+ * that a busy event dispatch thread does not let it grow either.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see ServerView
+ * @see ClientView
+ * @see ProgressEvent
+ * @since 18-10-2026
+ */
+class LogModel extends AbstractListModel<String> {
+    /**
+     * Version of the serialized form
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Default number of entries kept
+     */
+    static final int DEFAULT_CAPACITY = 1000;
+    /**
+     * Format for log history timestamping
+     */
+    private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("h:mm a");
+
+    /**
+     * Entries in the ring, from {@code head} (used on the event dispatch thread only)
+     */
+    private final String[] entries;
+    /**
+     * Status bar showing the latest status
+     */
+    private final JLabel statusBar;
+    /**
+     * Entries given but not yet applied, at most as many as the ring holds
+     */
+    private final BlockingQueue<String> pendingEntries;
+    /**
+     * Flag to indicate whether a task applying the updates is pending
+     */
+    private final AtomicBoolean scheduled;
+    /**
+     * Task applying the updates on the event dispatch thread
+     */
+    private final Runnable flusher;
+    /**
+     * Latest status not yet shown ({@code null} if none)
+     */
+    private final AtomicReference<String> pendingStatus;
+    /**
+     * Index in the ring of the oldest entry (used on the event dispatch thread only)
+     */
+    private int head;
+    /**
+     * Number of entries in the ring (used on the event dispatch thread only)
+     */
+    private int size;
+
+    /**
+     * Constructs an empty log
+     *
+     * @param capacity  Number of entries kept, at least 1
+     * @param statusBar Status bar showing the latest status
+     */
+    LogModel(int capacity, JLabel statusBar) {
+        this.entries = new String[capacity];
+        this.statusBar = statusBar;
+        this.pendingEntries = new ArrayBlockingQueue<>(capacity);
+        this.scheduled = new AtomicBoolean();
+        this.pendingStatus = new AtomicReference<>();
+        this.flusher = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Shows a status in the status bar and logs it with the time; may be called on any thread
+     *
+     * @param status Status of the application
+     */
+    void log(String status) {
+        String entry = timeFormatter.format(LocalTime.now()) + "   " + status;
+        // Entries older than a full ring would be dropped when applied anyway
+        while (!pendingEntries.offer(entry)) {
+            pendingEntries.poll();
+        }
+        setStatus(status);
+    }
+
+    /**
+     * Shows a status in the status bar without logging it, as for frequent
+     * progress; may be called on any thread
+     *
+     * @param status Status of the application
+     */
+    void setStatus(String status) {
+        pendingStatus.set(status);
+        if (scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(flusher);
+        }
+    }
+
+    /**
+     * Removes every entry; called on the event dispatch thread
+     */
+    void clear() {
+        pendingEntries.clear();
+        int oldSize = size;
+        head = 0;
+        size = 0;
+        Arrays.fill(entries, null);
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+    }
+
+    /**
+     * Get number of entries given but not yet applied
+     *
+     * @return Pending entry count
+     */
+    int getPendingCount() {
+        return pendingEntries.size();
+    }
+
+    /**
+     * Get number of entries
+     *
+     * @return Entry count
+     */
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get an entry
+     *
+     * @param index Index of the entry, from the oldest
+     * @return The entry
+     */
+    @Override
+    public String getElementAt(int index) {
+        return entries[(head + index) % entries.length];
+    }
+
+    /**
+     * Applies the queued entries and the latest status, telling the list
+     * what was dropped and what was added
+     */
+    private void flush() {
+        // Before draining, so that updates given from now on post another task
+        scheduled.set(false);
+        String status = pendingStatus.getAndSet(null);
+        if (status != null) {
+            statusBar.setText(status);
+        }
+        int oldSize = size;
+        int dropped = 0;
+        String entry;
+        while ((entry = pendingEntries.poll()) != null) {
+            if (size == entries.length) {
+                entries[head] = entry;
+                head = (head + 1) % entries.length;
+                dropped++;
+            } else {
+                entries[(head + size) % entries.length] = entry;
+                size++;
+            }
+        }
+        // Old entries dropped, and new entries still in the ring
+        int droppedOld = Math.min(dropped, oldSize);
+        int kept = oldSize - droppedOld;
+        if (droppedOld > 0) {
+            fireIntervalRemoved(this, 0, droppedOld - 1);
+        }
+        if (size > kept) {
+            fireIntervalAdded(this, kept, size - 1);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package inspire;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+/**
+ * Test for {@link LogModel} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class LogModelTest {
+    private JLabel statusBar;
+    private LogModel logModel;
+    private int events;
+
+    @Before
+    public void setUp() throws Exception {
+        statusBar = new JLabel();
+        logModel = new LogModel(4, statusBar);
+        logModel.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                events++;
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                events++;
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                events++;
+            }
+        });
+    }
+
+    @Test
+    public void keepLatestEntries() throws Exception {
+        // Given while the event dispatch thread is busy, as in a burst
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++) {
+                    logModel.log("Status " + i);
+                }
+                logModel.setStatus("Receiving a.bin: 50%");
+                Assert.assertEquals(logModel.getSize(), 0);
+                // No more queued than the ring holds
+                Assert.assertEquals(logModel.getPendingCount(), 4);
+            }
+        });
+        // Wait for the batch to be applied
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        // One batch: nothing old was dropped, so only the entries still kept were added
+        Assert.assertEquals(events, 1);
+        Assert.assertEquals(logModel.getSize(), 4);
+        Assert.assertTrue(logModel.getElementAt(0).endsWith("   Status 6"));
+        Assert.assertTrue(logModel.getElementAt(3).endsWith("   Status 9"));
+        Assert.assertEquals(statusBar.getText(), "Receiving a.bin: 50%");
+    }
+
+    @Test
+    public void wrapAround() throws Exception {
+        logModel.log("Status 0");
+        logModel.log("Status 1");
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        for (int i = 2; i < 7; i++) {
+            logModel.log("Status " + i);
+        }
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                Assert.assertEquals(logModel.getSize(), 4);
+                Assert.assertTrue(logModel.getElementAt(0).endsWith("   Status 3"));
+                Assert.assertTrue(logModel.getElementAt(3).endsWith("   Status 6"));
+                Assert.assertEquals(statusBar.getText(), "Status 6");
+                logModel.clear();
+                Assert.assertEquals(logModel.getSize(), 0);
+            }
+        });
+    }
+}
@@ -1,10 +1,32 @@
 package inspire;
 
-import java.io.DataInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.Observable;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+import java.util.zip.Inflater;
 
 /**
  * The actual client class which is responsible for
@@ -16,7 +38,7 @@ import java.util.Observable;
  * @see MiniServer
  * @since 20-12-2016
  */
-class MiniClient extends Observable implements Runnable {
+class MiniClient extends EventSource implements Runnable {
     /**
      * Notify file receive start
      */
@@ -33,6 +55,23 @@ class MiniClient extends Observable implements Runnable {
      * Notify addition to the receiver list
      */
     static final char RECEIVER_ADDED = '3';
+    /**
+     * Notify acceptance of a batch manifest (with the number of files and total bytes)
+     */
+    static final char MANIFEST_RECEIVED = '4';
+    /**
+     * Codes of the events in the notification strings of {@code Observer}s
+     */
+    private static final Map<TransferEvent.Type, Character> notificationCodes =
+            new EnumMap<>(TransferEvent.Type.class);
+
+    static {
+        notificationCodes.put(TransferEvent.Type.FILE_RECEIVE_STARTED, FILE_RECEIVE_STARTED);
+        notificationCodes.put(TransferEvent.Type.FILE_RECEIVE_FINISHED, FILE_RECEIVE_FINISHED);
+        notificationCodes.put(TransferEvent.Type.FILES_RECEIVED, FILES_RECEIVED);
+        notificationCodes.put(TransferEvent.Type.RECEIVER_ADDED, RECEIVER_ADDED);
+        notificationCodes.put(TransferEvent.Type.MANIFEST_RECEIVED, MANIFEST_RECEIVED);
+    }
 
     /**
      * Socket to receive files
@@ -42,6 +81,62 @@ class MiniClient extends Observable implements Runnable {
      * Downloads folder to save files
      */
     private final String downloadsFolder;
+    /**
+     * Transfer parameters
+     */
+    private final TransferSettings settings;
+    /**
+     * Protocol version negotiated with the sender
+     */
+    private int protocolVersion;
+    /**
+     * Protocol features negotiated with the sender
+     */
+    private long features;
+    /**
+     * Writer for the replies to the sender ({@code null} in version 1)
+     */
+    private FrameWriter replyWriter;
+    /**
+     * Time in milliseconds it took to connect to the sender (0 if unknown)
+     */
+    private long connectTime;
+    /**
+     * Decompressor for file bodies ({@code null} if compression was not negotiated)
+     */
+    private Inflater inflater;
+    /**
+     * Reader over the socket, while receiving
+     */
+    private volatile FrameReader frameReader;
+    /**
+     * Writer of the file bytes on a thread of its own ({@code null} if the reading thread writes them)
+     */
+    private volatile DiskWriter diskWriter;
+    /**
+     * Total size of the batch given by its manifest ({@code -1} if unknown)
+     */
+    private volatile long totalBytes;
+    /**
+     * Name of the file being received ({@code null} before the first)
+     */
+    private volatile String receivingFile;
+    /**
+     * Publisher of the progress of the batch ({@code null} if progress events are off)
+     */
+    private ProgressMeter progressMeter;
+    /**
+     * Body bytes received over stripes
+     */
+    private final AtomicLong stripedBytes;
+    /**
+     * Partial files of the batch, kept to resume it if the link drops
+     */
+    private final PartialStore partialStore;
+    /**
+     * Makes the batch durable before the sender is told it is through ({@code null} if none)
+     */
+    private BatchCommitter batchCommitter;
 
     /**
      * Constructs a {@code MiniClient} instance with socket and downloads folder set
@@ -50,8 +145,175 @@ class MiniClient extends Observable implements Runnable {
      * @param downloadsFolder The folder in which the received files should be stored
      */
     public MiniClient(Socket socket, String downloadsFolder) {
+        this(socket, downloadsFolder, TransferSettings.getDefault());
+    }
+
+    /**
+     * Constructs a {@code MiniClient} instance with socket, downloads folder and transfer settings set
+     *
+     * @param socket          The socket from which the received files should be read
+     * @param downloadsFolder The folder in which the received files should be stored
+     * @param settings        Transfer parameters
+     */
+    MiniClient(Socket socket, String downloadsFolder, TransferSettings settings) {
+        super(notificationCodes);
         this.socket = socket;
         this.downloadsFolder = downloadsFolder;
+        this.settings = settings;
+        this.protocolVersion = Protocol.VERSION_1;
+        this.totalBytes = -1;
+        this.partialStore = new PartialStore(downloadsFolder);
+        this.stripedBytes = new AtomicLong();
+    }
+
+    /**
+     * Set the time it took to connect to the sender, so that a slow link
+     * gives a version 1 sender longer to speak first
+     *
+     * @param connectTime Time in milliseconds (0 if unknown)
+     */
+    void setConnectTime(long connectTime) {
+        this.connectTime = connectTime;
+    }
+
+    /**
+     * Set what makes the received batch durable before the sender is told
+     * it is through; if it fails, the sender keeps the batch
+     *
+     * @param batchCommitter Committer of the batch ({@code null} for none)
+     */
+    void setBatchCommitter(BatchCommitter batchCommitter) {
+        this.batchCommitter = batchCommitter;
+    }
+
+    /**
+     * Get the protocol version negotiated with the sender
+     *
+     * @return Protocol version
+     */
+    int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Get the total size of the batch, known once its manifest has been received
+     *
+     * @return Total bytes of all files in the batch, or {@code -1} if unknown
+     */
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Get the number of file bytes received so far in this batch
+     *
+     * @return Bytes received
+     */
+    long getReceivedBytes() {
+        FrameReader reader = frameReader;
+        return (reader == null ? 0 : reader.getBodyBytes()) + stripedBytes.get();
+    }
+
+    /**
+     * Get number of times reading the socket waited for the disk to catch up
+     *
+     * @return Stall count (0 if the reading thread writes to the disk itself)
+     */
+    long getNetworkStalls() {
+        DiskWriter writer = diskWriter;
+        return writer == null ? 0 : writer.getNetworkStalls();
+    }
+
+    /**
+     * Get number of times writing to the disk waited for the socket
+     *
+     * @return Stall count (0 if the reading thread writes to the disk itself)
+     */
+    long getDiskStalls() {
+        DiskWriter writer = diskWriter;
+        return writer == null ? 0 : writer.getDiskStalls();
+    }
+
+    /**
+     * Opens a socket via a channel, so that the receive path can read
+     * from the socket channel directly
+     *
+     * @param hostName Host name to connect to
+     * @param port     Port to connect to
+     * @return The connected socket
+     * @throws IOException If the connection cannot be made
+     */
+    static Socket connect(String hostName, int port) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(hostName, port);
+        if (address.isUnresolved()) {
+            throw new UnknownHostException(hostName);
+        }
+        return SocketChannel.open(address).socket();
+    }
+
+    /**
+     * Opens a socket via a channel, giving up if the connection is not
+     * made in time
+     *
+     * @param hostName Host name to connect to
+     * @param port     Port to connect to
+     * @param timeout  Time to wait in milliseconds
+     * @return The connected socket
+     * @throws IOException If the connection cannot be made in time
+     */
+    static Socket connect(String hostName, int port, int timeout) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(hostName, port);
+        if (address.isUnresolved()) {
+            throw new UnknownHostException(hostName);
+        }
+        SocketChannel socketChannel = SocketChannel.open();
+        try {
+            socketChannel.socket().connect(address, timeout);
+        } catch (IOException e) {
+            socketChannel.close();
+            throw e;
+        }
+        return socketChannel.socket();
+    }
+
+    /**
+     * Says hello if the sender stays silent, and reads its reply.
+     * Senders which start writing straight away speak version 1, and so
+     * do senders whose first bytes are not a reply, as when a version 1
+     * sender's first frame was still on its way when the hello was sent.
+     * The sender is given the configured delay plus two connect times,
+     * as its first frame takes about a round trip after the connection.
+     *
+     * @param socketChannel Channel of the socket ({@code null} if it has none)
+     * @param frameReader   Reader over the socket
+     * @throws IOException If the handshake fails
+     */
+    private void negotiate(SocketChannel socketChannel, FrameReader frameReader) throws IOException {
+        if (socketChannel == null || settings.getProtocolVersion() < Protocol.VERSION_2
+                || Protocol.waitForData(socketChannel, settings.getHandshakeDelay() + 2 * connectTime)) {
+            return;
+        }
+        replyWriter = new FrameWriter(socketChannel, 256);
+        replyWriter.writeInt(Protocol.MAGIC);
+        replyWriter.writeByte(settings.getProtocolVersion());
+        replyWriter.writeVarint(settings.getFeatures());
+        replyWriter.flush();
+        if (frameReader.peekInt() != Protocol.MAGIC) {
+            // A late version 1 sender: the int is its receiver count, left to be read as such
+            replyWriter = null;
+            return;
+        }
+        frameReader.readInt();
+        protocolVersion = frameReader.readByte();
+        features = frameReader.readVarint() & settings.getFeatures();
+        frameReader.setVersion(protocolVersion);
+        if ((features & Protocol.FEATURE_DEFLATE) != 0) {
+            inflater = new Inflater(true);
+            frameReader.setInflater(inflater);
+        }
+        if ((features & Protocol.FEATURE_CHUNK_CRC) != 0) {
+            frameReader.setChunkChecksums(true);
+        }
     }
 
     /**
@@ -60,67 +322,569 @@ class MiniClient extends Observable implements Runnable {
     @Override
     public void run() {
         try {
-            // The number of receiver clients (applicable to Server only)
-            DataInputStream dataInputStream = new DataInputStream(socket.getInputStream());
-            int receiverSize = dataInputStream.readInt();
-            StringBuilder sb;
-            if (receiverSize != 0) {
-                for (int i = 0; i < receiverSize; i++) {
-                    // Length of the receiver client host name
-                    int receiverNameLength = dataInputStream.readInt();
-                    sb = new StringBuilder();
-                    for (int j = 0; j < receiverNameLength; j++) {
-                        sb.append(dataInputStream.readChar());
+            // Read from the socket channel when there is one, or else from its stream
+            SocketChannel socketChannel = socket.getChannel();
+            ReadableByteChannel channel = socketChannel;
+            if (channel == null) {
+                channel = Channels.newChannel(socket.getInputStream());
+            }
+            frameReader = new FrameReader(channel);
+            if (settings.getWriteQueueDepth() > 0) {
+                // Keep draining the socket while the disk is slow
+                diskWriter = new DiskWriter(settings.getWriteQueueDepth());
+                frameReader.setDiskWriter(diskWriter);
+            }
+            try {
+                negotiate(socketChannel, frameReader);
+                receive(frameReader);
+                if (progressMeter != null) {
+                    progressMeter.stop();
+                }
+            } finally {
+                if (progressMeter != null) {
+                    progressMeter.cancel();
+                }
+                frameReader.close();
+                if (diskWriter != null) {
+                    diskWriter.close();
+                }
+                if (inflater != null) {
+                    inflater.end();
+                }
+                // Close the socket along with its channel, also when the batch failed, so that the
+                // sender does not wait on a connection nobody reads any more
+                socket.close();
+            }
+            publish(TransferEvent.of(TransferEvent.Type.FILES_RECEIVED));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts publishing the progress of the batch, if progress events are on
+     *
+     * @param totalBytes Number of body bytes to be received ({@code -1} if unknown)
+     */
+    private void startProgress(long totalBytes) {
+        if (settings.getProgressInterval() <= 0) {
+            return;
+        }
+        progressMeter = new ProgressMeter(this, false, settings.getProgressInterval()) {
+            @Override
+            long countBytes() {
+                return getReceivedBytes();
+            }
+
+            @Override
+            String currentFile() {
+                return receivingFile;
+            }
+        };
+        progressMeter.start(totalBytes);
+    }
+
+    /**
+     * Reads the manifest of the batch, preallocates the files it lists
+     * and tells the sender whether the batch will be accepted, followed
+     * by the offsets to resume from if resuming was negotiated
+     *
+     * @param frameReader Reader over the socket
+     * @param names       Array to fill with the file names
+     * @param sizes       Array to fill with the file sizes
+     * @param digests     Array to fill with the hexadecimal SHA-256 of the files
+     * @param ids         Array to fill with the transfer IDs ({@code null} unless resuming)
+     * @param offsets     Array to fill with the committed offsets ({@code null} unless resuming)
+     * @throws IOException If the batch is rejected or the socket cannot be accessed
+     */
+    private void receiveManifest(FrameReader frameReader, String[] names, long[] sizes, String[] digests,
+                                 String[] ids, long[] offsets) throws IOException {
+        long total = 0;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = frameReader.readString();
+            sizes[i] = frameReader.readSize();
+            digests[i] = frameReader.readString();
+            total += sizes[i];
+        }
+        // Reason for rejecting the batch (null if it can be accepted)
+        String reason = null;
+        // Bytes still to be received
+        long needed = total;
+        try {
+            if (ids != null) {
+                for (int i = 0; i < names.length; i++) {
+                    ids[i] = PartialStore.transferId(names[i], sizes[i], digests[i]);
+                    offsets[i] = partialStore.getCommitted(ids[i], names[i], sizes[i]);
+                    needed -= offsets[i];
+                }
+                try {
+                    // Left by senders which never came back, or whose files have changed since
+                    partialStore.sweep(new HashSet<>(Arrays.asList(ids)), settings.getPartialExpiry());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            long usableSpace = new File(downloadsFolder).getUsableSpace();
+            if (needed > usableSpace) {
+                reason = "Not enough space in '" + downloadsFolder + "': " + needed + " bytes needed, "
+                        + usableSpace + " available";
+            } else {
+                for (int i = 0; i < names.length; i++) {
+                    if (ids != null) {
+                        if (offsets[i] < sizes[i]) {
+                            partialStore.preallocate(ids[i], sizes[i]);
+                        }
+                        continue;
+                    }
+                    RandomAccessFile randomAccessFile = new RandomAccessFile(
+                            Paths.get(downloadsFolder, names[i]).toFile(), "rw");
+                    try {
+                        randomAccessFile.setLength(sizes[i]);
+                    } finally {
+                        randomAccessFile.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            reason = "Cannot preallocate files: " + e.getMessage();
+        }
+        if (reason != null) {
+            replyWriter.writeByte(Protocol.BATCH_REJECTED);
+            replyWriter.writeString(reason);
+            replyWriter.flush();
+            throw new IOException("Batch rejected: " + reason);
+        }
+        replyWriter.writeByte(Protocol.BATCH_ACCEPTED);
+        if (offsets != null) {
+            for (long offset : offsets) {
+                replyWriter.writeSize(offset);
+            }
+        }
+        replyWriter.flush();
+        totalBytes = total;
+        publish(new TransferEvent(TransferEvent.Type.MANIFEST_RECEIVED, null, names.length, total));
+    }
+
+    /**
+     * Receives the rest of a file into its partial file, committing it every
+     * {@code checkpointInterval} bytes and when the transfer breaks off;
+     * nothing from the first damaged chunk on is committed
+     *
+     * @param frameReader Reader over the socket
+     * @param fileChannel Channel of the partial file
+     * @param id          Transfer ID of the file
+     * @param offset      Committed offset to resume from
+     * @param size        Size of the file
+     * @param checksum    Checksum to update with the bytes written
+     * @throws IOException If the socket or the file cannot be accessed
+     */
+    private void resumeTo(FrameReader frameReader, FileChannel fileChannel, String id, long offset, long size,
+                          Checksum checksum) throws IOException {
+        fileChannel.position(offset);
+        // Whole chunks, so that every step ends on a chunk boundary
+        long interval = Math.max(1, (settings.getCheckpointInterval() + Protocol.CHUNK_SIZE - 1)
+                / Protocol.CHUNK_SIZE) * Protocol.CHUNK_SIZE;
+        long bodyBytes = frameReader.getBodyBytes();
+        long committed = offset;
+        try {
+            while (committed < size) {
+                long step = Math.min(interval, size - committed);
+                frameReader.readTo(fileChannel, step, checksum);
+                committed += step;
+                partialStore.commit(id, fileChannel, Math.min(committed, frameReader.getFirstDamage()));
+                bodyBytes = frameReader.getBodyBytes();
+            }
+        } catch (IOException e) {
+            // Keep whatever reached the file before the link dropped
+            partialStore.commit(id, fileChannel, Math.min(committed + frameReader.getBodyBytes() - bodyBytes,
+                    frameReader.getFirstDamage()));
+            throw e;
+        }
+    }
+
+    /**
+     * Asks the sender for the damaged chunks again until none are left, and
+     * then checks every repaired file against its digest and completes it
+     *
+     * @param frameReader Reader over the socket
+     * @param damagedMap  Map from index of a file to its damaged chunks, emptied as they are repaired
+     * @param names       File names
+     * @param sizes       File sizes
+     * @param digests     Hexadecimal SHA-256 of the files
+     * @param ids         Transfer IDs of the files
+     * @throws IOException If the chunks are still damaged after {@code Protocol.MAX_REPAIR_ROUNDS},
+     *                     a repaired file does not match its digest, or the socket or a file cannot be accessed
+     */
+    private void repair(FrameReader frameReader, Map<Integer, List<long[]>> damagedMap, String[] names,
+                        long[] sizes, String[] digests, String[] ids) throws IOException {
+        // Files to check once repaired
+        List<Integer> repaired = new ArrayList<>(damagedMap.keySet());
+        for (int round = 0; !damagedMap.isEmpty(); round++) {
+            if (round == Protocol.MAX_REPAIR_ROUNDS) {
+                throw new IOException("Chunks still damaged after " + round + " repairs");
+            }
+            int count = 0;
+            for (List<long[]> chunks : damagedMap.values()) {
+                count += chunks.size();
+            }
+            replyWriter.writeCount(count);
+            for (Map.Entry<Integer, List<long[]>> entry : damagedMap.entrySet()) {
+                for (long[] chunk : entry.getValue()) {
+                    replyWriter.writeCount(entry.getKey());
+                    replyWriter.writeSize(chunk[0]);
+                    replyWriter.writeSize(chunk[1]);
+                }
+            }
+            replyWriter.flush();
+            Iterator<Map.Entry<Integer, List<long[]>>> iterator = damagedMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, List<long[]>> entry = iterator.next();
+                FileChannel fileChannel = FileChannel.open(partialStore.getPartPath(ids[entry.getKey()]),
+                        StandardOpenOption.WRITE);
+                try {
+                    Iterator<long[]> chunks = entry.getValue().iterator();
+                    while (chunks.hasNext()) {
+                        long[] chunk = chunks.next();
+                        if (frameReader.readChunkAt(fileChannel, chunk[0], chunk[1])) {
+                            chunks.remove();
+                        }
                     }
-                    // The client name
-                    String receiverName = sb.toString();
-                    setChanged();
-                    notifyObservers(String.valueOf(RECEIVER_ADDED) + " " + receiverName);
+                } finally {
+                    fileChannel.close();
+                }
+                if (entry.getValue().isEmpty()) {
+                    iterator.remove();
                 }
             }
-            // Number of files to receive
-            int numberOfFiles = dataInputStream.readInt();
+        }
+        replyWriter.writeCount(0);
+        replyWriter.flush();
+        for (int i : repaired) {
+            completePart(ids[i], names[i], sizes[i], digests[i]);
+            publish(new TransferEvent(TransferEvent.Type.FILE_RECEIVE_FINISHED, names[i]));
+        }
+    }
+
+    /**
+     * Checks a file against its digest, reading it back from the disk
+     *
+     * @param path   Path of the file
+     * @param size   Size of the file
+     * @param digest Hexadecimal SHA-256 of the file, as listed in the manifest
+     * @return {@code true} if the file matches its digest
+     * @throws IOException If the file cannot be read
+     */
+    private static boolean matches(Path path, long size, String digest) throws IOException {
+        MessageDigest messageDigest = BlobSpool.newDigest();
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            BlobSpool.update(messageDigest, fileChannel, size);
+        } finally {
+            fileChannel.close();
+        }
+        return BlobSpool.toHex(messageDigest.digest()).equals(digest);
+    }
+
+    /**
+     * Checks a partial file whose bytes did not all stream in over this
+     * connection against its digest, and completes it
+     *
+     * @param id     Transfer ID of the file
+     * @param name   Name of the file
+     * @param size   Size of the file
+     * @param digest Hexadecimal SHA-256 of the file, as listed in the manifest
+     * @throws IOException If the file does not match its digest, or cannot be accessed
+     */
+    private void completePart(String id, String name, long size, String digest) throws IOException {
+        if (!matches(partialStore.getPartPath(id), size, digest)) {
+            // Start over next time rather than resume a corrupt file
+            partialStore.discard(id);
+            throw new IOException("Digest mismatch for '" + name + "'");
+        }
+        partialStore.complete(id, name, size);
+    }
+
+    /**
+     * Receives the rest of a file body sent over stripes, which are opened
+     * as the sender asks for them; every range is checked as it arrives
+     *
+     * @param frameReader Reader over the socket
+     * @param path        Path of the preallocated file
+     * @param position    Offset in the file the body starts from
+     * @param size        Size of the file
+     * @param stripes     Number of stripes to open first
+     * @return Offset and length of each damaged chunk of the ranges (empty if none; always empty
+     * without chunk checksums, as a damaged range then breaks off its stripe)
+     * @throws IOException If a stripe breaks off
+     */
+    private List<long[]> receiveStriped(FrameReader frameReader, Path path, long position, long size,
+                                        int stripes) throws IOException {
+        StripeReceiver stripeReceiver = new StripeReceiver(socket.getInetAddress(), socket.getPort(),
+                frameReader.readLong(), path, position, size, protocolVersion,
+                (features & Protocol.FEATURE_CHUNK_CRC) != 0, settings, stripedBytes);
+        try {
+            stripeReceiver.open(stripes);
+            while (true) {
+                int message = frameReader.readByte();
+                if (message == Protocol.STRIPE_DONE) {
+                    break;
+                }
+                if (message != Protocol.STRIPE_OPEN) {
+                    throw new IOException("Unexpected message while striping: " + message);
+                }
+                stripeReceiver.open(1);
+            }
+            stripeReceiver.await(frameReader.readCount());
+        } finally {
+            stripeReceiver.close();
+        }
+        return stripeReceiver.getDamagedChunks();
+    }
+
+    /**
+     * Reads the receiver list and the files from the socket
+     *
+     * @param frameReader Reader over the socket
+     * @throws IOException If the socket or a file cannot be accessed
+     */
+    private void receive(FrameReader frameReader) throws IOException {
+        // The number of receiver clients (applicable to Server only)
+        int receiverSize = frameReader.readCount();
+        for (int i = 0; i < receiverSize; i++) {
+            // The client name
+            String receiverName = frameReader.readString();
+            publish(new TransferEvent(TransferEvent.Type.RECEIVER_ADDED, receiverName));
+        }
+        // Number of files to receive
+        int numberOfFiles = frameReader.readCount();
+        // Manifest entries (null if the batch has no manifest)
+        String[] names = null;
+        long[] sizes = null;
+        String[] digests = null;
+        // Transfer IDs and committed offsets (null unless resuming)
+        String[] ids = null;
+        long[] offsets = null;
+        if ((features & Protocol.FEATURE_MANIFEST) != 0) {
+            names = new String[numberOfFiles];
+            sizes = new long[numberOfFiles];
+            digests = new String[numberOfFiles];
+            if ((features & Protocol.FEATURE_RESUME) != 0) {
+                ids = new String[numberOfFiles];
+                offsets = new long[numberOfFiles];
+            }
+            receiveManifest(frameReader, names, sizes, digests, ids, offsets);
+        }
+        // Bytes to be received over this connection (-1 if unknown)
+        long remaining = -1;
+        if (sizes != null) {
+            remaining = 0;
             for (int i = 0; i < numberOfFiles; i++) {
-                // Length of the file name
-                int filenameLength = dataInputStream.readInt();
-                sb = new StringBuilder();
-                for (int j = 0; j < filenameLength; j++) {
-                    sb.append(dataInputStream.readChar());
-                }
-                // The file name
-                String fileName = sb.toString();
-                setChanged();
-                notifyObservers(String.valueOf(FILE_RECEIVE_STARTED) + " " + fileName);
-                // Size of the file
-                long size = dataInputStream.readLong();
-                // Buffer to store part of the file
-                byte[] buffer = new byte[1024 * 1024];
-                // Bytes read so far
-                long count = 0;
-                // Stream to write the file
-                FileOutputStream fileOutputStream = new FileOutputStream(downloadsFolder + "/" + fileName);
-                while (true) {
-                    // Number of bytes read
-                    int bytesRead = dataInputStream.read(buffer, 0, ((int) (size - count)) > 1024 * 1024 ? 1024 * 1024
-                            : (int) (size - count));
-                    fileOutputStream.write(buffer, 0, bytesRead);
-                    count += bytesRead;
-                    if (count == size) {
-                        break;
+                remaining += sizes[i] - (offsets == null ? 0 : offsets[i]);
+            }
+        }
+        startProgress(remaining);
+        // Map from index of a file to its damaged chunks (only used with chunk checksums)
+        Map<Integer, List<long[]>> damagedMap = new TreeMap<>();
+        for (int i = 0; i < numberOfFiles; i++) {
+            // The file name
+            String fileName = frameReader.readString();
+            receivingFile = fileName;
+            publish(new TransferEvent(TransferEvent.Type.FILE_RECEIVE_STARTED, fileName));
+            // Size of the file
+            long size = frameReader.readSize();
+            if (names != null && (!fileName.equals(names[i]) || size != sizes[i])) {
+                throw new IOException("File '" + fileName + "' does not match the manifest");
+            }
+            // Number of stripes the body is sent over (0 if it follows on this connection)
+            int stripes = (features & Protocol.FEATURE_STRIPE) != 0 ? frameReader.readCount() : 0;
+            if (ids != null) {
+                if (stripes > 0) {
+                    // If a stripe breaks off, the commit still holds for the bytes before its ranges
+                    List<long[]> damaged = receiveStriped(frameReader, partialStore.getPartPath(ids[i]),
+                            offsets[i], size, stripes);
+                    if (!damaged.isEmpty()) {
+                        // Checked and completed once its damaged chunks are sent again
+                        damagedMap.put(i, damaged);
+                        continue;
+                    }
+                    // The ranges came over other connections, so the whole file is read back
+                    completePart(ids[i], fileName, size, digests[i]);
+                } else if (offsets[i] < size) {
+                    // Checksum of the bytes received, and digest of the whole file
+                    DigestChecksum checksum = new DigestChecksum();
+                    FileChannel fileChannel = FileChannel.open(partialStore.getPartPath(ids[i]),
+                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    try {
+                        // The bytes committed before count towards the digest, and are checked with it
+                        checksum.updateDigest(fileChannel, offsets[i]);
+                        resumeTo(frameReader, fileChannel, ids[i], offsets[i], size, checksum);
+                    } finally {
+                        fileChannel.close();
+                    }
+                    if ((features & Protocol.FEATURE_CHUNK_CRC) != 0) {
+                        List<long[]> damaged = frameReader.finishBody();
+                        if (!damaged.isEmpty()) {
+                            // Checked and completed once its damaged chunks are sent again
+                            damagedMap.put(i, damaged);
+                            continue;
+                        }
+                    } else if ((int) checksum.getValue() != frameReader.readInt()) {
+                        // Start over next time rather than resume a corrupt file
+                        partialStore.discard(ids[i]);
+                        throw new IOException("Checksum mismatch for '" + fileName + "'");
+                    }
+                    if (!checksum.getDigest().equals(digests[i])) {
+                        partialStore.discard(ids[i]);
+                        throw new IOException("Digest mismatch for '" + fileName + "'");
                     }
+                    partialStore.complete(ids[i], fileName, size);
+                } else if ((features & Protocol.FEATURE_CHUNK_CRC) != 0) {
+                    // Already complete: only the checksum of the empty rest follows
+                    frameReader.finishBody();
+                } else {
+                    frameReader.readInt();
                 }
+                publish(new TransferEvent(TransferEvent.Type.FILE_RECEIVE_FINISHED, fileName));
+                continue;
+            }
+            Path path = Paths.get(downloadsFolder, fileName);
+            if (stripes > 0) {
+                // Already preallocated, as striping needs the manifest; a damaged range breaks off its stripe
+                receiveStriped(frameReader, path, 0, size, stripes);
+                if (!matches(path, size, digests[i])) {
+                    throw new IOException("Digest mismatch for '" + fileName + "'");
+                }
+                publish(new TransferEvent(TransferEvent.Type.FILE_RECEIVE_FINISHED, fileName));
+                continue;
+            }
+            // Channel to write the file
+            FileChannel fileChannel;
+            // Checksum of the bytes received, and digest of the file (null if the batch has no manifest)
+            DigestChecksum checksum = null;
+            if (names != null) {
+                // Already preallocated
+                fileChannel = FileChannel.open(path, StandardOpenOption.WRITE);
+                checksum = new DigestChecksum();
+            } else {
+                fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            try {
+                frameReader.readTo(fileChannel, size, checksum);
+            } finally {
                 // Close the file
-                fileOutputStream.close();
-                setChanged();
-                notifyObservers(String.valueOf(FILE_RECEIVE_FINISHED) + " " + fileName);
-            }
-            // Close socket's input stream and the socket itself
-            dataInputStream.close();
-            socket.close();
-            setChanged();
-            notifyObservers(String.valueOf(FILES_RECEIVED));
-        } catch (IOException e) {
-            e.printStackTrace();
+                fileChannel.close();
+            }
+            if (checksum != null) {
+                if ((int) checksum.getValue() != frameReader.readInt()) {
+                    throw new IOException("Checksum mismatch for '" + fileName + "'");
+                }
+                if (!checksum.getDigest().equals(digests[i])) {
+                    throw new IOException("Digest mismatch for '" + fileName + "'");
+                }
+            }
+            publish(new TransferEvent(TransferEvent.Type.FILE_RECEIVE_FINISHED, fileName));
+        }
+        if ((features & Protocol.FEATURE_CHUNK_CRC) != 0) {
+            repair(frameReader, damagedMap, names, sizes, digests, ids);
+        }
+        if (batchCommitter != null) {
+            // Durable before the sender lets go of the batch
+            batchCommitter.commit();
+        }
+        if (ids != null) {
+            // The batch is through, so it will not be sent again
+            replyWriter.writeByte(Protocol.BATCH_ACCEPTED);
+            replyWriter.flush();
+            for (String id : ids) {
+                partialStore.discard(id);
+            }
+        }
+    }
+
+    /**
+     * Checksum updating both the CRC32C of a body, which the body's trailer
+     * is checked against, and the SHA-256 of its file, which the manifest
+     * lists, so that both are computed as the bytes stream in
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class DigestChecksum implements Checksum {
+        /**
+         * CRC32C of the bytes received
+         */
+        private final CRC32C crc;
+        /**
+         * SHA-256 of the file
+         */
+        private final MessageDigest messageDigest;
+
+        /**
+         * Initialises an empty checksum and digest
+         *
+         * @throws IOException If SHA-256 is not available
+         */
+        DigestChecksum() throws IOException {
+            this.crc = new CRC32C();
+            this.messageDigest = BlobSpool.newDigest();
+        }
+
+        /**
+         * Updates the digest alone with the start of the file, received before
+         *
+         * @param fileChannel Channel of the file
+         * @param size        Number of bytes received before
+         * @throws IOException If the file cannot be read
+         */
+        void updateDigest(FileChannel fileChannel, long size) throws IOException {
+            BlobSpool.update(messageDigest, fileChannel, size);
+        }
+
+        /**
+         * Get the digest of the file; called once, after the last update
+         *
+         * @return Hexadecimal SHA-256
+         */
+        String getDigest() {
+            return BlobSpool.toHex(messageDigest.digest());
+        }
+
+        @Override
+        public void update(int b) {
+            crc.update(b);
+            messageDigest.update((byte) b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            crc.update(b, off, len);
+            messageDigest.update(b, off, len);
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            int position = buffer.position();
+            crc.update(buffer);
+            buffer.position(position);
+            messageDigest.update(buffer);
+        }
+
+        /**
+         * Get the CRC32C of the bytes received
+         *
+         * @return CRC32C value
+         */
+        @Override
+        public long getValue() {
+            return crc.getValue();
+        }
+
+        @Override
+        public void reset() {
+            crc.reset();
+            messageDigest.reset();
         }
     }
-}
\ No newline at end of file
+}
@@ -7,8 +7,19 @@ import org.junit.Test;
 import ru.yandex.qatools.allure.annotations.Attachment;
 
 import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static inspire.MiniClient.*;
 import static org.mockito.Mockito.mock;
@@ -113,4 +124,442 @@ public class MiniClientTest implements Observer {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends the test files from a {@code MiniServer} to the {@code MiniClient} over loopback
+     *
+     * @param senderSettings   Settings of the sender
+     * @param receiverSettings Settings of the receiver
+     * @return Protocol version used by the receiver
+     */
+    private int sendOverLoopback(TransferSettings senderSettings, TransferSettings receiverSettings)
+            throws Exception {
+        return sendOverLoopback(senderSettings, receiverSettings, 0);
+    }
+
+    /**
+     * Sends the test files from a {@code MiniServer} to the {@code MiniClient} over loopback
+     *
+     * @param senderSettings   Settings of the sender
+     * @param receiverSettings Settings of the receiver
+     * @param senderDelay      Time in milliseconds the sender takes to start, as over a slow link
+     * @return Protocol version used by the receiver
+     */
+    private int sendOverLoopback(TransferSettings senderSettings, TransferSettings receiverSettings,
+                                 final long senderDelay) throws Exception {
+        String fileLocation = System.getProperty("java.io.tmpdir") + "/" + "__MiniClientTestDir__";
+        new File(fileLocation).mkdir();
+        List<File> fileList = new ArrayList<>();
+        for (int i = 0; i < fileNames.length; i++) {
+            File f = new File(fileLocation + "/" + fileNames[i]);
+            fileList.add(f);
+            FileOutputStream fos = new FileOutputStream(f);
+            fos.write(getBytesFromString(fileData[i]));
+            fos.close();
+        }
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                serverSocket.getLocalPort());
+        MiniServer miniServer = new MiniServer(serverSocket.accept(), fileList, Arrays.asList(receivers),
+                serverSocket, true, senderSettings);
+        final MiniServer sender = miniServer;
+        Thread miniServerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(senderDelay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sender.run();
+            }
+        });
+        miniServerThread.start();
+        miniClient.deleteObserver(this);
+        miniClient = new MiniClient(socket, downloadsFolder, receiverSettings);
+        miniClient.addObserver(this);
+        miniClient.run();
+        miniServerThread.join();
+        int k = 0;
+        for (String receiver : receivers) {
+            Assert.assertEquals(args.get(k++), String.valueOf(RECEIVER_ADDED) + " " + receiver);
+        }
+        long totalBytes = 0;
+        for (String fileDataStr : fileData) {
+            totalBytes += getBytesFromString(fileDataStr).length;
+        }
+        if (miniClient.getTotalBytes() >= 0) {
+            Assert.assertEquals(args.get(k++), String.valueOf(MANIFEST_RECEIVED) + " " + fileNames.length + " "
+                    + totalBytes);
+            Assert.assertEquals(miniClient.getTotalBytes(), totalBytes);
+        }
+        Assert.assertEquals(miniClient.getReceivedBytes(), totalBytes);
+        for (int i = 0; i < fileNames.length; i++) {
+            Assert.assertEquals(args.get(k++), String.valueOf(FILE_RECEIVE_STARTED) + " " + fileNames[i]);
+            Assert.assertEquals(args.get(k++), String.valueOf(FILE_RECEIVE_FINISHED) + " " + fileNames[i]);
+            Scanner sc = new Scanner(new File(downloadsFolder + "/" + fileNames[i]));
+            Assert.assertEquals(sc.nextLine(), fileData[i]);
+            sc.close();
+        }
+        Assert.assertEquals(args.get(k), String.valueOf(FILES_RECEIVED));
+        Assert.assertEquals(miniServer.getProtocolVersion(), miniClient.getProtocolVersion());
+        new File(fileLocation).delete();
+        return miniClient.getProtocolVersion();
+    }
+
+    @Test
+    public void testMiniClientOverLoopback() throws Exception {
+        receivers = new String[]{"Robo1", "R\u00f6b\u00f62", "\u673a\u5668\u4eba3"};
+        Assert.assertEquals(sendOverLoopback(new TransferSettings(), new TransferSettings()), Protocol.VERSION_2);
+        Assert.assertTrue(miniClient.getTotalBytes() > 0);
+    }
+
+    @Test
+    public void testWithoutManifest() throws Exception {
+        TransferSettings receiverSettings = new TransferSettings();
+        receiverSettings.setManifest(false);
+        Assert.assertEquals(sendOverLoopback(new TransferSettings(), receiverSettings), Protocol.VERSION_2);
+        Assert.assertEquals(miniClient.getTotalBytes(), -1);
+    }
+
+    @Test
+    public void testVersion1Sender() throws Exception {
+        TransferSettings senderSettings = new TransferSettings();
+        senderSettings.setProtocolVersion(Protocol.VERSION_1);
+        Assert.assertEquals(sendOverLoopback(senderSettings, new TransferSettings()), Protocol.VERSION_1);
+    }
+
+    @Test
+    public void testLateVersion1Sender() throws Exception {
+        TransferSettings senderSettings = new TransferSettings();
+        senderSettings.setProtocolVersion(Protocol.VERSION_1);
+        TransferSettings receiverSettings = new TransferSettings();
+        receiverSettings.setHandshakeDelay(20);
+        // The hello goes out before the sender's first frame, which is read as version 1
+        Assert.assertEquals(sendOverLoopback(senderSettings, receiverSettings, 300), Protocol.VERSION_1);
+    }
+
+    @Test
+    public void testVersion1Receiver() throws Exception {
+        TransferSettings senderSettings = new TransferSettings();
+        senderSettings.setHandshakeTimeout(300);
+        TransferSettings receiverSettings = new TransferSettings();
+        receiverSettings.setProtocolVersion(Protocol.VERSION_1);
+        Assert.assertEquals(sendOverLoopback(senderSettings, receiverSettings), Protocol.VERSION_1);
+    }
+
+    @Test
+    public void testCompressedTransfer() throws Exception {
+        String fileLocation = System.getProperty("java.io.tmpdir") + "/" + "__MiniClientTestDir__";
+        new File(fileLocation).mkdir();
+        // Compressible telemetry followed by incompressible noise
+        ByteArrayOutputStream telemetry = new ByteArrayOutputStream();
+        for (int i = 0; telemetry.size() < 3 * 1024 * 1024; i++) {
+            telemetry.write(getBytesFromString(i + ",12.5,-3.25,0.004,OK\n"));
+        }
+        byte[] noise = new byte[1024 * 1024 + 17];
+        new Random(7).nextBytes(noise);
+        byte[][] contents = new byte[][]{telemetry.toByteArray(), noise};
+        String[] names = new String[]{"telemetry.csv", "noise.bin"};
+        List<File> fileList = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            File f = new File(fileLocation + "/" + names[i]);
+            fileList.add(f);
+            FileOutputStream fos = new FileOutputStream(f);
+            fos.write(contents[i]);
+            fos.close();
+        }
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                serverSocket.getLocalPort());
+        MiniServer miniServer = new MiniServer(serverSocket.accept(), fileList, null, serverSocket, true,
+                new TransferSettings());
+        Thread miniServerThread = new Thread(miniServer);
+        miniServerThread.start();
+        MiniClient receiver = new MiniClient(socket, downloadsFolder, new TransferSettings());
+        receiver.run();
+        miniServerThread.join();
+        for (int i = 0; i < names.length; i++) {
+            File received = new File(downloadsFolder + "/" + names[i]);
+            Assert.assertArrayEquals(Files.readAllBytes(received.toPath()), contents[i]);
+            received.delete();
+        }
+        Assert.assertEquals(receiver.getReceivedBytes(), contents[0].length + contents[1].length);
+        Assert.assertTrue(miniServer.getBytesSent() < contents[0].length / 2 + contents[1].length);
+        new File(fileLocation).delete();
+    }
+
+    /**
+     * Relays bytes from one channel to another, dropping both once a limit is reached
+     *
+     * @param from     Channel to read from
+     * @param to       Channel to write to
+     * @param limit    Number of bytes after which the link is dropped
+     * @param relayed  Counter of the bytes relayed
+     * @param corrupts Offsets in the stream of the bytes to flip on the way
+     * @return The relaying thread, already started
+     */
+    static Thread relay(final SocketChannel from, final SocketChannel to, final long limit,
+                                final AtomicLong relayed, final long... corrupts) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                long count = 0;
+                try {
+                    while (count < limit) {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), limit - count));
+                        if (from.read(buffer) < 0) {
+                            break;
+                        }
+                        buffer.flip();
+                        for (long corrupt : corrupts) {
+                            if (corrupt >= count && corrupt < count + buffer.limit()) {
+                                int index = (int) (corrupt - count);
+                                buffer.put(index, (byte) ~buffer.get(index));
+                            }
+                        }
+                        while (buffer.hasRemaining()) {
+                            count += to.write(buffer);
+                        }
+                    }
+                } catch (IOException e) {
+                    // The other direction has dropped the link
+                } finally {
+                    relayed.addAndGet(count);
+                    try {
+                        from.close();
+                        to.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void testResumeAfterDisconnects() throws Exception {
+        String fileLocation = System.getProperty("java.io.tmpdir") + "/" + "__MiniClientTestDir__";
+        new File(fileLocation).mkdir();
+        byte[][] contents = new byte[][]{new byte[1024 * 1024 + 3], new byte[5 * 1024 * 1024 + 11]};
+        String[] names = new String[]{"first.bin", "second.bin"};
+        Random random = new Random(11);
+        List<File> fileList = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            random.nextBytes(contents[i]);
+            File f = new File(fileLocation + "/" + names[i]);
+            fileList.add(f);
+            FileOutputStream fos = new FileOutputStream(f);
+            fos.write(contents[i]);
+            fos.close();
+        }
+        TransferSettings settings = new TransferSettings();
+        settings.setCheckpointInterval(256 * 1024);
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        ServerSocketChannel proxy = ServerSocketChannel.open();
+        proxy.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        // Bytes relayed from the sender to the receiver over all attempts
+        AtomicLong relayed = new AtomicLong();
+        int attempts = 0;
+        while (!args.contains(String.valueOf(FILES_RECEIVED))) {
+            Assert.assertTrue(++attempts <= 20);
+            Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                    proxy.socket().getLocalPort());
+            SocketChannel inbound = proxy.accept();
+            SocketChannel outbound = SocketChannel.open(serverSocket.getLocalSocketAddress());
+            MiniServer miniServer = new MiniServer(serverSocket.accept(), fileList, null, null, false, settings);
+            Thread miniServerThread = new Thread(miniServer);
+            miniServerThread.start();
+            // Every attempt drops the link after another MiB
+            Thread down = relay(outbound, inbound, 1024 * 1024, relayed);
+            Thread up = relay(inbound, outbound, Long.MAX_VALUE, new AtomicLong());
+            miniClient.deleteObserver(this);
+            miniClient = new MiniClient(socket, downloadsFolder, settings);
+            miniClient.addObserver(this);
+            miniClient.run();
+            miniServerThread.join();
+            down.join();
+            up.join();
+            Assert.assertEquals(miniServer.isCompleted(), args.contains(String.valueOf(FILES_RECEIVED)));
+        }
+        serverSocket.close();
+        proxy.close();
+        Assert.assertTrue(attempts > 1);
+        long total = contents[0].length + contents[1].length;
+        // Restarting from the beginning would have sent the first file again on every attempt
+        Assert.assertTrue(relayed.get() < total + attempts * 4096);
+        for (int i = 0; i < names.length; i++) {
+            File received = new File(downloadsFolder + "/" + names[i]);
+            Assert.assertArrayEquals(Files.readAllBytes(received.toPath()), contents[i]);
+            received.delete();
+            fileList.get(i).delete();
+        }
+        // Nothing is kept for a batch which is through
+        String[] partialFiles = new File(downloadsFolder + "/" + PartialStore.FOLDER).list();
+        Assert.assertTrue(partialFiles == null || partialFiles.length == 0);
+        new File(fileLocation).delete();
+    }
+
+    @Test
+    public void testRepairDamagedChunks() throws Exception {
+        String fileLocation = System.getProperty("java.io.tmpdir") + "/" + "__MiniClientTestDir__";
+        new File(fileLocation).mkdir();
+        byte[][] contents = new byte[][]{new byte[3 * 1024 * 1024 + 5], new byte[3 * 1024 * 1024 + 7]};
+        String[] names = new String[]{"first.bin", "second.bin"};
+        Random random = new Random(13);
+        List<File> fileList = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            random.nextBytes(contents[i]);
+            File f = new File(fileLocation + "/" + names[i]);
+            fileList.add(f);
+            FileOutputStream fos = new FileOutputStream(f);
+            fos.write(contents[i]);
+            fos.close();
+        }
+        TransferSettings settings = new TransferSettings();
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        ServerSocketChannel proxy = ServerSocketChannel.open();
+        proxy.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        AtomicLong relayed = new AtomicLong();
+        Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                proxy.socket().getLocalPort());
+        SocketChannel inbound = proxy.accept();
+        SocketChannel outbound = SocketChannel.open(serverSocket.getLocalSocketAddress());
+        MiniServer miniServer = new MiniServer(serverSocket.accept(), fileList, null, null, false, settings);
+        Thread miniServerThread = new Thread(miniServer);
+        miniServerThread.start();
+        // One byte flipped inside the body of each file
+        Thread down = relay(outbound, inbound, Long.MAX_VALUE, relayed, 1024 * 1024 + 1000,
+                4 * 1024 * 1024 + 512 * 1024);
+        Thread up = relay(inbound, outbound, Long.MAX_VALUE, new AtomicLong());
+        miniClient.deleteObserver(this);
+        miniClient = new MiniClient(socket, downloadsFolder, settings);
+        miniClient.addObserver(this);
+        miniClient.run();
+        miniServerThread.join();
+        down.join();
+        up.join();
+        serverSocket.close();
+        proxy.close();
+        Assert.assertTrue(miniServer.isCompleted());
+        Assert.assertTrue(args.contains(String.valueOf(FILES_RECEIVED)));
+        long total = contents[0].length + contents[1].length;
+        // Only the two damaged chunks were sent again, not the files
+        Assert.assertTrue(relayed.get() >= total + 2 * Protocol.CHUNK_SIZE);
+        Assert.assertTrue(relayed.get() < total + 2 * Protocol.CHUNK_SIZE + 64 * 1024);
+        for (int i = 0; i < names.length; i++) {
+            File received = new File(downloadsFolder + "/" + names[i]);
+            Assert.assertArrayEquals(Files.readAllBytes(received.toPath()), contents[i]);
+            received.delete();
+            fileList.get(i).delete();
+        }
+        new File(fileLocation).delete();
+    }
+
+    @Test
+    public void testFailBeforeAck() throws Exception {
+        String fileLocation = System.getProperty("java.io.tmpdir") + "/" + "__MiniClientTestDir__";
+        new File(fileLocation).mkdir();
+        File file = new File(fileLocation + "/upload.bin");
+        byte[] content = new byte[512 * 1024 + 9];
+        new Random(17).nextBytes(content);
+        Files.write(file.toPath(), content);
+        final File received = new File(downloadsFolder + "/upload.bin");
+        TransferSettings settings = new TransferSettings();
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        final AtomicInteger commits = new AtomicInteger();
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final boolean fail = attempt == 0;
+            Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                    serverSocket.getLocalPort());
+            // Sent by a client, which deletes its files once the receiver says they are through
+            MiniServer miniServer = new MiniServer(serverSocket.accept(), Collections.singletonList(file), null,
+                    null, true, settings);
+            Thread miniServerThread = new Thread(miniServer);
+            miniServerThread.start();
+            miniClient.deleteObserver(this);
+            miniClient = new MiniClient(socket, downloadsFolder, settings);
+            miniClient.addObserver(this);
+            miniClient.setBatchCommitter(new BatchCommitter() {
+                @Override
+                public void commit() throws IOException {
+                    Assert.assertTrue(received.isFile());
+                    commits.incrementAndGet();
+                    if (fail) {
+                        throw new IOException("Receiver failed before logging the batch");
+                    }
+                }
+            });
+            miniClient.run();
+            miniServerThread.join();
+            // The sender lets go of the batch only once it has been committed
+            Assert.assertEquals(miniServer.isCompleted(), !fail);
+            Assert.assertEquals(file.exists(), fail);
+            Assert.assertEquals(args.contains(String.valueOf(FILES_RECEIVED)), !fail);
+        }
+        serverSocket.close();
+        Assert.assertEquals(commits.get(), 2);
+        Assert.assertArrayEquals(Files.readAllBytes(received.toPath()), content);
+        received.delete();
+        new File(fileLocation).delete();
+    }
+
+    @Test
+    public void testRejectCorruptResumedPrefix() throws Exception {
+        String fileLocation = System.getProperty("java.io.tmpdir") + "/" + "__MiniClientTestDir__";
+        new File(fileLocation).mkdir();
+        File file = new File(fileLocation + "/resumed.bin");
+        byte[] content = new byte[2 * 1024 * 1024 + 21];
+        new Random(19).nextBytes(content);
+        Files.write(file.toPath(), content);
+        // Left by an earlier attempt, with a byte of the committed prefix gone bad on the disk
+        PartialStore partialStore = new PartialStore(downloadsFolder);
+        String id = PartialStore.transferId(file.getName(), content.length, BlobSpool.digest(file));
+        partialStore.preallocate(id, content.length);
+        byte[] prefix = Arrays.copyOf(content, 1024 * 1024);
+        prefix[4321] ^= 1;
+        FileChannel fileChannel = FileChannel.open(partialStore.getPartPath(id), StandardOpenOption.WRITE);
+        fileChannel.write(ByteBuffer.wrap(prefix), 0);
+        partialStore.commit(id, fileChannel, prefix.length);
+        fileChannel.close();
+        // Without chunk checksums, only the digest covers the prefix
+        TransferSettings settings = new TransferSettings();
+        settings.setChunkChecksums(false);
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        AtomicLong relayed = new AtomicLong();
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                    serverSocket.getLocalPort());
+            MiniServer miniServer = new MiniServer(serverSocket.accept(), Collections.singletonList(file), null,
+                    null, false, settings);
+            Thread miniServerThread = new Thread(miniServer);
+            miniServerThread.start();
+            miniClient.deleteObserver(this);
+            miniClient = new MiniClient(socket, downloadsFolder, settings);
+            miniClient.addObserver(this);
+            miniClient.run();
+            miniServerThread.join();
+            relayed.addAndGet(miniClient.getReceivedBytes());
+            // Rejected and forgotten the first time, then sent whole
+            Assert.assertEquals(miniServer.isCompleted(), attempt == 1);
+            Assert.assertEquals(args.contains(String.valueOf(FILES_RECEIVED)), attempt == 1);
+        }
+        serverSocket.close();
+        Assert.assertEquals(relayed.get(), content.length - prefix.length + content.length);
+        File received = new File(downloadsFolder + "/resumed.bin");
+        Assert.assertArrayEquals(Files.readAllBytes(received.toPath()), content);
+        received.delete();
+        file.delete();
+        new File(fileLocation).delete();
+    }
+}
@@ -2,16 +2,21 @@ package inspire;
 
 import ru.yandex.qatools.allure.annotations.Attachment;
 
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.Observable;
+import java.util.Map;
 
 
 /**
@@ -24,7 +29,7 @@ import java.util.Observable;
  * @see MiniClient
  * @since 20-12-2016
  */
-class MiniServer extends Observable implements Runnable {
+class MiniServer extends EventSource implements Runnable {
     /**
      * Notify start of file transfer
      */
@@ -37,6 +42,22 @@ class MiniServer extends Observable implements Runnable {
      * Notify completion of file transfers
      */
     static final char FILES_SENT = '2';
+    /**
+     * Notify a transfer which broke off before the end of the batch
+     */
+    static final char TRANSFER_FAILED = '3';
+    /**
+     * Codes of the events in the notification strings of {@code Observer}s
+     */
+    private static final Map<TransferEvent.Type, Character> notificationCodes =
+            new EnumMap<>(TransferEvent.Type.class);
+
+    static {
+        notificationCodes.put(TransferEvent.Type.FILE_SEND_STARTED, FILE_SEND_STARTED);
+        notificationCodes.put(TransferEvent.Type.FILE_SEND_FINISHED, FILE_SEND_FINISHED);
+        notificationCodes.put(TransferEvent.Type.FILES_SENT, FILES_SENT);
+        notificationCodes.put(TransferEvent.Type.TRANSFER_FAILED, TRANSFER_FAILED);
+    }
     /**
      * Socket to transfer files via
      */
@@ -49,6 +70,14 @@ class MiniServer extends Observable implements Runnable {
      * List of files to transfer
      */
     private final List<File> fileList;
+    /**
+     * Names to send the files under ({@code null} to use their own names)
+     */
+    private final List<String> fileNames;
+    /**
+     * Shared mappings of the files ({@code null} to read the files on their own)
+     */
+    private final FanOut fanOut;
     /**
      * List of receivers to transfer with the file list (Only for Client)
      */
@@ -57,6 +86,46 @@ class MiniServer extends Observable implements Runnable {
      * Server socket ({@code null} in case of Server)
      */
     private final ServerSocket serverSocket;
+    /**
+     * Transfer parameters
+     */
+    private final TransferSettings settings;
+    /**
+     * Protocol version negotiated with the receiver
+     */
+    private int protocolVersion;
+    /**
+     * Protocol features negotiated with the receiver
+     */
+    private long features;
+    /**
+     * Reader for the receiver's replies ({@code null} in version 1)
+     */
+    private FrameReader replyReader;
+    /**
+     * Writer over the socket, while sending
+     */
+    private volatile FrameWriter frameWriter;
+    /**
+     * Compressor for file bodies ({@code null} if compression was not negotiated)
+     */
+    private AdaptiveDeflater deflater;
+    /**
+     * Sender of the striped bodies ({@code null} if striping was not negotiated)
+     */
+    private volatile StripeSender stripeSender;
+    /**
+     * Flag to indicate whether the whole batch has been sent
+     */
+    private volatile boolean completed;
+    /**
+     * Name of the file being sent ({@code null} before the first)
+     */
+    private volatile String sendingFile;
+    /**
+     * Publisher of the progress of the batch ({@code null} if progress events are off)
+     */
+    private ProgressMeter progressMeter;
 
     /**
      * Construct an instance with appropriate parameters
@@ -71,11 +140,103 @@ class MiniServer extends Observable implements Runnable {
      */
     public MiniServer(Socket socket, List<File> fileList, List<String> receiverList, ServerSocket serverSocket,
                       boolean deleteFiles) {
+        this(socket, fileList, receiverList, serverSocket, deleteFiles, TransferSettings.getDefault());
+    }
+
+    /**
+     * Construct an instance with appropriate parameters and transfer settings
+     *
+     * @param socket       The socket to which the files to be sent should be written
+     * @param fileList     List of files selected for sending
+     * @param receiverList List of clients to which {@code fileList} should be sent
+     * @param serverSocket The server socket created for sending (in the Client case,
+     *                     this should be closed after file transfer is complete)
+     * @param deleteFiles  Flag to know if files are to be deleted after
+     *                     transfer (true in case of Server)
+     * @param settings     Transfer parameters
+     */
+    MiniServer(Socket socket, List<File> fileList, List<String> receiverList, ServerSocket serverSocket,
+               boolean deleteFiles, TransferSettings settings) {
+        this(socket, fileList, null, null, receiverList, serverSocket, deleteFiles, settings);
+    }
+
+    /**
+     * Construct an instance sending files under names other than their own,
+     * optionally sharing the files with other instances
+     *
+     * @param socket       The socket to which the files to be sent should be written
+     * @param fileList     List of files selected for sending
+     * @param fileNames    Names to send the files under ({@code null} to use their own names)
+     * @param fanOut       Shared mappings of the files ({@code null} for none)
+     * @param receiverList List of clients to which {@code fileList} should be sent
+     * @param serverSocket The server socket created for sending (in the Client case,
+     *                     this should be closed after file transfer is complete)
+     * @param deleteFiles  Flag to know if files are to be deleted after transfer
+     * @param settings     Transfer parameters
+     */
+    MiniServer(Socket socket, List<File> fileList, List<String> fileNames, FanOut fanOut, List<String> receiverList,
+               ServerSocket serverSocket, boolean deleteFiles, TransferSettings settings) {
+        super(notificationCodes);
         this.socket = socket;
         this.fileList = fileList;
+        this.fileNames = fileNames;
+        this.fanOut = fanOut;
         this.receiverList = receiverList;
         this.serverSocket = serverSocket;
         this.deleteFiles = deleteFiles;
+        this.settings = settings;
+        this.protocolVersion = Protocol.VERSION_1;
+    }
+
+    /**
+     * Get the protocol version negotiated with the receiver
+     *
+     * @return Protocol version
+     */
+    int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Get completion flag
+     *
+     * @return {@code true} once the whole batch has been sent
+     */
+    boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Get the number of bytes written to the socket so far, after
+     * framing and compression
+     *
+     * @return Bytes sent
+     */
+    long getBytesSent() {
+        FrameWriter writer = frameWriter;
+        StripeSender sender = stripeSender;
+        return (writer == null ? 0 : writer.getBytesWritten()) + (sender == null ? 0 : sender.getBytesSent());
+    }
+
+    /**
+     * Get the number of file body bytes sent so far, before compression
+     *
+     * @return Body bytes sent
+     */
+    long getBodyBytesSent() {
+        FrameWriter writer = frameWriter;
+        StripeSender sender = stripeSender;
+        return (writer == null ? 0 : writer.getBodyBytes()) + (sender == null ? 0 : sender.getBytesSent());
+    }
+
+    /**
+     * Get the largest number of connections a file body has been striped over
+     *
+     * @return Number of stripes (0 if no body has been striped)
+     */
+    int getPeakStripes() {
+        StripeSender sender = stripeSender;
+        return sender == null ? 0 : sender.getPeakStripes();
     }
 
     /**
@@ -94,56 +255,265 @@ class MiniServer extends Observable implements Runnable {
         return hostName;
     }
 
+    /**
+     * Returns the name to send a file under
+     *
+     * @param index Index of the file in {@code fileList}
+     * @return Name of the file
+     */
+    private String getFileName(int index) {
+        return fileNames != null ? fileNames.get(index) : fileList.get(index).getName();
+    }
+
+    /**
+     * Waits for the receiver's hello and puts the reply in front of the batch.
+     * Receivers which do not say hello in time are sent version 1.
+     *
+     * @param socketChannel Channel of the socket ({@code null} if it has none)
+     * @throws IOException If the handshake fails
+     */
+    private void negotiate(SocketChannel socketChannel) throws IOException {
+        if (socketChannel == null || settings.getProtocolVersion() < Protocol.VERSION_2
+                || !Protocol.waitForData(socketChannel, settings.getHandshakeTimeout())) {
+            return;
+        }
+        replyReader = new FrameReader(socketChannel, 256);
+        if (replyReader.readInt() != Protocol.MAGIC) {
+            throw new IOException("Unexpected handshake from the receiver");
+        }
+        protocolVersion = Math.min(replyReader.readByte(), settings.getProtocolVersion());
+        features = replyReader.readVarint() & settings.getFeatures();
+        frameWriter.writeInt(Protocol.MAGIC);
+        frameWriter.writeByte(protocolVersion);
+        frameWriter.writeVarint(features);
+        frameWriter.setVersion(protocolVersion);
+        if ((features & Protocol.FEATURE_DEFLATE) != 0) {
+            deflater = new AdaptiveDeflater(settings.getCompressionLevel());
+            frameWriter.setDeflater(deflater);
+        }
+        if ((features & Protocol.FEATURE_MANIFEST) != 0) {
+            frameWriter.setBodyChecksums(true);
+        }
+        if ((features & Protocol.FEATURE_CHUNK_CRC) != 0) {
+            frameWriter.setChunkChecksums(true);
+        }
+        if ((features & Protocol.FEATURE_STRIPE) != 0) {
+            stripeSender = new StripeSender(frameWriter, serverSocket, protocolVersion,
+                    (features & Protocol.FEATURE_CHUNK_CRC) != 0, settings);
+        }
+    }
+
+    /**
+     * Sends the manifest of the batch and waits for the receiver's verdict,
+     * followed by the offsets to resume from if resuming was negotiated
+     *
+     * @param sizes   Sizes of the files in {@code fileList}
+     * @param offsets Array to fill with the offsets to send each file from
+     * @throws IOException If the receiver rejects the batch or cannot be reached
+     */
+    private void sendManifest(long[] sizes, long[] offsets) throws IOException {
+        for (int i = 0; i < fileList.size(); i++) {
+            frameWriter.writeString(getFileName(i));
+            frameWriter.writeSize(sizes[i]);
+            // Read once per file version at most, and never for a blob, which is named after it
+            frameWriter.writeString(DigestCache.getShared().digest(fileList.get(i)));
+        }
+        frameWriter.flush();
+        if (replyReader.readByte() != Protocol.BATCH_ACCEPTED) {
+            throw new IOException("Batch rejected by the receiver: " + replyReader.readString());
+        }
+        if ((features & Protocol.FEATURE_RESUME) != 0) {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = replyReader.readSize();
+                if (offsets[i] < 0 || offsets[i] > sizes[i]) {
+                    throw new IOException("Bad offset to resume '" + getFileName(i) + "' from: "
+                            + offsets[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends again the chunks the receiver found damaged, for as long as it
+     * asks for any; the ranges asked for are checked against the batch
+     *
+     * @param sizes Sizes of the files in {@code fileList}
+     * @throws IOException If the receiver asks for a bad range or too many times,
+     *                     or the file or the socket cannot be accessed
+     */
+    private void repair(long[] sizes) throws IOException {
+        for (int round = 0; ; round++) {
+            int count = replyReader.readCount();
+            if (count == 0) {
+                return;
+            }
+            if (round == Protocol.MAX_REPAIR_ROUNDS) {
+                throw new IOException("Chunks still damaged after " + round + " repairs");
+            }
+            for (int i = 0; i < count; i++) {
+                int index = replyReader.readCount();
+                long position = replyReader.readSize();
+                long length = replyReader.readSize();
+                if (index < 0 || index >= sizes.length || position < 0 || length <= 0
+                        || length > Protocol.CHUNK_SIZE || length > sizes[index] - position) {
+                    throw new IOException("Bad chunk asked for again: " + length + " bytes from " + position
+                            + " of file " + index);
+                }
+                FileChannel fileChannel = FileChannel.open(fileList.get(index).toPath(), StandardOpenOption.READ);
+                try {
+                    frameWriter.writeChunkAt(fileChannel, position, (int) length);
+                } finally {
+                    fileChannel.close();
+                }
+            }
+            frameWriter.flush();
+        }
+    }
+
+    /**
+     * Starts publishing the progress of the batch, if progress events are on
+     *
+     * @param totalBytes Number of body bytes to be sent
+     */
+    private void startProgress(long totalBytes) {
+        if (settings.getProgressInterval() <= 0) {
+            return;
+        }
+        progressMeter = new ProgressMeter(this, true, settings.getProgressInterval()) {
+            @Override
+            long countBytes() {
+                return getBodyBytesSent();
+            }
+
+            @Override
+            String currentFile() {
+                return sendingFile;
+            }
+        };
+        progressMeter.start(totalBytes);
+    }
+
+    /**
+     * Writes a file body from the mapping shared with the other receivers
+     *
+     * @param file     File to be sent
+     * @param position Offset in the file to start from
+     * @param size     Size of the file
+     * @throws IOException If the file or the socket cannot be accessed
+     */
+    private void sendShared(File file, long position, long size) throws IOException {
+        ByteBuffer source = fanOut.acquire(file);
+        try {
+            if (source != null && source.capacity() >= size) {
+                frameWriter.writeFile(source, position, size);
+                return;
+            }
+            // Too large to be mapped in one piece
+            FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                frameWriter.writeFile(fileChannel, position, size);
+            } finally {
+                fileChannel.close();
+            }
+        } finally {
+            fanOut.release(file);
+        }
+    }
+
     /**
      * Spawn a thread to transfer files
      */
     @Override
     public void run() {
         try {
-            DataOutputStream dataOutputStream = new DataOutputStream(socket.getOutputStream());
+            if (settings.getSendBufferSize() > 0) {
+                socket.setSendBufferSize(settings.getSendBufferSize());
+            }
+            socket.setTcpNoDelay(settings.isTcpNoDelay());
+            // Write to the socket channel when there is one, or else to its stream
+            SocketChannel socketChannel = socket.getChannel();
+            WritableByteChannel channel = socketChannel;
+            if (channel == null) {
+                channel = Channels.newChannel(socket.getOutputStream());
+            }
+            frameWriter = new FrameWriter(channel, socketChannel != null && settings.isZeroCopy());
+            negotiate(socketChannel);
             if (receiverList != null) {
                 // Client
-                dataOutputStream.writeInt(receiverList.size());
+                frameWriter.writeCount(receiverList.size());
                 for (String receiverHostName : receiverList) {
                     // Host name of the receiver
-                    dataOutputStream.writeInt(receiverHostName.length());
-                    dataOutputStream.writeChars(receiverHostName);
+                    frameWriter.writeString(receiverHostName);
                 }
             } else {
                 // Server
-                dataOutputStream.writeInt(0);
+                frameWriter.writeCount(0);
+            }
+            frameWriter.writeCount(fileList.size());
+            // Sizes of the files, fixed before anything is sent
+            long[] sizes = new long[fileList.size()];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = fileList.get(i).length();
             }
-            dataOutputStream.writeInt(fileList.size());
-            for (File file : fileList) {
-                // Stream to read the file
-                FileInputStream fileInputStream = new FileInputStream(file);
+            // Offsets to send the files from (all 0 unless resuming)
+            long[] offsets = new long[sizes.length];
+            if ((features & Protocol.FEATURE_MANIFEST) != 0) {
+                sendManifest(sizes, offsets);
+            }
+            // Bytes to be sent over this connection
+            long remaining = 0;
+            for (int i = 0; i < sizes.length; i++) {
+                remaining += sizes[i] - offsets[i];
+            }
+            startProgress(remaining);
+            for (int i = 0; i < sizes.length; i++) {
+                File file = fileList.get(i);
+                sendingFile = getFileName(i);
+                publish(new TransferEvent(TransferEvent.Type.FILE_SEND_STARTED, getFileName(i)));
                 // Size of the file
-                setChanged();
-                notifyObservers(String.valueOf(FILE_SEND_STARTED) + " " + file.getName());
-                long size = file.length();
-                dataOutputStream.writeInt(file.getName().length());
-                dataOutputStream.writeChars(file.getName());
-                dataOutputStream.writeLong(size);
-                dataOutputStream.flush();
-                // Buffer to store part of the file
-                byte[] buffer = new byte[1024 * 1024];
-                // Bytes read so far
-                long count = 0;
-                while (true) {
-                    // Number of bytes read
-                    int bytesRead = fileInputStream.read(buffer, 0, 1024 * 1024);
-                    dataOutputStream.write(buffer, 0, bytesRead);
-                    dataOutputStream.flush();
-                    count += bytesRead;
-                    if (count == size) {
-                        break;
+                long size = sizes[i];
+                frameWriter.writeString(getFileName(i));
+                frameWriter.writeSize(size);
+                if (stripeSender != null) {
+                    if (size > offsets[i] && size - offsets[i] >= settings.getStripeThreshold()) {
+                        FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                        try {
+                            stripeSender.send(fileChannel, offsets[i], size);
+                        } finally {
+                            fileChannel.close();
+                        }
+                        publish(new TransferEvent(TransferEvent.Type.FILE_SEND_FINISHED, getFileName(i)));
+                        continue;
                     }
+                    // Not worth striping: the body follows on this connection
+                    frameWriter.writeCount(0);
                 }
-                fileInputStream.close();
-                setChanged();
-                notifyObservers(String.valueOf(FILE_SEND_FINISHED) + " " + file.getName());
-                if (deleteFiles) {
-                    // Server
+                if (fanOut != null) {
+                    sendShared(file, offsets[i], size);
+                } else {
+                    // Channel to read the file
+                    FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                    try {
+                        frameWriter.writeFile(fileChannel, offsets[i], size);
+                    } finally {
+                        fileChannel.close();
+                    }
+                }
+                publish(new TransferEvent(TransferEvent.Type.FILE_SEND_FINISHED, getFileName(i)));
+            }
+            // End of the batch
+            frameWriter.flush();
+            if ((features & Protocol.FEATURE_CHUNK_CRC) != 0) {
+                repair(sizes);
+            }
+            if ((features & Protocol.FEATURE_RESUME) != 0 && replyReader.readByte() != Protocol.BATCH_ACCEPTED) {
+                throw new IOException("Batch not confirmed by the receiver");
+            }
+            completed = true;
+            if (deleteFiles) {
+                // Server: only once the whole batch is through, as a broken
+                // transfer is sent again
+                for (File file : fileList) {
                     file.delete();
                 }
             }
@@ -151,12 +521,42 @@ class MiniServer extends Observable implements Runnable {
                 // Client
                 serverSocket.close();
             }
-            dataOutputStream.close();
             socket.close();
-            setChanged();
-            notifyObservers(String.valueOf(FILES_SENT) + " " + getHostName(socket));
+            if (progressMeter != null) {
+                progressMeter.stop();
+            }
+            publish(new TransferEvent(TransferEvent.Type.FILES_SENT, getHostName(socket)));
         } catch (IOException e) {
             e.printStackTrace();
+            if (!completed) {
+                failed();
+            }
+        } finally {
+            if (progressMeter != null) {
+                progressMeter.cancel();
+            }
+            if (frameWriter != null) {
+                frameWriter.close();
+            }
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Closes the socket of a broken transfer and notifies the failure
+     */
+    private void failed() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            publish(new TransferEvent(TransferEvent.Type.TRANSFER_FAILED, getHostName(socket)));
+        } catch (UnknownHostException e) {
+            e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
@@ -7,13 +7,19 @@ import org.junit.Test;
 
 import java.io.*;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static inspire.MiniClient.*;
 import static inspire.MiniClientTest.getBytesFromBAOS;
 import static inspire.MiniClientTest.getBytesFromString;
+import static inspire.MiniClientTest.relay;
 import static inspire.MiniServer.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -128,4 +134,231 @@ public class MiniServerTest implements Observer {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFanOut() throws Exception {
+        // Compressible and incompressible contents, sent to two receivers at once
+        StringBuilder telemetry = new StringBuilder();
+        for (int i = 0; telemetry.length() < 2 * 1024 * 1024; i++) {
+            telemetry.append(i).append(",12.5,-3.25,OK\n");
+        }
+        byte[] noise = new byte[3 * 1024 * 1024 + 5];
+        new Random(3).nextBytes(noise);
+        byte[][] contents = new byte[][]{getBytesFromString(telemetry.toString()), noise};
+        List<File> fileList = new ArrayList<>();
+        for (int i = 0; i < contents.length; i++) {
+            File f = new File(fileLocation + "/" + "blob" + i);
+            fileList.add(f);
+            FileOutputStream fos = new FileOutputStream(f);
+            fos.write(contents[i]);
+            fos.close();
+        }
+        List<String> names = Arrays.asList("telemetry.csv", "noise.bin");
+        FanOut fanOut = new FanOut();
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        TransferSettings uncompressed = new TransferSettings();
+        uncompressed.setCompression(false);
+        TransferSettings[] receiverSettings = new TransferSettings[]{new TransferSettings(), uncompressed};
+        File[] folders = new File[receiverSettings.length];
+        Thread[] threads = new Thread[2 * receiverSettings.length];
+        for (int i = 0; i < receiverSettings.length; i++) {
+            folders[i] = Files.createTempDirectory("__MiniServerTestFanOut__").toFile();
+            Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                    serverSocket.getLocalPort());
+            threads[2 * i] = new Thread(new MiniServer(serverSocket.accept(), fileList, names, fanOut, null, null,
+                    false, new TransferSettings()));
+            threads[2 * i + 1] = new Thread(new MiniClient(socket, folders[i].getPath(), receiverSettings[i]));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        serverSocket.close();
+        for (File folder : folders) {
+            for (int i = 0; i < contents.length; i++) {
+                File received = new File(folder, names.get(i));
+                Assert.assertArrayEquals(Files.readAllBytes(received.toPath()), contents[i]);
+                received.delete();
+            }
+            new File(folder, PartialStore.FOLDER).delete();
+            folder.delete();
+        }
+        Assert.assertTrue(fanOut.getMappings() >= contents.length);
+        // Receivers being sent a file at the same time share one mapping of it
+        long mappings = fanOut.getMappings();
+        Assert.assertSame(fanOut.acquire(fileList.get(1)), fanOut.acquire(fileList.get(1)));
+        Assert.assertEquals(fanOut.getMappings(), mappings + 1);
+        fanOut.release(fileList.get(1));
+        fanOut.release(fileList.get(1));
+        for (File f : fileList) {
+            fanOut.forget(f);
+            f.delete();
+        }
+    }
+
+    private static TransferSettings stripedSettings() {
+        TransferSettings settings = new TransferSettings();
+        settings.setMaxStripes(4);
+        settings.setStripeThreshold(1024 * 1024);
+        settings.setStripeSegment(256 * 1024);
+        return settings;
+    }
+
+    private List<File> writeStripedFiles(byte[][] contents) throws IOException {
+        List<File> fileList = new ArrayList<>();
+        for (int i = 0; i < contents.length; i++) {
+            File f = new File(fileLocation + "/" + "stripe" + i);
+            Files.write(f.toPath(), contents[i]);
+            fileList.add(f);
+        }
+        return fileList;
+    }
+
+    private static void checkReceived(File folder, byte[][] contents) throws IOException {
+        for (int i = 0; i < contents.length; i++) {
+            File received = new File(folder, "stripe" + i);
+            Assert.assertArrayEquals(Files.readAllBytes(received.toPath()), contents[i]);
+            received.delete();
+        }
+        new File(folder, PartialStore.FOLDER).delete();
+        folder.delete();
+    }
+
+    @Test
+    public void testStriping() throws Exception {
+        // A large file striped, and a small one sent as usual
+        byte[] large = new byte[12 * 1024 * 1024 + 17];
+        new Random(5).nextBytes(large);
+        byte[][] contents = new byte[][]{large, getBytesFromString("small")};
+        List<File> fileList = writeStripedFiles(contents);
+        // The sender accepts the stripes from its own server socket, as a Client does
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        File folder = Files.createTempDirectory("__MiniServerTestStriping__").toFile();
+        Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                serverSocket.getLocalPort());
+        MiniServer sender = new MiniServer(serverSocket.accept(), fileList, null, null, null, serverSocket, false,
+                stripedSettings());
+        MiniClient receiver = new MiniClient(socket, folder.getPath(), stripedSettings());
+        Thread senderThread = new Thread(sender);
+        senderThread.start();
+        receiver.run();
+        senderThread.join();
+        Assert.assertTrue(sender.isCompleted());
+        Assert.assertTrue(sender.getPeakStripes() >= 2);
+        Assert.assertEquals(receiver.getReceivedBytes(), large.length + contents[1].length);
+        checkReceived(folder, contents);
+        for (File f : fileList) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testStripingRepairsDamagedRanges() throws Exception {
+        byte[] large = new byte[8 * 1024 * 1024 + 3];
+        new Random(9).nextBytes(large);
+        byte[][] contents = new byte[][]{large};
+        List<File> fileList = writeStripedFiles(contents);
+        final ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        // Every connection goes through the proxy, and one byte is flipped on every stripe
+        final ServerSocketChannel proxy = ServerSocketChannel.open();
+        proxy.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        final AtomicLong controlBytes = new AtomicLong();
+        final AtomicLong stripeBytes = new AtomicLong();
+        final List<Thread> relays = Collections.synchronizedList(new ArrayList<Thread>());
+        Thread listener = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int connections = 0; ; connections++) {
+                        SocketChannel inbound = proxy.accept();
+                        SocketChannel outbound = SocketChannel.open(serverSocket.getLocalSocketAddress());
+                        if (connections == 0) {
+                            relays.add(relay(outbound, inbound, Long.MAX_VALUE, controlBytes));
+                        } else {
+                            relays.add(relay(outbound, inbound, Long.MAX_VALUE, stripeBytes, 100 * 1000));
+                        }
+                        relays.add(relay(inbound, outbound, Long.MAX_VALUE, new AtomicLong()));
+                    }
+                } catch (IOException e) {
+                    // Proxy closed
+                }
+            }
+        });
+        listener.start();
+        File folder = Files.createTempDirectory("__MiniServerTestStriping__").toFile();
+        Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                proxy.socket().getLocalPort());
+        MiniServer sender = new MiniServer(serverSocket.accept(), fileList, null, null, null, serverSocket, false,
+                stripedSettings());
+        MiniClient receiver = new MiniClient(socket, folder.getPath(), stripedSettings());
+        Thread senderThread = new Thread(sender);
+        senderThread.start();
+        receiver.run();
+        senderThread.join();
+        proxy.close();
+        listener.join();
+        // The bytes relayed are counted once each link is dropped
+        for (Thread relay : relays) {
+            relay.join();
+        }
+        Assert.assertTrue(sender.isCompleted());
+        int stripes = sender.getPeakStripes();
+        Assert.assertTrue(stripes >= 2);
+        // Only the damaged chunks, one per stripe at most, were sent again, not the file
+        Assert.assertTrue(controlBytes.get() >= Protocol.CHUNK_SIZE);
+        Assert.assertTrue(controlBytes.get() < stripes * Protocol.CHUNK_SIZE + 64 * 1024);
+        Assert.assertTrue(stripeBytes.get() < large.length + 64 * 1024);
+        checkReceived(folder, contents);
+        for (File f : fileList) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testStripingThroughListener() throws Exception {
+        byte[] large = new byte[6 * 1024 * 1024];
+        new Random(7).nextBytes(large);
+        byte[][] contents = new byte[][]{large};
+        final List<File> fileList = writeStripedFiles(contents);
+        // Every connection is accepted by a listener, as on the Server's data port
+        final ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        final MiniServer[] senders = new MiniServer[1];
+        Thread listener = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+                        if (senders[0] == null) {
+                            senders[0] = new MiniServer(socket, fileList, null, null, null, null, false,
+                                    stripedSettings());
+                            new Thread(senders[0]).start();
+                        } else if (!StripeSender.join(socket, 2000)) {
+                            socket.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    // Listener closed
+                }
+            }
+        });
+        listener.start();
+        File folder = Files.createTempDirectory("__MiniServerTestStriping__").toFile();
+        MiniClient receiver = new MiniClient(MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                serverSocket.getLocalPort()), folder.getPath(), stripedSettings());
+        receiver.run();
+        serverSocket.close();
+        listener.join();
+        checkReceived(folder, contents);
+        Assert.assertTrue(senders[0].getPeakStripes() >= 2);
+        for (File f : fileList) {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package inspire;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps the files of a batch being received in a {@code .partial}
+ * folder of the downloads folder, each under a transfer ID derived
+ * from its name, size and SHA-256. Next to every partial file, a small
+ * commit file holds the number of bytes known to be on disk, so that
+ * a batch sent again after a dropped link resumes from there. A file
+ * is moved to the downloads folder once complete, and its commit file
+ * is kept (marking it complete) until the whole batch has been received.
+ * Every partial file is preallocated at its full size, so whatever a
+ * sender which never came back left behind is swept once it has not
+ * been touched for a while and the batch being received does not name it.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniClient
+ * @since 18-10-2026
+ */
+class PartialStore {
+    /**
+     * Name of the folder holding the partial files
+     */
+    static final String FOLDER = ".partial";
+
+    /**
+     * Downloads folder to which complete files are moved
+     */
+    private final Path downloadsFolder;
+    /**
+     * Folder holding the partial files
+     */
+    private final Path folder;
+
+    /**
+     * Constructs a store for a downloads folder
+     *
+     * @param downloadsFolder The folder in which the received files are stored
+     */
+    PartialStore(String downloadsFolder) {
+        this.downloadsFolder = Paths.get(downloadsFolder);
+        this.folder = this.downloadsFolder.resolve(FOLDER);
+    }
+
+    /**
+     * Derives the transfer ID of a file, which stays the same whenever
+     * the same contents are sent under the same name
+     *
+     * @param name   Name of the file
+     * @param size   Size of the file
+     * @param digest Hexadecimal SHA-256 of the file
+     * @return Transfer ID
+     */
+    static String transferId(String name, long size, String digest) {
+        return UUID.nameUUIDFromBytes((name + '\0' + size + '\0' + digest)
+                .getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Get the path of a partial file
+     *
+     * @param id Transfer ID of the file
+     * @return Path of the partial file
+     */
+    Path getPartPath(String id) {
+        return folder.resolve(id + ".part");
+    }
+
+    /**
+     * Get the path of the commit file of a partial file
+     *
+     * @param id Transfer ID of the file
+     * @return Path of the commit file
+     */
+    private Path getCommitPath(String id) {
+        return folder.resolve(id + ".commit");
+    }
+
+    /**
+     * Returns the number of bytes of a file which need not be sent again
+     *
+     * @param id   Transfer ID of the file
+     * @param name Name of the file in the downloads folder
+     * @param size Size of the file
+     * @return Committed offset ({@code size} if the file is already complete, 0 to start over)
+     * @throws IOException If the store cannot be read
+     */
+    long getCommitted(String id, String name, long size) throws IOException {
+        Path commitPath = getCommitPath(id);
+        if (!Files.isRegularFile(commitPath) || Files.size(commitPath) != 8) {
+            return 0;
+        }
+        long committed = ByteBuffer.wrap(Files.readAllBytes(commitPath)).getLong();
+        if (committed == size) {
+            // Complete, as long as nobody has touched the file since
+            Path target = downloadsFolder.resolve(name);
+            return Files.isRegularFile(target) && Files.size(target) == size ? size : 0;
+        }
+        Path partPath = getPartPath(id);
+        if (committed < 0 || committed > size || !Files.isRegularFile(partPath) || Files.size(partPath) < committed) {
+            return 0;
+        }
+        return committed;
+    }
+
+    /**
+     * Creates a partial file at its full size, keeping what it already holds
+     *
+     * @param id   Transfer ID of the file
+     * @param size Size of the file
+     * @throws IOException If the file cannot be created
+     */
+    void preallocate(String id, long size) throws IOException {
+        Files.createDirectories(folder);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(getPartPath(id).toFile(), "rw");
+        try {
+            if (randomAccessFile.length() != size) {
+                randomAccessFile.setLength(size);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Forces a partial file to disk and records how much of it is committed
+     *
+     * @param id          Transfer ID of the file
+     * @param fileChannel Channel of the partial file
+     * @param offset      Number of bytes written from the start of the file
+     * @throws IOException If the file or the commit file cannot be written
+     */
+    void commit(String id, FileChannel fileChannel, long offset) throws IOException {
+        fileChannel.force(false);
+        writeCommit(id, offset);
+    }
+
+    /**
+     * Moves a complete file to the downloads folder and marks it complete
+     *
+     * @param id   Transfer ID of the file
+     * @param name Name of the file in the downloads folder
+     * @param size Size of the file
+     * @throws IOException If the file cannot be moved
+     */
+    void complete(String id, String name, long size) throws IOException {
+        Path target = downloadsFolder.resolve(name);
+        try {
+            Files.move(getPartPath(id), target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(getPartPath(id), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        writeCommit(id, size);
+    }
+
+    /**
+     * Forgets a file, so that it is sent from the start next time
+     *
+     * @param id Transfer ID of the file
+     * @throws IOException If the files cannot be deleted
+     */
+    void discard(String id) throws IOException {
+        Files.deleteIfExists(getPartPath(id));
+        Files.deleteIfExists(getCommitPath(id));
+    }
+
+    /**
+     * Deletes the partial and commit files of every transfer which is not
+     * to be kept and has not been written to for longer than an age
+     *
+     * @param keep   Transfer IDs of the files of the batch being received
+     * @param maxAge Age in milliseconds after which a transfer is abandoned
+     * @return Number of transfers deleted
+     * @throws IOException If the folder cannot be listed
+     */
+    int sweep(Set<String> keep, long maxAge) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return 0;
+        }
+        // Map from transfer ID to the time its files were last written
+        Map<String, Long> touchedMap = new HashMap<>();
+        DirectoryStream<Path> stream = Files.newDirectoryStream(folder);
+        try {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                if (dot < 0 || !(name.endsWith(".part") || name.endsWith(".commit"))) {
+                    continue;
+                }
+                String id = name.substring(0, dot);
+                long touched = Files.getLastModifiedTime(path).toMillis();
+                Long other = touchedMap.get(id);
+                touchedMap.put(id, other == null ? touched : Math.max(touched, other));
+            }
+        } finally {
+            stream.close();
+        }
+        long oldest = System.currentTimeMillis() - maxAge;
+        int swept = 0;
+        for (Map.Entry<String, Long> entry : touchedMap.entrySet()) {
+            if (entry.getValue() < oldest && !keep.contains(entry.getKey())) {
+                try {
+                    discard(entry.getKey());
+                    swept++;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return swept;
+    }
+
+    /**
+     * Writes the commit file of a partial file
+     *
+     * @param id     Transfer ID of the file
+     * @param offset Committed offset
+     * @throws IOException If the commit file cannot be written
+     */
+    private void writeCommit(String id, long offset) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(8);
+        record.putLong(offset).flip();
+        FileChannel commitChannel = FileChannel.open(getCommitPath(id), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        try {
+            while (record.hasRemaining()) {
+                commitChannel.write(record, record.position());
+            }
+            commitChannel.force(false);
+        } finally {
+            commitChannel.close();
+        }
+    }
+}
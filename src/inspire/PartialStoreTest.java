@@ -0,0 +1,71 @@
+package inspire;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+/**
+ * Test for {@link PartialStore} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class PartialStoreTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private File folder;
+    private PartialStore partialStore;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("__PartialStoreTest__").toFile();
+        partialStore = new PartialStore(folder.getPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] children = new File(folder, PartialStore.FOLDER).listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        new File(folder, PartialStore.FOLDER).delete();
+        folder.delete();
+    }
+
+    private String plant(String name, long age) throws Exception {
+        String id = PartialStore.transferId(name, 4, name);
+        partialStore.preallocate(id, 4);
+        File folder = new File(this.folder, PartialStore.FOLDER);
+        Files.write(new File(folder, id + ".commit").toPath(), new byte[8]);
+        new File(folder, id + ".part").setLastModified(System.currentTimeMillis() - age);
+        new File(folder, id + ".commit").setLastModified(System.currentTimeMillis() - age);
+        return id;
+    }
+
+    @Test
+    public void sweepAbandoned() throws Exception {
+        String abandoned = plant("abandoned.bag", 8 * DAY);
+        String named = plant("named.bag", 8 * DAY);
+        String fresh = plant("fresh.bag", DAY);
+        Assert.assertEquals(partialStore.sweep(Collections.singleton(named), 7 * DAY), 1);
+        File folder = new File(this.folder, PartialStore.FOLDER);
+        Assert.assertTrue(!new File(folder, abandoned + ".part").exists());
+        Assert.assertTrue(!new File(folder, abandoned + ".commit").exists());
+        Assert.assertTrue(new File(folder, named + ".part").exists());
+        Assert.assertTrue(new File(folder, fresh + ".part").exists());
+        Assert.assertEquals(partialStore.sweep(Collections.<String>emptySet(), 7 * DAY), 1);
+        Assert.assertTrue(new File(folder, fresh + ".commit").exists());
+    }
+
+    @Test
+    public void sweepWithoutFolder() throws Exception {
+        Assert.assertEquals(partialStore.sweep(Collections.<String>emptySet(), 0), 0);
+    }
+}
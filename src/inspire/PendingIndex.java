@@ -0,0 +1,422 @@
+package inspire;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the files pending for each receiver, sized for long outages
+ * with hundreds of thousands of files queued. Every distinct file is
+ * interned once as an {@code int} ID, however many receivers it is
+ * pending for; each receiver keeps only the IDs of its files, in the
+ * order they arrived, in primitive arrays. Operations on one receiver
+ * lock only that receiver's queue, so receivers never wait for each
+ * other; the intern table is locked briefly, once per file.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see ServerModel
+ * @see DeliveryLog
+ * @since 18-10-2026
+ */
+class PendingIndex {
+    /**
+     * Map from receiver host name to its queue
+     */
+    private final Map<String, IdQueue> queueMap;
+    /**
+     * Map from interned file to its ID (guarded by {@code this})
+     */
+    private final Map<SpooledFile, Integer> idMap;
+    /**
+     * Interned files by ID (guarded by {@code this})
+     */
+    private SpooledFile[] files;
+    /**
+     * Number of queue entries (and callers) holding each ID (guarded by {@code this})
+     */
+    private int[] references;
+    /**
+     * IDs free to be reused (guarded by {@code this})
+     */
+    private int[] freeIds;
+    /**
+     * Number of IDs in {@code freeIds} (guarded by {@code this})
+     */
+    private int freeCount;
+    /**
+     * Lowest ID never handed out (guarded by {@code this})
+     */
+    private int nextId;
+
+    /**
+     * Constructs an empty index
+     */
+    PendingIndex() {
+        this.queueMap = new ConcurrentHashMap<>();
+        this.idMap = new HashMap<>();
+        this.files = new SpooledFile[64];
+        this.references = new int[64];
+        this.freeIds = new int[16];
+    }
+
+    /**
+     * Get the queue of a receiver, creating it if need be
+     *
+     * @param hostName Host name of the receiver
+     * @return Queue of the receiver
+     */
+    private IdQueue getQueue(String hostName) {
+        IdQueue queue = queueMap.get(hostName);
+        if (queue == null) {
+            queueMap.putIfAbsent(hostName, new IdQueue());
+            queue = queueMap.get(hostName);
+        }
+        return queue;
+    }
+
+    /**
+     * Takes a reference to the ID of a file, interning the file if need be
+     *
+     * @param spooledFile File to be interned
+     * @param create      {@code false} to return -1 rather than intern a new file
+     * @return ID of the file (-1 if not interned)
+     */
+    private synchronized int acquire(SpooledFile spooledFile, boolean create) {
+        Integer id = idMap.get(spooledFile);
+        if (id == null) {
+            if (!create) {
+                return -1;
+            }
+            id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+            if (id == files.length) {
+                files = Arrays.copyOf(files, 2 * files.length);
+                references = Arrays.copyOf(references, 2 * references.length);
+            }
+            files[id] = spooledFile;
+            idMap.put(spooledFile, id);
+        }
+        references[id]++;
+        return id;
+    }
+
+    /**
+     * Lets go of a reference to an ID, freeing the ID with its last reference
+     *
+     * @param id ID of the file
+     */
+    private synchronized void release(int id) {
+        if (--references[id] == 0) {
+            idMap.remove(files[id]);
+            files[id] = null;
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, 2 * freeIds.length);
+            }
+            freeIds[freeCount++] = id;
+        }
+    }
+
+    /**
+     * Queues a file for a receiver
+     *
+     * @param hostName    Host name of the receiver
+     * @param spooledFile File to be queued
+     * @return {@code false} if the file is already pending for the receiver
+     */
+    boolean add(String hostName, SpooledFile spooledFile) {
+        IdQueue queue = getQueue(hostName);
+        int id = acquire(spooledFile, true);
+        boolean added;
+        synchronized (queue) {
+            added = queue.add(id);
+        }
+        if (!added) {
+            release(id);
+        }
+        return added;
+    }
+
+    /**
+     * Removes a file from a receiver's queue
+     *
+     * @param hostName    Host name of the receiver
+     * @param spooledFile File to be removed
+     * @return {@code true} if the file was pending for the receiver
+     */
+    boolean remove(String hostName, SpooledFile spooledFile) {
+        IdQueue queue = queueMap.get(hostName);
+        if (queue == null) {
+            return false;
+        }
+        // Held while the queue is searched, so that the ID is not reused meanwhile
+        int id = acquire(spooledFile, false);
+        if (id < 0) {
+            return false;
+        }
+        boolean removed;
+        synchronized (queue) {
+            removed = queue.remove(id);
+        }
+        release(id);
+        if (removed) {
+            release(id);
+        }
+        return removed;
+    }
+
+    /**
+     * Removes files from a receiver's queue
+     *
+     * @param hostName     Host name of the receiver
+     * @param spooledFiles Files to be removed
+     */
+    void removeAll(String hostName, Collection<SpooledFile> spooledFiles) {
+        for (SpooledFile spooledFile : spooledFiles) {
+            remove(hostName, spooledFile);
+        }
+    }
+
+    /**
+     * Tells whether nothing is pending for a receiver
+     *
+     * @param hostName Host name of the receiver
+     * @return {@code true} if the receiver's queue is empty
+     */
+    boolean isEmpty(String hostName) {
+        IdQueue queue = queueMap.get(hostName);
+        if (queue == null) {
+            return true;
+        }
+        synchronized (queue) {
+            return queue.size == 0;
+        }
+    }
+
+    /**
+     * Lists the files pending for a receiver
+     *
+     * @param hostName Host name of the receiver
+     * @return Pending files, in the order they arrived
+     */
+    List<SpooledFile> list(String hostName) {
+        IdQueue queue = queueMap.get(hostName);
+        if (queue == null) {
+            return new ArrayList<>();
+        }
+        synchronized (queue) {
+            List<SpooledFile> spooledList = new ArrayList<>(queue.size);
+            // Queued IDs cannot be freed while the queue is locked
+            synchronized (this) {
+                for (int i = 0; i < queue.end; i++) {
+                    if (queue.order[i] >= 0) {
+                        spooledList.add(files[queue.order[i]]);
+                    }
+                }
+            }
+            return spooledList;
+        }
+    }
+
+    /**
+     * Get the receivers which have, or have had, files pending
+     *
+     * @return Host names of the receivers
+     */
+    Set<String> getHostNames() {
+        return queueMap.keySet();
+    }
+
+    /**
+     * Get number of distinct files pending for any receiver
+     *
+     * @return Number of interned files
+     */
+    synchronized int getFileCount() {
+        return idMap.size();
+    }
+
+    /**
+     * Insertion-ordered set of IDs, kept as an array of IDs in arrival
+     * order (with holes where IDs were removed) and an open-addressing
+     * hash table from ID to position in that array
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class IdQueue {
+        /**
+         * Hash table key of an empty slot
+         */
+        private static final int EMPTY = 0;
+        /**
+         * Hash table key of a slot whose ID was removed
+         */
+        private static final int REMOVED = -1;
+
+        /**
+         * IDs in arrival order, -1 where removed
+         */
+        private int[] order;
+        /**
+         * Number of used elements of {@code order}
+         */
+        private int end;
+        /**
+         * Number of IDs in the queue
+         */
+        private int size;
+        /**
+         * Hash table keys: ID + 1, {@code EMPTY} or {@code REMOVED}
+         */
+        private int[] keys;
+        /**
+         * Hash table values: position of the ID in {@code order}
+         */
+        private int[] positions;
+        /**
+         * Number of slots of the hash table which are not {@code EMPTY}
+         */
+        private int usedSlots;
+
+        /**
+         * Constructs an empty queue
+         */
+        IdQueue() {
+            this.order = new int[4];
+            this.keys = new int[8];
+            this.positions = new int[8];
+        }
+
+        /**
+         * Get the first hash table slot to probe for an ID
+         *
+         * @param id   ID to look up
+         * @param mask Hash table length minus one
+         * @return Slot index
+         */
+        private static int slot(int id, int mask) {
+            // Finalizer of MurmurHash3, which spreads sequential IDs over the table
+            int hash = id;
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            hash *= 0xc2b2ae35;
+            hash ^= hash >>> 16;
+            return hash & mask;
+        }
+
+        /**
+         * Finds the hash table slot of an ID
+         *
+         * @param id ID to look up
+         * @return Slot index (-1 if the ID is not in the queue)
+         */
+        private int find(int id) {
+            int mask = keys.length - 1;
+            for (int i = slot(id, mask); keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == id + 1) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Puts an ID known not to be in the hash table
+         *
+         * @param id       ID to be put
+         * @param position Position of the ID in {@code order}
+         */
+        private void put(int id, int position) {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (keys[i] != EMPTY && keys[i] != REMOVED) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                usedSlots++;
+            }
+            keys[i] = id + 1;
+            positions[i] = position;
+        }
+
+        /**
+         * Adds an ID at the end of the queue
+         *
+         * @param id ID to be added
+         * @return {@code false} if the ID is already in the queue
+         */
+        boolean add(int id) {
+            if (find(id) >= 0) {
+                return false;
+            }
+            if (end == order.length) {
+                if (2 * size <= end) {
+                    // Mostly holes: close them up instead of growing
+                    rebuild(order.length);
+                } else {
+                    order = Arrays.copyOf(order, 2 * order.length);
+                }
+            }
+            if (4 * (usedSlots + 1) > 3 * keys.length) {
+                rebuild(order.length);
+            }
+            order[end] = id;
+            put(id, end);
+            end++;
+            size++;
+            return true;
+        }
+
+        /**
+         * Removes an ID from the queue
+         *
+         * @param id ID to be removed
+         * @return {@code true} if the ID was in the queue
+         */
+        boolean remove(int id) {
+            int i = find(id);
+            if (i < 0) {
+                return false;
+            }
+            order[positions[i]] = -1;
+            keys[i] = REMOVED;
+            size--;
+            if (size == 0) {
+                // Start over small, as a delivered backlog leaves nothing behind
+                order = new int[4];
+                keys = new int[8];
+                positions = new int[8];
+                end = 0;
+                usedSlots = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Closes up the holes in {@code order} and rebuilds the hash table to fit
+         *
+         * @param orderLength Length of the new {@code order} array
+         */
+        private void rebuild(int orderLength) {
+            int[] oldOrder = order;
+            int oldEnd = end;
+            order = new int[Math.max(orderLength, 4)];
+            end = 0;
+            int capacity = 8;
+            while (3 * capacity < 4 * (2 * size + 1)) {
+                capacity *= 2;
+            }
+            keys = new int[capacity];
+            positions = new int[capacity];
+            usedSlots = 0;
+            for (int i = 0; i < oldEnd; i++) {
+                if (oldOrder[i] >= 0) {
+                    order[end] = oldOrder[i];
+                    put(oldOrder[i], end);
+                    end++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package inspire;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap taken by a backlog of pending deliveries, held in a
+ * {@link PendingIndex} and in a map of synchronized sets per receiver.
+ * Usage: {@code PendingIndexBenchmark [files] [receivers]}
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see PendingIndex
+ * @since 18-10-2026
+ */
+class PendingIndexBenchmark {
+    /**
+     * Structure being measured, kept reachable while the heap is measured
+     */
+    private static Object measured;
+
+    public static void main(String[] args) throws Exception {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+        int receivers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        SpooledFile[] spooledFiles = new SpooledFile[files];
+        for (int i = 0; i < files; i++) {
+            spooledFiles[i] = new SpooledFile("file" + i + ".bag", new File("/spool/" + Integer.toHexString(i)),
+                    "Robo0");
+        }
+        long baseline = usedMemory();
+
+        Map<String, Set<SpooledFile>> setMap = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        for (int r = 0; r < receivers; r++) {
+            Set<SpooledFile> pendingSet = Collections.synchronizedSet(new LinkedHashSet<SpooledFile>());
+            setMap.put("Robo" + (r + 1), pendingSet);
+            for (SpooledFile spooledFile : spooledFiles) {
+                pendingSet.add(spooledFile);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        measured = setMap;
+        report("Synchronized sets", usedMemory() - baseline, seconds, files, receivers);
+        measured = null;
+        setMap = null;
+        baseline = usedMemory();
+
+        PendingIndex pendingIndex = new PendingIndex();
+        start = System.nanoTime();
+        for (int r = 0; r < receivers; r++) {
+            String hostName = "Robo" + (r + 1);
+            for (SpooledFile spooledFile : spooledFiles) {
+                pendingIndex.add(hostName, spooledFile);
+            }
+        }
+        seconds = (System.nanoTime() - start) / 1e9;
+        measured = pendingIndex;
+        report("Pending index", usedMemory() - baseline, seconds, files, receivers);
+        if (pendingIndex.getFileCount() != files) {
+            throw new IllegalStateException("Index lost files");
+        }
+    }
+
+    /**
+     * Prints the heap taken by a structure and the time taken to fill it
+     *
+     * @param name      Name of the structure
+     * @param bytes     Heap taken in bytes
+     * @param seconds   Time taken to fill it
+     * @param files     Number of distinct files
+     * @param receivers Number of receivers each file is pending for
+     */
+    private static void report(String name, long bytes, double seconds, int files, int receivers) {
+        long entries = (long) files * receivers;
+        System.out.printf("%-18s %8.1f MiB %6.1f bytes/entry %10.0f adds/s%n", name, bytes / (1024.0 * 1024),
+                (double) bytes / entries, entries / seconds);
+    }
+
+    /**
+     * Measures the heap in use after collecting garbage
+     *
+     * @return Heap in use in bytes
+     * @throws InterruptedException If interrupted while waiting for the collector
+     */
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
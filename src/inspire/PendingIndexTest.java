@@ -0,0 +1,73 @@
+package inspire;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test for {@link PendingIndex} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class PendingIndexTest {
+    private PendingIndex pendingIndex;
+    private SpooledFile first;
+    private SpooledFile second;
+
+    @Before
+    public void setUp() throws Exception {
+        pendingIndex = new PendingIndex();
+        first = new SpooledFile("first.bag", new File("/spool/1"), "Robo1");
+        second = new SpooledFile("second.bag", new File("/spool/2"), "Robo1");
+    }
+
+    @Test
+    public void addAndRemove() throws Exception {
+        Assert.assertTrue(pendingIndex.isEmpty("Robo2"));
+        Assert.assertTrue(pendingIndex.add("Robo2", first));
+        Assert.assertTrue(pendingIndex.add("Robo2", second));
+        Assert.assertTrue(pendingIndex.add("Robo3", first));
+        // Equal to a pending file, whoever sent it
+        Assert.assertFalse(pendingIndex.add("Robo2", new SpooledFile("first.bag", new File("/spool/1"))));
+        Assert.assertEquals(pendingIndex.list("Robo2"), Arrays.asList(first, second));
+        Assert.assertEquals(pendingIndex.getFileCount(), 2);
+        Assert.assertTrue(pendingIndex.remove("Robo2", first));
+        Assert.assertFalse(pendingIndex.remove("Robo2", first));
+        Assert.assertEquals(pendingIndex.list("Robo2"), Collections.singletonList(second));
+        // Still pending for the other receiver
+        Assert.assertEquals(pendingIndex.getFileCount(), 2);
+        pendingIndex.removeAll("Robo3", Collections.singletonList(first));
+        Assert.assertTrue(pendingIndex.isEmpty("Robo3"));
+        Assert.assertEquals(pendingIndex.getFileCount(), 1);
+    }
+
+    @Test
+    public void keepOrderAcrossRemovals() throws Exception {
+        List<SpooledFile> expected = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            SpooledFile spooledFile = new SpooledFile("file" + i, new File("/spool/" + i));
+            pendingIndex.add("Robo2", spooledFile);
+            // Delivered every third file, as the backlog drains and refills
+            if (i % 3 == 0) {
+                pendingIndex.remove("Robo2", spooledFile);
+            } else {
+                expected.add(spooledFile);
+            }
+        }
+        Assert.assertEquals(pendingIndex.list("Robo2"), expected);
+        pendingIndex.removeAll("Robo2", expected);
+        Assert.assertTrue(pendingIndex.isEmpty("Robo2"));
+        Assert.assertEquals(pendingIndex.getFileCount(), 0);
+        // IDs are reused for new files
+        pendingIndex.add("Robo2", first);
+        Assert.assertEquals(pendingIndex.list("Robo2"), Collections.singletonList(first));
+    }
+}
@@ -0,0 +1,120 @@
+package inspire;
+
+/**
+ * Progress of a transfer in bytes, as published by a {@code ProgressMeter}
+ * at most once per interval, whatever the number of chunks in between
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see ProgressMeter
+ * @since 18-10-2026
+ */
+class ProgressEvent extends TransferEvent {
+    /**
+     * Flag to indicate whether the bytes are being sent ({@code false} if received)
+     */
+    private final boolean sending;
+    /**
+     * Number of body bytes transferred so far
+     */
+    private final long bytes;
+    /**
+     * Number of body bytes to be transferred in all ({@code -1} if unknown)
+     */
+    private final long totalBytes;
+    /**
+     * Throughput over the last interval in bytes per second
+     */
+    private final long rate;
+    /**
+     * Estimated time left in milliseconds ({@code -1} if unknown)
+     */
+    private final long eta;
+
+    /**
+     * Initialises a progress event
+     *
+     * @param subject    Name of the file being transferred ({@code null} if none)
+     * @param sending    {@code true} if the bytes are being sent, {@code false} if received
+     * @param bytes      Number of body bytes transferred so far
+     * @param totalBytes Number of body bytes to be transferred in all ({@code -1} if unknown)
+     * @param rate       Throughput over the last interval in bytes per second
+     * @param eta        Estimated time left in milliseconds ({@code -1} if unknown)
+     */
+    ProgressEvent(String subject, boolean sending, long bytes, long totalBytes, long rate, long eta) {
+        super(Type.PROGRESS, subject);
+        this.sending = sending;
+        this.bytes = bytes;
+        this.totalBytes = totalBytes;
+        this.rate = rate;
+        this.eta = eta;
+    }
+
+    /**
+     * Get sending flag
+     *
+     * @return {@code true} if the bytes are being sent, {@code false} if received
+     */
+    boolean isSending() {
+        return sending;
+    }
+
+    /**
+     * Get number of body bytes transferred so far
+     *
+     * @return Bytes transferred
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get number of body bytes to be transferred in all
+     *
+     * @return Total bytes ({@code -1} if unknown)
+     */
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Get throughput over the last interval
+     *
+     * @return Rate in bytes per second
+     */
+    long getRate() {
+        return rate;
+    }
+
+    /**
+     * Get estimated time left
+     *
+     * @return Time left in milliseconds ({@code -1} if unknown)
+     */
+    long getEta() {
+        return eta;
+    }
+
+    /**
+     * Formats the progress for a status bar, such as
+     * {@code "Receiving a.bin: 45% at 3.2 MB/s, 1:20 left"}
+     *
+     * @return Progress text
+     */
+    String describe() {
+        StringBuilder stringBuilder = new StringBuilder(sending ? "Transferring" : "Receiving");
+        if (getSubject() != null) {
+            stringBuilder.append(' ').append(getSubject());
+        }
+        stringBuilder.append(':');
+        if (totalBytes > 0) {
+            stringBuilder.append(' ').append(Math.min(100, bytes * 100 / totalBytes)).append('%');
+        }
+        stringBuilder.append(String.format(" at %.1f MB/s", rate / 1e6));
+        if (eta >= 0) {
+            long seconds = (eta + 999) / 1000;
+            stringBuilder.append(String.format(", %d:%02d left", seconds / 60, seconds % 60));
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,261 @@
+package inspire;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the progress of a transfer as {@code ProgressEvent}s. The
+ * transfer only keeps counting its bytes; the meter samples the count
+ * once per interval on a shared timer thread, so however fast the chunks
+ * go by, listeners get at most one event per interval, and none while
+ * the transfer is stalled beyond the one which reports it. The timer
+ * never waits for the listeners: it hands each sample over to a pool of
+ * publishers, and a sample not yet published when the next one is taken
+ * is dropped, so a slow listener only gets fewer events and delays no
+ * other meter. The time left is estimated from a smoothed throughput,
+ * so that it does not jump with every interval.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see ProgressEvent
+ * @see MiniServer
+ * @see MiniClient
+ * @since 18-10-2026
+ */
+abstract class ProgressMeter implements Runnable {
+    /**
+     * Weight of the last interval's throughput in the smoothed throughput
+     */
+    private static final double SMOOTHING = 0.3;
+    /**
+     * Number of threads publishing the samples of every meter
+     */
+    static final int PUBLISH_THREADS = 4;
+    /**
+     * Timer sampling every meter, on a daemon thread
+     */
+    private static final ScheduledExecutorService timer = TaskExecutor.newTimer("progress");
+    /**
+     * Pool publishing the samples of every meter, on daemon threads
+     */
+    private static final ExecutorService publishers = Executors.newFixedThreadPool(PUBLISH_THREADS,
+            TaskExecutor.getDaemonFactory("progress-publisher"));
+
+    /**
+     * Source to publish the events from
+     */
+    private final EventSource eventSource;
+    /**
+     * Flag to indicate whether the bytes are being sent ({@code false} if received)
+     */
+    private final boolean sending;
+    /**
+     * Interval between samples in milliseconds
+     */
+    private final long interval;
+    /**
+     * Lock held while publishing, so that a sample cannot be published after the final progress
+     */
+    private final Object publishLock;
+    /**
+     * Latest sample not yet published ({@code null} if none)
+     */
+    private final AtomicReference<ProgressEvent> pendingEvent;
+    /**
+     * Flag to indicate whether a task publishing the latest sample is pending
+     */
+    private final AtomicBoolean scheduled;
+    /**
+     * Task publishing the latest sample on a publisher thread
+     */
+    private final Runnable publisher;
+    /**
+     * Number of body bytes to be transferred in all (-1 if unknown, guarded by {@code this})
+     */
+    private long totalBytes;
+    /**
+     * Sampling task ({@code null} until started, guarded by {@code this})
+     */
+    private ScheduledFuture<?> future;
+    /**
+     * Flag to indicate whether the meter has stopped (guarded by {@code this})
+     */
+    private boolean stopped;
+    /**
+     * Time of the start in nanoseconds (guarded by {@code this})
+     */
+    private long startTime;
+    /**
+     * Time of the last sample in nanoseconds (guarded by {@code this})
+     */
+    private long lastTime;
+    /**
+     * Bytes counted at the last sample (guarded by {@code this})
+     */
+    private long lastBytes;
+    /**
+     * Throughput over the last interval in bytes per second (guarded by {@code this})
+     */
+    private double lastRate;
+    /**
+     * Smoothed throughput in bytes per second (-1 until sampled, guarded by {@code this})
+     */
+    private double smoothedRate;
+
+    /**
+     * Constructs a meter for one transfer
+     *
+     * @param eventSource Source to publish the events from
+     * @param sending     {@code true} if the bytes are being sent, {@code false} if received
+     * @param interval    Interval between samples in milliseconds
+     */
+    ProgressMeter(EventSource eventSource, boolean sending, long interval) {
+        this.eventSource = eventSource;
+        this.sending = sending;
+        this.interval = interval;
+        this.publishLock = new Object();
+        this.pendingEvent = new AtomicReference<>();
+        this.scheduled = new AtomicBoolean();
+        this.publisher = new Runnable() {
+            @Override
+            public void run() {
+                publishPending();
+            }
+        };
+        this.totalBytes = -1;
+        this.smoothedRate = -1;
+    }
+
+    /**
+     * Get the number of body bytes transferred so far; called on the timer thread
+     *
+     * @return Bytes transferred
+     */
+    abstract long countBytes();
+
+    /**
+     * Get the name of the file being transferred; called on the timer thread
+     *
+     * @return File name ({@code null} if none)
+     */
+    abstract String currentFile();
+
+    /**
+     * Starts sampling
+     *
+     * @param totalBytes Number of body bytes to be transferred in all ({@code -1} if unknown)
+     */
+    synchronized void start(long totalBytes) {
+        if (future != null || stopped) {
+            return;
+        }
+        this.totalBytes = totalBytes;
+        startTime = System.nanoTime();
+        lastTime = startTime;
+        lastBytes = countBytes();
+        future = timer.scheduleAtFixedRate(this, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling and publishes the final progress, with the average
+     * throughput of the transfer, if it was started
+     */
+    void stop() {
+        synchronized (publishLock) {
+            ProgressEvent event;
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                stopped = true;
+                if (future == null) {
+                    return;
+                }
+                future.cancel(false);
+                // Superseded by the final progress
+                pendingEvent.set(null);
+                long bytes = countBytes();
+                long elapsed = Math.max(1, System.nanoTime() - startTime);
+                event = new ProgressEvent(currentFile(), sending, bytes, totalBytes,
+                        (long) (bytes * 1e9 / elapsed), 0);
+            }
+            eventSource.publish(event);
+        }
+    }
+
+    /**
+     * Stops sampling without publishing anything more, as when the transfer broke off
+     */
+    synchronized void cancel() {
+        stopped = true;
+        pendingEvent.set(null);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Samples the count, and hands the progress over to be published if it
+     * has moved since the last sample, or has just stalled; runs on the
+     * timer thread, and never waits for the listeners
+     */
+    @Override
+    public synchronized void run() {
+        if (stopped) {
+            return;
+        }
+        long now = System.nanoTime();
+        long bytes = countBytes();
+        if (bytes == lastBytes && lastRate == 0) {
+            lastTime = now;
+            return;
+        }
+        double rate = (bytes - lastBytes) * 1e9 / Math.max(1, now - lastTime);
+        smoothedRate = smoothedRate < 0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * smoothedRate;
+        lastTime = now;
+        lastBytes = bytes;
+        lastRate = rate;
+        long eta = -1;
+        if (totalBytes >= 0 && smoothedRate > 0) {
+            eta = (long) (Math.max(0, totalBytes - bytes) * 1000 / smoothedRate);
+        }
+        // Replaces a sample the listeners have not caught up with
+        pendingEvent.set(new ProgressEvent(currentFile(), sending, bytes, totalBytes, (long) rate, eta));
+        if (scheduled.compareAndSet(false, true)) {
+            publishers.execute(publisher);
+        }
+    }
+
+    /**
+     * Publishes the latest sample until none is left; runs on a publisher
+     * thread, one task per meter at a time, so that a slow listener holds
+     * up one publisher at most
+     */
+    private void publishPending() {
+        synchronized (publishLock) {
+            while (true) {
+                ProgressEvent event = pendingEvent.getAndSet(null);
+                if (event == null) {
+                    scheduled.set(false);
+                    // A sample handed over meanwhile posted no task of its own
+                    if (pendingEvent.get() == null || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                synchronized (this) {
+                    if (stopped) {
+                        continue;
+                    }
+                }
+                // Outside the lock on the state, so that sampling and cancelling never wait for the listeners
+                eventSource.publish(event);
+            }
+        }
+    }
+}
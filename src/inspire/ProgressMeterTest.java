@@ -0,0 +1,128 @@
+package inspire;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test for {@link ProgressMeter} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class ProgressMeterTest {
+    private EventSource eventSource;
+    private List<ProgressEvent> events;
+    private AtomicLong counter;
+    private ProgressMeter meter;
+
+    @Before
+    public void setUp() throws Exception {
+        eventSource = new EventSource(new EnumMap<TransferEvent.Type, Character>(TransferEvent.Type.class));
+        events = Collections.synchronizedList(new ArrayList<ProgressEvent>());
+        eventSource.addListener(new TransferListener() {
+            @Override
+            public void onEvent(TransferEvent event) {
+                events.add((ProgressEvent) event);
+            }
+        });
+        counter = new AtomicLong();
+        meter = new ProgressMeter(eventSource, false, 20) {
+            @Override
+            long countBytes() {
+                return counter.get();
+            }
+
+            @Override
+            String currentFile() {
+                return "a.bin";
+            }
+        };
+    }
+
+    @Test
+    public void throttleEvents() throws Exception {
+        meter.start(1L << 40);
+        long start = System.nanoTime();
+        // Many more updates than intervals
+        while (System.nanoTime() - start < 300000000L) {
+            counter.addAndGet(1000);
+        }
+        meter.stop();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        Assert.assertTrue(events.size() >= 3);
+        Assert.assertTrue(events.size() <= elapsed / 20 + 2);
+        long bytes = 0;
+        for (ProgressEvent event : events) {
+            Assert.assertTrue(event.getBytes() >= bytes);
+            Assert.assertTrue(event.getRate() >= 0);
+            bytes = event.getBytes();
+        }
+        ProgressEvent last = events.get(events.size() - 1);
+        Assert.assertEquals(last.getBytes(), counter.get());
+        Assert.assertEquals(last.getEta(), 0);
+        Assert.assertTrue(events.get(0).getEta() > 0);
+    }
+
+    @Test
+    public void quietWhileStalled() throws Exception {
+        meter.start(-1);
+        counter.set(5000);
+        Thread.sleep(200);
+        // One event for the bytes, one for the stall, then nothing
+        Assert.assertEquals(events.size(), 2);
+        Assert.assertEquals(events.get(1).getRate(), 0);
+        Assert.assertEquals(events.get(0).getEta(), -1);
+        meter.cancel();
+        Assert.assertEquals(events.size(), 2);
+    }
+
+    @Test
+    public void slowListenerDelaysNoOtherMeter() throws Exception {
+        EventSource slowSource = new EventSource(new EnumMap<TransferEvent.Type, Character>(TransferEvent.Type.class));
+        final List<ProgressEvent> slowEvents = Collections.synchronizedList(new ArrayList<ProgressEvent>());
+        slowSource.addListener(new TransferListener() {
+            @Override
+            public void onEvent(TransferEvent event) {
+                slowEvents.add((ProgressEvent) event);
+                try {
+                    Thread.sleep(250);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        ProgressMeter slowMeter = new ProgressMeter(slowSource, true, 20) {
+            @Override
+            long countBytes() {
+                return counter.get();
+            }
+
+            @Override
+            String currentFile() {
+                return "b.bin";
+            }
+        };
+        slowMeter.start(-1);
+        meter.start(-1);
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < 500000000L) {
+            counter.addAndGet(1000);
+            Thread.sleep(1);
+        }
+        meter.stop();
+        slowMeter.stop();
+        // The samples the slow listener could not keep up with were dropped, not queued
+        Assert.assertTrue(slowEvents.size() <= 5);
+        Assert.assertEquals(slowEvents.get(slowEvents.size() - 1).getBytes(), counter.get());
+        // The other meter kept publishing at its interval meanwhile
+        Assert.assertTrue(events.size() >= 10);
+    }
+}
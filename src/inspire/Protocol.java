@@ -0,0 +1,163 @@
+package inspire;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Constants and helpers for the wire protocol spoken between
+ * {@code MiniServer} and {@code MiniClient}.
+ * <p>
+ * Version 1 is the original framing: the sender starts writing as
+ * soon as the connection is made, with {@code int} counts and lengths
+ * and strings written as UTF-16 chars. Version 2 starts with a
+ * handshake: a version 2 sender stays silent until the receiver sends
+ * {@code MAGIC}, its highest version and the features it supports,
+ * and answers with the same fields for the version and features which
+ * will be used. A version 2 receiver only says hello after the sender
+ * has stayed silent for a short while, scaled by the time the connection
+ * took, so a version 1 sender is rarely left with unread bytes; if the
+ * first bytes after a hello are not {@code MAGIC}, they are taken as
+ * the start of a version 1 batch. A version 2 sender falls back to
+ * version 1 if no hello arrives. After the handshake, counts and sizes
+ * are varints and strings are UTF-8 prefixed with their varint length.
+ * Optional features are negotiated as a bitmask in the handshake.
+ * <p>
+ * With striping, every file body is preceded by a stripe count; 0
+ * means the body follows as usual. Otherwise the count is followed by
+ * a token, and the receiver opens that many stripe connections to the
+ * sender's port, each starting with {@code STRIPE_MAGIC} and the token.
+ * The sender sends ranges of the file over the stripes, each as its
+ * offset, its length and its bytes framed as a body, and ends every
+ * stripe with an offset of -1. Meanwhile the first connection carries only
+ * {@code STRIPE_OPEN}, asking for one more stripe, and finally
+ * {@code STRIPE_DONE} followed by the number of stripes which were used.
+ * <p>
+ * With a manifest, every body (and every range of a striped body) is
+ * followed by the CRC32C of the bytes sent in it, which both sides
+ * compute as the bytes pass. With chunk checksums, every body is sent
+ * as chunks, each followed by the CRC32C of its raw bytes. Before
+ * confirming the batch, the receiver asks for the chunks which did not
+ * match their checksums again, whether they came over the first
+ * connection or over a stripe: it sends their number, and for
+ * each the index of its file, its offset and its length, and the sender
+ * sends them framed as in a body. This repeats until no chunk is asked for.
+ * Every file is then checked against the SHA-256 in the manifest, however
+ * it arrived: as it streams in if its body came whole over the first
+ * connection, or else read back from the disk once it is complete.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniServer
+ * @see MiniClient
+ * @since 18-10-2026
+ */
+class Protocol {
+    /**
+     * First field of every handshake message ("DDRP")
+     */
+    static final int MAGIC = 0x44445250;
+    /**
+     * Original framing without a handshake
+     */
+    static final int VERSION_1 = 1;
+    /**
+     * Compact framing negotiated with a handshake
+     */
+    static final int VERSION_2 = 2;
+    /**
+     * Highest version supported by this build
+     */
+    static final int LATEST_VERSION = VERSION_2;
+    /**
+     * Feature: the batch starts with a manifest of every file's name, size
+     * and hexadecimal SHA-256, which the receiver accepts or rejects before
+     * any body is sent, and every body is followed by its CRC32C
+     */
+    static final int FEATURE_MANIFEST = 1;
+    /**
+     * Feature: file bodies are sent as chunks, each compressed with raw
+     * deflate or sent as it is if it does not shrink
+     */
+    static final int FEATURE_DEFLATE = 2;
+    /**
+     * Feature: the receiver follows its verdict on the manifest with the
+     * number of bytes it has already committed for each file, and the sender
+     * sends each body from there; the receiver confirms the batch once its
+     * last file is complete (requires {@code FEATURE_MANIFEST})
+     */
+    static final int FEATURE_RESUME = 4;
+    /**
+     * Feature: large file bodies may be sent as ranges over several
+     * connections at once (requires {@code FEATURE_MANIFEST})
+     */
+    static final int FEATURE_STRIPE = 8;
+    /**
+     * Feature: every chunk of a body is followed by its checksum, and only
+     * the chunks which do not match are sent again before the batch is
+     * confirmed (requires {@code FEATURE_RESUME})
+     */
+    static final int FEATURE_CHUNK_CRC = 16;
+    /**
+     * Features supported by this build
+     */
+    static final int SUPPORTED_FEATURES = FEATURE_MANIFEST | FEATURE_DEFLATE | FEATURE_RESUME | FEATURE_STRIPE
+            | FEATURE_CHUNK_CRC;
+    /**
+     * Largest number of raw bytes in a chunk of a file body
+     */
+    static final int CHUNK_SIZE = 128 * 1024;
+    /**
+     * Receiver's verdict on a manifest: send the batch
+     */
+    static final int BATCH_ACCEPTED = 0;
+    /**
+     * Receiver's verdict on a manifest: do not send the batch (followed by the reason)
+     */
+    static final int BATCH_REJECTED = 1;
+    /**
+     * First field of a stripe connection's hello ("DDRS")
+     */
+    static final int STRIPE_MAGIC = 0x44445253;
+    /**
+     * Sender's message during a striped body: all ranges are sent (followed by the number of stripes used)
+     */
+    static final int STRIPE_DONE = 0;
+    /**
+     * Sender's message during a striped body: open one more stripe
+     */
+    static final int STRIPE_OPEN = 1;
+    /**
+     * Largest number of times the damaged chunks of a batch are asked for again
+     */
+    static final int MAX_REPAIR_ROUNDS = 3;
+
+    /**
+     * Not to be instantiated
+     */
+    private Protocol() {
+    }
+
+    /**
+     * Waits until the peer has sent something on a blocking socket channel,
+     * without consuming it
+     *
+     * @param socketChannel Channel of the socket
+     * @param timeout       Maximum time to wait in milliseconds
+     * @return {@code true} if data (or end of stream) is available, {@code false} on timeout
+     * @throws IOException If the channel cannot be polled
+     */
+    static boolean waitForData(SocketChannel socketChannel, long timeout) throws IOException {
+        Selector selector = Selector.open();
+        try {
+            socketChannel.configureBlocking(false);
+            socketChannel.register(selector, SelectionKey.OP_READ);
+            return selector.select(Math.max(timeout, 1)) > 0;
+        } finally {
+            // Closing the selector deregisters the channel
+            selector.close();
+            socketChannel.configureBlocking(true);
+        }
+    }
+}
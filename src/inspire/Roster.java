@@ -0,0 +1,303 @@
+package inspire;
+
+import java.util.*;
+
+/**
+ * The Server's list of clients, indexed by host name. Every client is
+ * given a slot the first time it is seen, and keeps it for as long as
+ * the Server runs, whatever its place in the list and however often
+ * the list is reloaded; the upload port of a client which knows slots
+ * is derived from its slot.
+ * The list is replaced whole on reload, so readers never lock and always
+ * see either the old list or the new one.
+ * <p>
+ * Every reload which changes the list bumps its version, and the changes
+ * of the last few versions are kept, so that a client which has an older
+ * version can be sent what changed rather than the whole list.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see ServerModel
+ * @see Person
+ * @since 18-10-2026
+ */
+class Roster {
+    /**
+     * Number of versions whose changes are kept
+     */
+    static final int HISTORY_SIZE = 64;
+
+    /**
+     * Map from host name to slot of every client ever listed (guarded by {@code this})
+     */
+    private final Map<String, Integer> slotMap;
+    /**
+     * Next slot to be given out (guarded by {@code this})
+     */
+    private int nextSlot;
+    /**
+     * Current list of clients
+     */
+    private volatile State state;
+
+    /**
+     * Constructs a roster; clients get slots in list order, starting from 1
+     *
+     * @param clientList List of clients
+     */
+    Roster(List<Person> clientList) {
+        this.slotMap = new HashMap<>();
+        this.nextSlot = 1;
+        this.state = new State(Collections.<Person>emptyList(), new HashMap<String, Person>(),
+                new HashMap<String, Integer>(), 0, Collections.<Delta>emptyList());
+        reload(clientList);
+    }
+
+    /**
+     * Replaces the list of clients. Clients listed before keep their
+     * slots; new clients get the next free ones.
+     *
+     * @param clientList List of clients (a host name listed twice counts once)
+     * @return {@code true} if the list has changed (and so has its version)
+     */
+    synchronized boolean reload(List<Person> clientList) {
+        List<Person> clients = new ArrayList<>(clientList.size());
+        Map<String, Person> personMap = new HashMap<>();
+        for (Person client : clientList) {
+            if (personMap.containsKey(client.getHostName())) {
+                continue;
+            }
+            personMap.put(client.getHostName(), client);
+            clients.add(client);
+            if (!slotMap.containsKey(client.getHostName())) {
+                slotMap.put(client.getHostName(), nextSlot++);
+            }
+        }
+        Map<String, Integer> slots = new HashMap<>();
+        for (Person client : clients) {
+            slots.put(client.getHostName(), slotMap.get(client.getHostName()));
+        }
+        State oldState = state;
+        List<Change> changes = new ArrayList<>();
+        for (Person client : oldState.clients) {
+            Person person = personMap.get(client.getHostName());
+            if (person == null || !Objects.equals(person.getName(), client.getName())) {
+                changes.add(new Change(false, client));
+            }
+        }
+        for (Person client : clients) {
+            Person person = oldState.personMap.get(client.getHostName());
+            if (person == null || !Objects.equals(person.getName(), client.getName())) {
+                changes.add(new Change(true, client));
+            }
+        }
+        if (changes.isEmpty() && oldState.version > 0) {
+            return false;
+        }
+        long version = oldState.version + 1;
+        List<Delta> history = new ArrayList<>(oldState.history);
+        history.add(new Delta(oldState.version, Collections.unmodifiableList(changes)));
+        if (history.size() > HISTORY_SIZE) {
+            history.remove(0);
+        }
+        state = new State(Collections.unmodifiableList(clients), personMap, slots, version,
+                Collections.unmodifiableList(history));
+        return true;
+    }
+
+    /**
+     * Get version of the list
+     *
+     * @return Version, from 1, bumped on every change
+     */
+    long getVersion() {
+        return state.version;
+    }
+
+    /**
+     * Get what changed in the list since a version
+     *
+     * @param since Version the caller has
+     * @return Changes in order, each client removed before it is added again
+     * ({@code null} if the version is unknown or too old, so the whole list is needed)
+     */
+    List<Change> getChanges(long since) {
+        State current = state;
+        if (since == current.version) {
+            return Collections.emptyList();
+        }
+        if (since > current.version || current.history.isEmpty() || since < current.history.get(0).from) {
+            return null;
+        }
+        List<Change> changes = new ArrayList<>();
+        for (Delta delta : current.history) {
+            if (delta.from >= since) {
+                changes.addAll(delta.changes);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Get the clients
+     *
+     * @return Unmodifiable list of the clients, in list order
+     */
+    List<Person> getClients() {
+        return state.clients;
+    }
+
+    /**
+     * Get a client by its host name
+     *
+     * @param hostName Host name of the client
+     * @return The client ({@code null} if not listed)
+     */
+    Person get(String hostName) {
+        return state.personMap.get(hostName);
+    }
+
+    /**
+     * Get the slot of a client
+     *
+     * @param hostName Host name of the client
+     * @return Slot of the client, from 1 (-1 if not listed)
+     */
+    int getSlot(String hostName) {
+        Integer slot = state.slots.get(hostName);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Get number of clients
+     *
+     * @return Number of clients
+     */
+    int size() {
+        return state.clients.size();
+    }
+
+    /**
+     * A client added to or removed from the list
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    static class Change {
+        /**
+         * Flag to indicate whether the client was added ({@code false} if removed)
+         */
+        private final boolean added;
+        /**
+         * The client
+         */
+        private final Person person;
+
+        /**
+         * Initialises a change
+         *
+         * @param added  {@code true} if the client was added, {@code false} if removed
+         * @param person The client
+         */
+        Change(boolean added, Person person) {
+            this.added = added;
+            this.person = person;
+        }
+
+        /**
+         * Get added flag
+         *
+         * @return {@code true} if the client was added, {@code false} if removed
+         */
+        boolean isAdded() {
+            return added;
+        }
+
+        /**
+         * Get client
+         *
+         * @return The client
+         */
+        Person getPerson() {
+            return person;
+        }
+    }
+
+    /**
+     * The changes from one version of the list to the next
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class Delta {
+        /**
+         * Version changed from
+         */
+        private final long from;
+        /**
+         * Changes, removals first
+         */
+        private final List<Change> changes;
+
+        /**
+         * Initialises a delta
+         *
+         * @param from    Version changed from, to the next one
+         * @param changes Changes, removals first
+         */
+        Delta(long from, List<Change> changes) {
+            this.from = from;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * A list of clients with its indices, never changed once built
+     *
+     * @author Abhinav Baid, Atishay Jain
+     * @version 1.0
+     * @since 18-10-2026
+     */
+    private static class State {
+        /**
+         * Clients in list order
+         */
+        private final List<Person> clients;
+        /**
+         * Map from host name to client
+         */
+        private final Map<String, Person> personMap;
+        /**
+         * Map from host name to slot
+         */
+        private final Map<String, Integer> slots;
+        /**
+         * Version of the list
+         */
+        private final long version;
+        /**
+         * Changes of the last versions, oldest first
+         */
+        private final List<Delta> history;
+
+        /**
+         * Initialises a list of clients
+         *
+         * @param clients   Clients in list order
+         * @param personMap Map from host name to client
+         * @param slots     Map from host name to slot
+         * @param version   Version of the list
+         * @param history   Changes of the last versions, oldest first
+         */
+        State(List<Person> clients, Map<String, Person> personMap, Map<String, Integer> slots, long version,
+              List<Delta> history) {
+            this.clients = clients;
+            this.personMap = personMap;
+            this.slots = slots;
+            this.version = version;
+            this.history = history;
+        }
+    }
+}
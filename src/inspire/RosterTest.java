@@ -0,0 +1,116 @@
+package inspire;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for {@link Roster} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class RosterTest {
+    private Person first;
+    private Person second;
+    private Person third;
+    private Roster roster;
+
+    @Before
+    public void setUp() throws Exception {
+        first = new Person("Robot 1", "Robo1");
+        second = new Person("Robot 2", "Robo2");
+        third = new Person("Robot 3", "Robo3");
+        roster = new Roster(Arrays.asList(first, second));
+    }
+
+    @Test
+    public void lookUp() throws Exception {
+        Assert.assertEquals(roster.size(), 2);
+        Assert.assertSame(roster.get("Robo2"), second);
+        Assert.assertNull(roster.get("Robo3"));
+        // Slots follow the first list's order, as the ports did before
+        Assert.assertEquals(roster.getSlot("Robo1"), 1);
+        Assert.assertEquals(roster.getSlot("Robo2"), 2);
+        Assert.assertEquals(roster.getSlot("Robo3"), -1);
+    }
+
+    @Test
+    public void keepSlotsAcrossReloads() throws Exception {
+        roster.reload(Arrays.asList(third, second, first, new Person("Copy", "Robo1")));
+        Assert.assertEquals(roster.getClients(), Arrays.asList(third, second, first));
+        Assert.assertEquals(roster.getSlot("Robo1"), 1);
+        Assert.assertEquals(roster.getSlot("Robo2"), 2);
+        Assert.assertEquals(roster.getSlot("Robo3"), 3);
+        roster.reload(Collections.singletonList(third));
+        Assert.assertEquals(roster.getSlot("Robo1"), -1);
+        // Back again, with the slot it had
+        roster.reload(Arrays.asList(first, third));
+        Assert.assertEquals(roster.getSlot("Robo1"), 1);
+        Assert.assertEquals(roster.getSlot("Robo3"), 3);
+    }
+
+    @Test
+    public void versionChanges() throws Exception {
+        Assert.assertEquals(roster.getVersion(), 1);
+        // Same clients in another order is no change
+        Assert.assertFalse(roster.reload(Arrays.asList(second, first)));
+        Assert.assertEquals(roster.getVersion(), 1);
+        Assert.assertTrue(roster.reload(Arrays.asList(first, new Person("Renamed", "Robo2"), third)));
+        Assert.assertEquals(roster.getVersion(), 2);
+        List<Roster.Change> changes = roster.getChanges(1);
+        Assert.assertEquals(changes.size(), 3);
+        Assert.assertFalse(changes.get(0).isAdded());
+        Assert.assertSame(changes.get(0).getPerson(), second);
+        Assert.assertTrue(changes.get(1).isAdded());
+        Assert.assertEquals(changes.get(1).getPerson().getName(), "Renamed");
+        Assert.assertSame(changes.get(2).getPerson(), third);
+        roster.reload(Collections.singletonList(first));
+        Assert.assertEquals(roster.getChanges(1).size(), 5);
+        Assert.assertEquals(roster.getChanges(3).size(), 0);
+        // Versions never handed out, or too old to be kept, need the whole list
+        Assert.assertNull(roster.getChanges(4));
+        for (int i = 0; i < Roster.HISTORY_SIZE; i++) {
+            roster.reload(i % 2 == 0 ? Arrays.asList(first, second) : Collections.singletonList(first));
+        }
+        Assert.assertNull(roster.getChanges(1));
+        Assert.assertEquals(roster.getChanges(roster.getVersion() - 1).size(), 1);
+    }
+
+    @Test
+    public void readWhileReloading() throws Exception {
+        final List<Person> small = Collections.singletonList(first);
+        final List<Person> large = Arrays.asList(first, second, third);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicInteger torn = new AtomicInteger();
+        roster.reload(small);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    List<Person> clients = roster.getClients();
+                    if (clients.size() != 1 && clients.size() != 3) {
+                        torn.incrementAndGet();
+                    }
+                    if (roster.getSlot("Robo1") != 1) {
+                        torn.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20000; i++) {
+            roster.reload(i % 2 == 0 ? small : large);
+        }
+        running.set(false);
+        reader.join();
+        Assert.assertEquals(torn.get(), 0);
+    }
+}
@@ -2,11 +2,24 @@ package inspire;
 
 import java.io.*;
 import java.net.InetAddress;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The actual server class which is responsible for performing
@@ -20,7 +33,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * @see ServerController
  * @since 20-12-2016
  */
-class ServerModel extends Observable implements Runnable {
+class ServerModel extends EventSource implements Runnable {
     /**
      * Notifies start of a file receive
      */
@@ -49,6 +62,21 @@ class ServerModel extends Observable implements Runnable {
      * Notifies connection to a client
      */
     static final char CLIENT_CONNECTED = '6';
+    /**
+     * Codes of the events in the notification strings of {@code Observer}s
+     */
+    private static final Map<TransferEvent.Type, Character> notificationCodes =
+            new EnumMap<>(TransferEvent.Type.class);
+
+    static {
+        notificationCodes.put(TransferEvent.Type.FILE_RECEIVE_STARTED, FILE_RECEIVE_STARTED);
+        notificationCodes.put(TransferEvent.Type.FILE_RECEIVE_FINISHED, FILE_RECEIVE_FINISHED);
+        notificationCodes.put(TransferEvent.Type.FILES_RECEIVED, FILES_RECEIVED);
+        notificationCodes.put(TransferEvent.Type.FILE_SEND_STARTED, FILE_SEND_STARTED);
+        notificationCodes.put(TransferEvent.Type.FILE_SEND_FINISHED, FILE_SEND_FINISHED);
+        notificationCodes.put(TransferEvent.Type.FILES_SENT, FILES_SENT);
+        notificationCodes.put(TransferEvent.Type.CLIENT_CONNECTED, CLIENT_CONNECTED);
+    }
     /**
      * Port to connect to a client
      */
@@ -58,25 +86,108 @@ class ServerModel extends Observable implements Runnable {
      */
     private static final int dataPort = 9600;
     /**
-     * List of clients
+     * Folder (inside the downloads folder) in which each client's uploads are received
+     */
+    private static final String incomingFolder = ".incoming";
+    /**
+     * Time in milliseconds between two attempts to fetch the uploads of a
+     * client which has never said it is ready
+     */
+    private static final int pollInterval = 4000;
+    /**
+     * Time in milliseconds between two attempts to fetch the uploads of a
+     * client which says when it is ready, in case a {@code ready} line is lost
+     */
+    private static final int fallbackPollInterval = 60000;
+    /**
+     * Time in milliseconds to wait for a client's upload port to answer
+     */
+    private static final int connectTimeout = 2000;
+    /**
+     * Longest line accepted on a control connection
+     */
+    private static final int maxLineLength = 1024;
+    /**
+     * Number of threads looking up the host names of new connections
+     */
+    static final int LOOKUP_THREADS = 4;
+    /**
+     * List of clients, indexed by host name
+     */
+    private Roster roster;
+    /**
+     * Whole client list as sent to clients, encoded once per version (event loop only)
+     */
+    private ListSnapshot listSnapshot;
+    /**
+     * Index of the files pending for each client, in the order they arrived
+     */
+    private PendingIndex pendingIndex;
+    /**
+     * Host names of the clients being delivered their pending files right now
+     */
+    private Set<String> deliveringSet;
+    /**
+     * Map from client host name to the handler of its control connection
      */
-    private List<Person> clientList;
+    private Map<String, ClientHandler> handlerMap;
     /**
-     * Map from client host name to set of pending files
+     * Store holding the contents of the pending files
      */
-    private Map<String, Set<File>> clientFileMap;
+    private BlobSpool spool;
+    /**
+     * Log of the pending deliveries, from which they are recovered after a restart
+     */
+    private DeliveryLog deliveryLog;
+    /**
+     * Mappings of the pending files, shared by their receivers
+     */
+    private FanOut fanOut;
     /**
      * Folder to temporarily store received files
      */
     private String downloadsFolder;
     /**
-     * Server socket for {@code controlPort}
+     * Server socket channel for {@code controlPort}
+     */
+    private ServerSocketChannel serverSocketChannel;
+    /**
+     * Server socket channel for {@code dataPort}
+     */
+    private ServerSocketChannel miniServerSocketChannel;
+    /**
+     * Selector of the event loop, watching both ports and every control connection
+     */
+    private Selector selector;
+    /**
+     * Tasks handed to the event loop by other threads
+     */
+    private Queue<Runnable> taskQueue;
+    /**
+     * Threads looking up the host names of new connections, apart from the
+     * transfers so that new clients are answered while the transfers run
      */
-    private ServerSocket serverSocket;
+    private ExecutorService lookups;
     /**
-     * Server socket for {@code dataPort}
+     * Workers running the deliveries and the uploads
      */
-    private ServerSocket miniServerSocket;
+    private ExecutorService transfers;
+    /**
+     * Timer handing delayed tasks to the event loop
+     */
+    private ScheduledExecutorService timer;
+    /**
+     * Port the upload ports of the clients are counted from
+     */
+    private volatile int uploadPortBase;
+    /**
+     * Number of connections to upload ports not yet answered (written on the event loop only)
+     */
+    private volatile int pendingFetches;
+    /**
+     * Flag to indicate whether the server has been closed
+     */
+    private volatile boolean closed;
 
     /**
      * Starts a server
@@ -85,29 +196,118 @@ class ServerModel extends Observable implements Runnable {
      * @param downloadsFolder Folder to temporarily store received files
      */
     ServerModel(List<Person> clientList, String downloadsFolder) {
+        this(clientList, downloadsFolder, controlPort, dataPort);
+    }
+
+    /**
+     * Starts a server listening on the given ports
+     *
+     * @param clientList        List of clients
+     * @param downloadsFolder   Folder to temporarily store received files
+     * @param listenControlPort Port for control connections (0 for any free port)
+     * @param listenDataPort    Port for deliveries (0 for any free port)
+     */
+    ServerModel(List<Person> clientList, String downloadsFolder, int listenControlPort, int listenDataPort) {
+        super(notificationCodes);
         // Initialise server parameters
         try {
-            this.clientList = clientList;
-            this.clientFileMap = new ConcurrentHashMap<>();
-            for (Person client : clientList) {
-                clientFileMap.put(client.getHostName(), Collections.synchronizedSet(new HashSet<>()));
-            }
+            this.roster = new Roster(clientList);
+            this.pendingIndex = new PendingIndex();
+            this.deliveringSet = ConcurrentHashMap.newKeySet();
+            this.handlerMap = new ConcurrentHashMap<>();
             this.downloadsFolder = downloadsFolder;
-            this.serverSocket = new ServerSocket(controlPort);
-            Thread serverThread = new Thread(this);
-            serverThread.start();
+            this.spool = new BlobSpool(downloadsFolder);
+            this.fanOut = new FanOut();
+            this.deliveryLog = new DeliveryLog(downloadsFolder);
+            recover();
+            this.taskQueue = new ConcurrentLinkedQueue<>();
+            this.lookups = TaskExecutor.newPool(LOOKUP_THREADS);
+            this.transfers = TaskExecutor.newPool(TransferSettings.getDefault().getWorkerThreads());
+            this.uploadPortBase = dataPort;
+            this.timer = Executors.newSingleThreadScheduledExecutor(TaskExecutor.getThreadFactory());
+            this.selector = Selector.open();
+            this.serverSocketChannel = ServerSocketChannel.open();
+            serverSocketChannel.bind(new InetSocketAddress(listenControlPort));
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+            // Accepted sockets are channels, so they support zero-copy sends
+            this.miniServerSocketChannel = ServerSocketChannel.open();
+            miniServerSocketChannel.bind(new InetSocketAddress(listenDataPort));
+            miniServerSocketChannel.configureBlocking(false);
+            miniServerSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+            TaskExecutor.start(this);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Rebuilds the pending deliveries from the log, together with the
+     * references to their blobs, and starts the log afresh from them.
+     * Files whose blobs are gone are dropped, and so are blobs no
+     * delivery is pending for.
+     *
+     * @throws IOException If the log cannot be read or written
+     */
+    private void recover() throws IOException {
+        deliveryLog.recover(pendingIndex);
+        Map<File, Integer> referenceMap = new HashMap<>();
+        for (String hostName : pendingIndex.getHostNames()) {
+            for (SpooledFile spooledFile : pendingIndex.list(hostName)) {
+                Integer count = referenceMap.get(spooledFile.getBlob());
+                if (count == null && !spooledFile.getBlob().isFile()) {
+                    pendingIndex.remove(hostName, spooledFile);
+                    continue;
+                }
+                referenceMap.put(spooledFile.getBlob(), (count == null ? 0 : count) + 1);
+            }
+        }
+        for (Map.Entry<File, Integer> entry : referenceMap.entrySet()) {
+            spool.restore(entry.getKey(), entry.getValue());
+        }
+        spool.removeUnreferenced();
+        deliveryLog.compact(pendingIndex);
+    }
+
+    /**
+     * Compacts the log of the pending deliveries if it has grown enough
+     */
+    private void compactIfDue() {
+        if (deliveryLog.isCompactionDue()) {
+            try {
+                deliveryLog.compact(pendingIndex);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Get client list
      *
-     * @return Client list
+     * @return Unmodifiable client list
      */
     public List<Person> getClientList() {
-        return clientList;
+        return roster.getClients();
+    }
+
+    /**
+     * Replaces the client list; clients listed before keep their upload ports.
+     * If the list has changed, connected clients are told its new version,
+     * and ask for what changed since theirs.
+     *
+     * @param clientList List of clients
+     */
+    void setClientList(List<Person> clientList) {
+        boolean changed = roster.reload(clientList);
+        long version = roster.getVersion();
+        for (ClientHandler clientHandler : handlerMap.values()) {
+            if (changed) {
+                clientHandler.send("ROSTER " + version);
+            }
+            // Clients new to the list start being polled
+            clientHandler.scheduleFetch(0);
+        }
     }
 
     /**
@@ -117,6 +317,66 @@ class ServerModel extends Observable implements Runnable {
      */
     void setDownloadsFolder(String downloadsFolder) {
         this.downloadsFolder = downloadsFolder;
+        spool.setParentFolder(downloadsFolder);
+    }
+
+    /**
+     * Get the port control connections are accepted on
+     *
+     * @return Local control port
+     */
+    int getControlPort() {
+        return serverSocketChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Get the port deliveries are made on
+     *
+     * @return Local data port
+     */
+    int getDataPort() {
+        return miniServerSocketChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Set the port the upload ports of the clients are counted from, each
+     * client's being this plus its slot
+     *
+     * @param uploadPortBase Port the upload ports are counted from
+     */
+    void setUploadPortBase(int uploadPortBase) {
+        this.uploadPortBase = uploadPortBase;
+    }
+
+    /**
+     * Get the port a connected client is polled for uploads at
+     *
+     * @param hostName Host name of the client
+     * @return Upload port of the client ({@code -1} if it has none, or is not connected)
+     */
+    int getUploadPort(String hostName) {
+        ClientHandler clientHandler = handlerMap.get(hostName);
+        return clientHandler == null ? -1 : clientHandler.getUploadPort();
+    }
+
+    /**
+     * Get the number of connections to upload ports not yet answered
+     *
+     * @return Count of the fetches waiting to connect
+     */
+    int getPendingFetches() {
+        return pendingFetches;
+    }
+
+    /**
+     * Stops the server, closing both ports and every control connection
+     */
+    void close() {
+        closed = true;
+        selector.wakeup();
+        timer.shutdownNow();
+        lookups.shutdownNow();
+        transfers.shutdownNow();
     }
 
     /**
@@ -135,228 +395,871 @@ class ServerModel extends Observable implements Runnable {
     }
 
     /**
-     * Spawn a server thread
+     * Runs a task on the event loop
+     *
+     * @param task Task to be run
+     */
+    private void runOnLoop(Runnable task) {
+        taskQueue.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Spawn a server thread running the event loop. The loop accepts
+     * connections, reads and writes control lines and connects to the
+     * upload ports; host name lookups and transfers, which block, are
+     * handed to their own threads.
      */
     @Override
     public void run() {
         try {
-            miniServerSocket = new ServerSocket(dataPort);
-            // Keep trying to accept client connections
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                setChanged();
-                notifyObservers(String.valueOf(CLIENT_CONNECTED) + " " + getHostName(clientSocket));
-                // Thread to pass client list, if requested
-                Thread listPasser = new Thread(new ListPasser(
-                        new BufferedReader(new InputStreamReader(clientSocket.getInputStream())),
-                        new PrintWriter(clientSocket.getOutputStream())
-                ));
-                listPasser.start();
-                // Thread to receive files from the client
-                Thread clientHandler = new Thread(new ClientHandler(clientSocket));
-                clientHandler.start();
+            while (!closed) {
+                selector.select();
+                Runnable task;
+                while ((task = taskQueue.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.channel() == serverSocketChannel) {
+                        acceptControl();
+                    } else if (key.channel() == miniServerSocketChannel) {
+                        acceptData();
+                    } else {
+                        ClientHandler clientHandler = (ClientHandler) key.attachment();
+                        if (key.channel() != clientHandler.socketChannel) {
+                            // A connection to the client's upload port
+                            clientHandler.finishFetch(key);
+                            continue;
+                        }
+                        try {
+                            if (key.isReadable()) {
+                                clientHandler.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                clientHandler.write();
+                            }
+                        } catch (IOException e) {
+                            // Client has been disconnected
+                            clientHandler.close();
+                        }
+                    }
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof ClientHandler) {
+                    ((ClientHandler) key.attachment()).close();
+                }
+            }
+            try {
+                serverSocketChannel.close();
+                miniServerSocketChannel.close();
+                selector.close();
+                deliveryLog.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
+    /**
+     * Accepts a control connection; its host name is looked up on the
+     * lookup threads before it is registered with the event loop
+     *
+     * @throws IOException If the connection cannot be accepted
+     */
+    private void acceptControl() throws IOException {
+        final SocketChannel socketChannel = serverSocketChannel.accept();
+        if (socketChannel == null) {
+            return;
+        }
+        socketChannel.configureBlocking(false);
+        lookups.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final ClientHandler clientHandler = new ClientHandler(socketChannel,
+                            getHostName(socketChannel.socket()));
+                    runOnLoop(new Runnable() {
+                        @Override
+                        public void run() {
+                            clientHandler.register();
+                        }
+                    });
+                } catch (UnknownHostException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Accepts a data port connection and, once its host name is looked up,
+     * hands it to a transfer worker, which delivers every file pending for
+     * the connecting client
+     *
+     * @throws IOException If the connection cannot be accepted
+     */
+    private void acceptData() throws IOException {
+        // Accepted in blocking mode, as the transfer itself blocks
+        final SocketChannel socketChannel = miniServerSocketChannel.accept();
+        if (socketChannel == null) {
+            return;
+        }
+        lookups.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Socket socket = socketChannel.socket();
+                try {
+                    final String hostName = getHostName(socket);
+                    if (deliveringSet.contains(hostName)) {
+                        // Possibly a stripe of the delivery under way; its hello is awaited on a thread
+                        // of its own, which is then sent over by the stripe's sender
+                        TaskExecutor.start(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    if (!StripeSender.join(socket, TransferSettings.getDefault().getHandshakeTimeout())) {
+                                        // Already being delivered to
+                                        socket.close();
+                                    }
+                                } catch (IOException e) {
+                                    e.printStackTrace();
+                                }
+                            }
+                        });
+                        return;
+                    }
+                    if (pendingIndex.isEmpty(hostName) || !deliveringSet.add(hostName)) {
+                        // Nothing to deliver, or already being delivered to
+                        socket.close();
+                        return;
+                    }
+                    transfers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                deliver(socket, hostName);
+                            } finally {
+                                deliveringSet.remove(hostName);
+                            }
+                            if (!pendingIndex.isEmpty(hostName)) {
+                                // More files arrived during the delivery
+                                signalPending(hostName);
+                            }
+                        }
+                    });
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
     /**
      * This class handles a single client after its connection
-     * has been accepted.
+     * has been accepted: it answers the client's control lines and connects
+     * to the client's upload port on the event loop, and receives the
+     * client's uploads on the transfer workers.
      *
      * @author Abhinav Baid, Atishay Jain
      * @version 1.0
      * @since 20-12-2016
      */
-    private class ClientHandler implements Runnable {
+    private class ClientHandler {
+        /**
+         * Control connection of the client
+         */
+        private final SocketChannel socketChannel;
         /**
-         * Client socket after accepting connection
+         * Address of the client, to which its upload port is connected without a lookup
          */
-        private Socket clientSocket;
+        private final InetAddress address;
         /**
          * Host name of the client
          */
-        private String hostName;
+        private final String hostName;
+        /**
+         * Bytes of the control line being read
+         */
+        private final ByteBuffer readBuffer;
+        /**
+         * Lines waiting to be written to the control connection (event loop only)
+         */
+        private final Deque<ByteBuffer> writeQueue;
+        /**
+         * Key of the control connection with the selector (event loop only)
+         */
+        private SelectionKey key;
+        /**
+         * Next attempt to fetch the client's uploads ({@code null} if none is scheduled)
+         */
+        private ScheduledFuture<?> fetchFuture;
+        /**
+         * Flag to indicate whether an upload is being fetched right now
+         */
+        private boolean fetching;
+        /**
+         * Connection to the client's upload port not yet answered ({@code null} if none; event loop only)
+         */
+        private SocketChannel fetchChannel;
+        /**
+         * Time in nanoseconds the connection to the upload port was started (event loop only)
+         */
+        private long fetchStart;
+        /**
+         * Flag to indicate whether the client has said it takes uploads at the
+         * port of its slot; older clients take them at the port of their place in the list
+         */
+        private volatile boolean slotAware;
+        /**
+         * Place of the client in the whole list last sent to it ({@code -1} if
+         * none), from which a client without slots works out its upload port
+         */
+        private volatile int listedIndex = -1;
+        /**
+         * Flag to indicate whether the client has said it is ready, and so
+         * says so whenever it has files to upload
+         */
+        private volatile boolean pushing;
+        /**
+         * Flag to indicate whether the control connection has been closed
+         */
+        private volatile boolean closed;
 
         /**
          * Initialise client handler
          *
-         * @param clientSocket Client socket
+         * @param socketChannel Control connection of the client
+         * @param hostName      Host name of the client
          */
-        ClientHandler(Socket clientSocket) {
+        ClientHandler(SocketChannel socketChannel, String hostName) {
+            this.socketChannel = socketChannel;
+            this.address = socketChannel.socket().getInetAddress();
+            this.hostName = hostName;
+            this.readBuffer = ByteBuffer.allocate(maxLineLength);
+            this.writeQueue = new ArrayDeque<>();
+        }
+
+        /**
+         * Registers the control connection with the event loop and starts
+         * fetching the client's uploads (event loop only)
+         */
+        void register() {
             try {
-                this.clientSocket = clientSocket;
-                this.hostName = getHostName(this.clientSocket);
-            } catch (UnknownHostException e) {
+                key = socketChannel.register(selector, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
                 e.printStackTrace();
+                close();
+                return;
             }
+            handlerMap.put(hostName, this);
+            publish(new TransferEvent(TransferEvent.Type.CLIENT_CONNECTED, hostName));
+            if (!pendingIndex.isEmpty(hostName)) {
+                // Files arrived for the client while it was away
+                send("PENDING");
+            }
+            scheduleFetch(0);
         }
 
         /**
-         * Spawn a thread for handling the particular client requests
+         * Reads whatever the client has sent and handles each complete line (event loop only)
+         *
+         * @throws IOException If the connection is closed or cannot be read
          */
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    // Try to connect to the client
-                    Socket socket = new Socket(hostName, dataPort + clientList.indexOf(new Person(null, hostName)) + 1);
-                    // If accepted, the client wants to send files
-                    final List<String> receiverList = new ArrayList<>();
-                    final List<File> fileList = new ArrayList<>();
-                    // A thread to receive the files
-                    MiniClient miniClient = new MiniClient(socket, downloadsFolder);
-                    Thread miniClientThread = new Thread(miniClient);
-                    miniClient.addObserver(new Observer() {
+        void read() throws IOException {
+            if (socketChannel.read(readBuffer) < 0) {
+                throw new EOFException("Control connection closed");
+            }
+            readBuffer.flip();
+            int start = 0;
+            for (int i = 0; i < readBuffer.limit(); i++) {
+                if (readBuffer.get(i) == '\n') {
+                    int end = i > start && readBuffer.get(i - 1) == '\r' ? i - 1 : i;
+                    handleLine(new String(readBuffer.array(), start, end - start, Charset.defaultCharset()));
+                    start = i + 1;
+                }
+            }
+            readBuffer.position(start);
+            readBuffer.compact();
+            if (!readBuffer.hasRemaining()) {
+                throw new IOException("Control line too long");
+            }
+        }
+
+        /**
+         * Answers a control line (event loop only)
+         *
+         * @param line Line sent by the client
+         */
+        private void handleLine(String line) {
+            if (line.startsWith("getlist")) {
+                // Client list requested, whole or as the changes since the client's version
+                String since = line.substring(7).trim();
+                // Read before the list, so that a reload in between is sent again rather than missed
+                long version = roster.getVersion();
+                List<Roster.Change> changes = null;
+                // Clients without slots are always sent the whole list, as their place in it gives their port
+                if (!since.isEmpty() && slotAware) {
+                    try {
+                        changes = roster.getChanges(Long.parseLong(since));
+                    } catch (NumberFormatException e) {
+                        // Not a version: the whole list is sent
+                    }
+                }
+                ByteBuffer listBuffer = null;
+                StringBuilder stringBuilder = new StringBuilder();
+                if (changes == null) {
+                    ListSnapshot snapshot = getListSnapshot(version);
+                    listBuffer = snapshot.bytes.duplicate();
+                    int index = snapshot.indexOf(hostName);
+                    if (!slotAware && index != listedIndex) {
+                        // Polled at the port the client now works out
+                        listedIndex = index;
+                        scheduleFetch(0);
+                    }
+                } else {
+                    stringBuilder.append("DELTA ").append(since).append(' ').append(version).append(' ')
+                            .append(changes.size()).append(System.lineSeparator());
+                    for (Roster.Change change : changes) {
+                        if (change.isAdded()) {
+                            stringBuilder.append("ADD").append(System.lineSeparator());
+                            stringBuilder.append(change.getPerson().getName()).append(System.lineSeparator());
+                        } else {
+                            stringBuilder.append("REMOVE").append(System.lineSeparator());
+                        }
+                        stringBuilder.append(change.getPerson().getHostName()).append(System.lineSeparator());
+                    }
+                }
+                int slot = roster.getSlot(hostName);
+                if (slot > 0 && slotAware) {
+                    // The client's upload port, which older clients work out from the list order
+                    stringBuilder.append("SLOT ").append(slot).append(System.lineSeparator());
+                }
+                ByteBuffer lineBuffer = ByteBuffer.wrap(stringBuilder.toString().getBytes(Charset.defaultCharset()));
+                if (listBuffer == null) {
+                    enqueue(lineBuffer);
+                } else {
+                    // The shared list and this client's own lines, in one write
+                    enqueue(listBuffer, lineBuffer);
+                }
+            } else if (line.startsWith("slots")) {
+                // Client takes uploads at the port of its slot, however the list is reordered
+                slotAware = true;
+                scheduleFetch(0);
+            } else if (line.startsWith("ready")) {
+                // Client has files to send, and from now on is only polled in case a line is lost
+                pushing = true;
+                scheduleFetch(0);
+            }
+        }
+
+        /**
+         * Sends a line to the client from any thread
+         *
+         * @param line Line to be sent
+         */
+        void send(final String line) {
+            runOnLoop(new Runnable() {
+                @Override
+                public void run() {
+                    enqueue(line + System.lineSeparator());
+                }
+            });
+        }
+
+        /**
+         * Queues text to be written and writes as much as the connection takes (event loop only)
+         *
+         * @param text Text to be written
+         */
+        private void enqueue(String text) {
+            enqueue(ByteBuffer.wrap(text.getBytes(Charset.defaultCharset())));
+        }
+
+        /**
+         * Queues buffers to be written and writes as much as the connection takes (event loop only)
+         *
+         * @param buffers Buffers to be written, in order
+         */
+        private void enqueue(ByteBuffer... buffers) {
+            if (closed) {
+                return;
+            }
+            Collections.addAll(writeQueue, buffers);
+            try {
+                write();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Writes the queued lines until the connection would block (event loop only)
+         *
+         * @throws IOException If the connection cannot be written
+         */
+        void write() throws IOException {
+            if (!writeQueue.isEmpty()) {
+                // Everything queued goes in one gather write
+                socketChannel.write(writeQueue.toArray(new ByteBuffer[writeQueue.size()]));
+                while (!writeQueue.isEmpty() && !writeQueue.peek().hasRemaining()) {
+                    writeQueue.poll();
+                }
+            }
+            if (!writeQueue.isEmpty()) {
+                // Carry on once the connection can take more
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Schedules an attempt to fetch the client's uploads, unless one is under way
+         *
+         * @param delay Time to wait in milliseconds
+         */
+        synchronized void scheduleFetch(long delay) {
+            final int port = getUploadPort();
+            if (closed || fetching || port < 0 || timer.isShutdown()) {
+                return;
+            }
+            if (fetchFuture != null) {
+                fetchFuture.cancel(false);
+            }
+            fetchFuture = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    runOnLoop(new Runnable() {
                         @Override
-                        public void update(Observable observable, Object o) {
-                            String action = (String) o;
-                            switch (action.charAt(0)) {
-                                case MiniClient.RECEIVER_ADDED:
-                                    receiverList.add(action.substring(2));
-                                    break;
-                                case MiniClient.FILE_RECEIVE_STARTED:
-                                    setChanged();
-                                    notifyObservers(String.valueOf(FILE_RECEIVE_STARTED) + " " + action.substring(2));
-                                    break;
-                                case MiniClient.FILE_RECEIVE_FINISHED:
-                                    fileList.add(new File(downloadsFolder + "/" + action.substring(2)));
-                                    setChanged();
-                                    notifyObservers(String.valueOf(FILE_RECEIVE_FINISHED) + " " + action.substring(2));
-                                    break;
-                                case MiniClient.FILES_RECEIVED:
-                                    // Start sending the files to the receivers
-                                    // mentioned by the client
-                                    for (String hostName : receiverList) {
-                                        clientFileMap.get(hostName).addAll(fileList);
-                                    }
-                                    send(new HashSet<>(receiverList), fileList);
-                                    setChanged();
-                                    notifyObservers(String.valueOf(FILES_RECEIVED) + " " + hostName);
-                                    break;
-                            }
+                        public void run() {
+                            startFetch(port);
                         }
                     });
-                    miniClientThread.start();
-                    miniClientThread.join();
-                } catch (IOException | InterruptedException e) {
-                    try {
-                        Thread.sleep(4000);
-                    } catch (InterruptedException e1) {
-                        e1.printStackTrace();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Get the port the client takes uploads at: the port of its slot if it
+         * has said it knows slots, or else the port of its place in the list
+         * last sent to it, which is where clients from before slots listen
+         *
+         * @return Upload port of the client ({@code -1} if it has none, or it is not yet known)
+         */
+        int getUploadPort() {
+            int slot = roster.getSlot(hostName);
+            if (slot < 0) {
+                // Unknown clients have no upload port
+                return -1;
+            }
+            if (slotAware) {
+                return uploadPortBase + slot;
+            }
+            int index = listedIndex;
+            return index < 0 ? -1 : uploadPortBase + index + 1;
+        }
+
+        /**
+         * Starts connecting to the client's upload port without blocking, and
+         * gives up if it has not answered within the connect timeout (event loop only)
+         *
+         * @param port Upload port of the client
+         */
+        private void startFetch(int port) {
+            synchronized (this) {
+                if (fetching || closed) {
+                    // Another attempt got to the event loop first
+                    return;
+                }
+                fetching = true;
+            }
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                fetchStart = System.nanoTime();
+                if (channel.connect(new InetSocketAddress(address, port))) {
+                    startReceive(channel);
+                    return;
+                }
+                channel.register(selector, SelectionKey.OP_CONNECT, this);
+                fetchChannel = channel;
+                pendingFetches++;
+                final SocketChannel pendingChannel = channel;
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        runOnLoop(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (fetchChannel == pendingChannel) {
+                                    // The client is away, or too busy to answer
+                                    abortFetch();
+                                    endFetch(pollDelay());
+                                }
+                            }
+                        });
                     }
+                }, connectTimeout, TimeUnit.MILLISECONDS);
+            } catch (IOException | RejectedExecutionException e) {
+                closeQuietly(channel);
+                if (channel != null && fetchChannel == channel) {
+                    abortFetch();
                 }
+                endFetch(pollDelay());
             }
         }
 
         /**
-         * Send files to the receivers
+         * Completes the connection to the client's upload port once the
+         * selector reports it answered (event loop only)
          *
-         * @param receiverList List of receivers
-         * @param fileList     List of files to be transferred
+         * @param fetchKey Key of the connection with the selector
          */
-        private void send(final Set<String> receiverList, final List<File> fileList) {
-            Thread handler = new Thread(new Runnable() {
+        void finishFetch(SelectionKey fetchKey) {
+            SocketChannel channel = (SocketChannel) fetchKey.channel();
+            fetchKey.cancel();
+            fetchChannel = null;
+            pendingFetches--;
+            try {
+                channel.finishConnect();
+            } catch (IOException e) {
+                // Nothing to upload: try again when the client says it is ready, or else at the next poll
+                closeQuietly(channel);
+                endFetch(pollDelay());
+                return;
+            }
+            startReceive(channel);
+        }
+
+        /**
+         * Hands a connection to the client's upload port to a transfer worker,
+         * which receives the client's files (event loop only)
+         *
+         * @param channel Connected channel
+         */
+        private void startReceive(final SocketChannel channel) {
+            final long connectTime = (System.nanoTime() - fetchStart) / 1000000;
+            // Handed over from the next turn of the loop, by when the selector has let go of the channel
+            runOnLoop(new Runnable() {
                 @Override
                 public void run() {
-                    // Till no more receivers are left
-                    while (receiverList.size() != 0) {
-                        try {
-                            // Accept client and see if it is one of the receivers
-                            Socket socket = miniServerSocket.accept();
-                            final String hostName = getHostName(socket);
-                            // Client is one of the receivers
-                            if (receiverList.contains(hostName)) {
-                                // A thread to send the files to the receiver
-                                MiniServer miniserver = new MiniServer(socket, fileList, null, null, true);
-                                Thread miniServerThread = new Thread(miniserver);
-                                miniserver.addObserver(new Observer() {
-                                    @Override
-                                    public void update(Observable observable, Object o) {
-                                        String action = (String) o;
-                                        switch (action.charAt(0)) {
-                                            case MiniServer.FILE_SEND_STARTED:
-                                                setChanged();
-                                                notifyObservers(String.valueOf(FILE_SEND_STARTED) + " "
-                                                        + action.substring(2));
-                                                break;
-                                            case MiniServer.FILE_SEND_FINISHED:
-                                                setChanged();
-                                                notifyObservers(String.valueOf(FILE_SEND_FINISHED) + " "
-                                                        + action.substring(2));
-                                                break;
-                                            case MiniServer.FILES_SENT:
-                                                clientFileMap.get(hostName).removeAll(fileList);
-                                                setChanged();
-                                                notifyObservers(String.valueOf(FILES_SENT) + " "
-                                                        + action.substring(2));
-                                                break;
-                                        }
-                                    }
-                                });
-                                receiverList.remove(hostName);
-                                miniServerThread.start();
+                    try {
+                        channel.configureBlocking(true);
+                        transfers.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    receive(channel.socket(), connectTime);
+                                } finally {
+                                    endFetch(0);
+                                }
+                            }
+                        });
+                    } catch (IOException | RejectedExecutionException e) {
+                        closeQuietly(channel);
+                        endFetch(pollDelay());
+                    }
+                }
+            });
+        }
+
+        /**
+         * Closes the connection to the client's upload port not yet answered (event loop only)
+         */
+        private void abortFetch() {
+            closeQuietly(fetchChannel);
+            fetchChannel = null;
+            pendingFetches--;
+        }
+
+        /**
+         * Marks the fetch as over and schedules the next
+         *
+         * @param delay Time to wait in milliseconds before the next
+         */
+        private void endFetch(long delay) {
+            synchronized (this) {
+                fetching = false;
+            }
+            scheduleFetch(delay);
+        }
+
+        /**
+         * Get the time to wait before polling the client again
+         *
+         * @return Poll interval in milliseconds
+         */
+        private long pollDelay() {
+            return pushing ? fallbackPollInterval : pollInterval;
+        }
+
+        /**
+         * Receives the files the client is uploading (worker only)
+         *
+         * @param socket      Socket connected to the client's upload port
+         * @param connectTime Time in milliseconds it took to connect
+         */
+        private void receive(Socket socket, long connectTime) {
+            // If accepted, the client wants to send files
+            final List<String> receiverList = new ArrayList<>();
+            final List<File> fileList = new ArrayList<>();
+            // Received apart from other clients' uploads, so that equal names do not clash
+            final File clientFolder = new File(downloadsFolder + "/" + incomingFolder, hostName);
+            clientFolder.mkdirs();
+            MiniClient miniClient = new MiniClient(socket, clientFolder.getPath());
+            miniClient.setConnectTime(connectTime);
+            miniClient.addListener(new TransferListener() {
+                @Override
+                public void onEvent(TransferEvent event) {
+                    switch (event.getType()) {
+                        case RECEIVER_ADDED:
+                            receiverList.add(event.getSubject());
+                            break;
+                        case FILE_RECEIVE_STARTED:
+                        case PROGRESS:
+                            publish(event);
+                            break;
+                        case FILE_RECEIVE_FINISHED:
+                            fileList.add(new File(clientFolder, event.getSubject()));
+                            publish(event);
+                            break;
+                        case FILES_RECEIVED:
+                            publish(new TransferEvent(TransferEvent.Type.FILES_RECEIVED, hostName));
+                            break;
+                    }
+                }
+            });
+            // Spooled and logged before the client is told the batch is through, so that
+            // a failure in between leaves the batch with the client, which sends it again
+            miniClient.setBatchCommitter(new BatchCommitter() {
+                @Override
+                public void commit() throws IOException {
+                    // Store the files once whatever the number of receivers
+                    Set<String> receiverSet = new HashSet<>(receiverList);
+                    List<SpooledFile> spooledList = new ArrayList<>();
+                    for (File file : fileList) {
+                        File blob = spool.add(file, receiverSet.size());
+                        if (blob != null) {
+                            spooledList.add(new SpooledFile(file.getName(), blob, hostName));
+                        }
+                    }
+                    // Queue the files for the receivers, which pick them up
+                    // the next time they connect to the data port
+                    for (String hostName : receiverSet) {
+                        for (SpooledFile spooledFile : spooledList) {
+                            if (!pendingIndex.add(hostName, spooledFile)) {
+                                // Already pending under the same name
+                                spool.release(spooledFile.getBlob());
                             }
-                        } catch (IOException e) {
-                            e.printStackTrace();
                         }
                     }
+                    // Logged after being queued, so that no snapshot misses them
+                    long sequence = 0;
+                    for (SpooledFile spooledFile : spooledList) {
+                        sequence = deliveryLog.added(spooledFile, receiverSet);
+                    }
+                    deliveryLog.sync(sequence);
+                    compactIfDue();
+                    for (String hostName : receiverSet) {
+                        signalPending(hostName);
+                    }
                 }
             });
-            handler.start();
+            miniClient.run();
+        }
+
+        /**
+         * Closes the control connection and stops fetching the client's uploads
+         */
+        void close() {
+            closed = true;
+            synchronized (this) {
+                if (fetchFuture != null) {
+                    fetchFuture.cancel(false);
+                }
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            if (fetchChannel != null) {
+                abortFetch();
+            }
+            try {
+                socketChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            handlerMap.remove(hostName, this);
+        }
+    }
+
+    /**
+     * Closes a channel, ignoring any error
+     *
+     * @param channel Channel to be closed ({@code null} if none)
+     */
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more to be done with it
+        }
+    }
+
+    /**
+     * Get the whole client list as sent to clients, encoding it again only
+     * if the list has changed since it was last sent (event loop only)
+     *
+     * @param version Version of the list, read before the list itself
+     * @return Snapshot of the list, whose buffer is to be duplicated by each writer
+     */
+    private ListSnapshot getListSnapshot(long version) {
+        if (listSnapshot == null || listSnapshot.version != version) {
+            List<Person> clients = roster.getClients();
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("SIZE ").append(clients.size()).append(System.lineSeparator());
+            for (Person client : clients) {
+                stringBuilder.append(client.getName()).append(System.lineSeparator());
+                stringBuilder.append(client.getHostName()).append(System.lineSeparator());
+            }
+            stringBuilder.append("VERSION ").append(version).append(System.lineSeparator());
+            listSnapshot = new ListSnapshot(version, clients,
+                    ByteBuffer.wrap(stringBuilder.toString().getBytes(Charset.defaultCharset())).asReadOnlyBuffer());
+        }
+        return listSnapshot;
+    }
+
+    /**
+     * Tells a client over its control connection that files are pending for
+     * it, so that it connects to the data port without waiting for its next poll
+     *
+     * @param hostName Host name of the client
+     */
+    private void signalPending(String hostName) {
+        ClientHandler clientHandler = handlerMap.get(hostName);
+        if (clientHandler == null) {
+            // Not connected; the files wait for it
+            return;
+        }
+        clientHandler.send("PENDING");
+    }
+
+    /**
+     * Sends a client every file pending for it as one batch (worker only).
+     * Files which arrive meanwhile wait for the client's next connection;
+     * if the transfer breaks off, the files stay pending and the batch is
+     * resumed the next time the client connects.
+     *
+     * @param socket   Socket connected to the client's data port connection
+     * @param hostName Host name of the client
+     */
+    private void deliver(Socket socket, final String hostName) {
+        final List<SpooledFile> spooledList = pendingIndex.list(hostName);
+        // Blobs to be read and the names to send them under
+        final List<File> fileList = new ArrayList<>();
+        final List<String> fileNames = new ArrayList<>();
+        for (SpooledFile spooledFile : spooledList) {
+            fileList.add(spooledFile.getBlob());
+            fileNames.add(spooledFile.getName());
         }
+        MiniServer miniserver = new MiniServer(socket, fileList, fileNames, fanOut, null, null, false,
+                TransferSettings.getDefault());
+        miniserver.addListener(new TransferListener() {
+            @Override
+            public void onEvent(TransferEvent event) {
+                switch (event.getType()) {
+                    case FILE_SEND_STARTED:
+                    case FILE_SEND_FINISHED:
+                    case PROGRESS:
+                        publish(event);
+                        break;
+                    case FILES_SENT:
+                        pendingIndex.removeAll(hostName, spooledList);
+                        try {
+                            long sequence = 0;
+                            for (SpooledFile spooledFile : spooledList) {
+                                sequence = deliveryLog.delivered(hostName, spooledFile);
+                            }
+                            deliveryLog.sync(sequence);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                        compactIfDue();
+                        // Blobs are deleted once every receiver has them
+                        for (SpooledFile spooledFile : spooledList) {
+                            if (spool.release(spooledFile.getBlob())) {
+                                fanOut.forget(spooledFile.getBlob());
+                            }
+                        }
+                        publish(event);
+                        break;
+                }
+            }
+        });
+        // A broken transfer leaves the files pending until the client reconnects
+        miniserver.run();
     }
 
     /**
-     * Class to pass the client list to a client if it requests
+     * A version of the client list, encoded as sent to clients
      *
      * @author Abhinav Baid, Atishay Jain
      * @version 1.0
-     * @since 20-12-2016
+     * @since 18-10-2026
      */
-    private class ListPasser implements Runnable {
+    private static class ListSnapshot {
         /**
-         * Input stream of the socket
+         * Version of the list
          */
-        private final BufferedReader bufferedReader;
+        private final long version;
         /**
-         * Output stream of the socket
+         * Map from host name to the position of the client in the list (its first one)
          */
-        private final PrintWriter printWriter;
+        private final Map<String, Integer> indexMap;
+        /**
+         * Encoded list, read-only: the {@code SIZE} and {@code VERSION} lines and the clients between them
+         */
+        private final ByteBuffer bytes;
 
         /**
-         * Create a new list passing thread instance
+         * Initialises a snapshot
          *
-         * @param bufferedReader Input stream of the socket
-         * @param printWriter    Output stream of the socket
+         * @param version Version of the list
+         * @param clients Clients in the list, in list order
+         * @param bytes   Encoded list, read-only
          */
-        ListPasser(BufferedReader bufferedReader, PrintWriter printWriter) {
-            this.bufferedReader = bufferedReader;
-            this.printWriter = printWriter;
+        ListSnapshot(long version, List<Person> clients, ByteBuffer bytes) {
+            this.version = version;
+            this.indexMap = new HashMap<>(clients.size() * 2);
+            for (int i = 0; i < clients.size(); i++) {
+                indexMap.putIfAbsent(clients.get(i).getHostName(), i);
+            }
+            this.bytes = bytes;
         }
 
         /**
-         * Spawn a thread for passing client list if requested
+         * Get the position of a client in the list
+         *
+         * @param hostName Host name of the client
+         * @return Index in the list (-1 if the client is not in it)
          */
-        @Override
-        public void run() {
-            while (true) {
-                try {
-                    // Client list requested
-                    String string = bufferedReader.readLine();
-                    if (string != null && string.startsWith("getlist")) {
-                        printWriter.println("SIZE " + clientList.size());
-                        for (Person client : clientList) {
-                            printWriter.println(client.getName());
-                            printWriter.println(client.getHostName());
-                        }
-                        printWriter.flush();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+        int indexOf(String hostName) {
+            Integer index = indexMap.get(hostName);
+            return index == null ? -1 : index;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,296 @@
+package inspire;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for {@link ServerModel} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class ServerModelTest {
+    private static final int CLIENTS = 2000;
+    private File folder;
+    private ServerModel serverModel;
+
+    private static long usedMemory() throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("__ServerModelTest__").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (serverModel != null) {
+            serverModel.close();
+        }
+        delete(folder);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void recoverPendingDeliveries() throws Exception {
+        // Left behind by a Server which stopped before delivering
+        String hostName = InetAddress.getLocalHost().getHostName();
+        File upload = new File(folder, "upload.bag");
+        Files.write(upload.toPath(), "telemetry".getBytes("UTF-8"));
+        File blob = new BlobSpool(folder.getPath()).add(upload, 1);
+        File orphan = new File(blob.getParentFile(), "0123");
+        Files.write(orphan.toPath(), "delivered".getBytes("UTF-8"));
+        DeliveryLog deliveryLog = new DeliveryLog(folder.getPath());
+        deliveryLog.recover(new PendingIndex());
+        deliveryLog.sync(deliveryLog.added(new SpooledFile("upload.bag", blob, "Robo1"),
+                Collections.singletonList(hostName)));
+        deliveryLog.close();
+        serverModel = new ServerModel(new ArrayList<Person>(), folder.getPath(), 0, 0);
+        Assert.assertFalse(orphan.exists());
+        File downloads = new File(folder, "downloads");
+        downloads.mkdir();
+        MiniClient miniClient = new MiniClient(MiniClient.connect("localhost", serverModel.getDataPort()),
+                downloads.getPath());
+        miniClient.run();
+        Assert.assertEquals(new String(Files.readAllBytes(new File(downloads, "upload.bag").toPath()), "UTF-8"),
+                "telemetry");
+        // The blob goes once delivered, and the delivery is not recovered again
+        for (int i = 0; i < 50 && blob.exists(); i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertFalse(blob.exists());
+        serverModel.close();
+        serverModel = null;
+        Thread.sleep(100);
+        PendingIndex pendingIndex = new PendingIndex();
+        new DeliveryLog(folder.getPath()).recover(pendingIndex);
+        Assert.assertTrue(pendingIndex.isEmpty(hostName));
+    }
+
+    private static int freePortPair() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            ServerSocket first = new ServerSocket(0);
+            try {
+                new ServerSocket(first.getLocalPort() + 1).close();
+                return first.getLocalPort();
+            } catch (IOException e) {
+                // Taken, so try another one
+            } finally {
+                first.close();
+            }
+        }
+        throw new IOException("No two free ports in a row");
+    }
+
+    @Test
+    public void fetchWhenPending() throws Exception {
+        String hostName = InetAddress.getLocalHost().getHostName();
+        // The robot takes its upload port next to the data port, so both have to be free
+        serverModel = new ServerModel(new ArrayList<>(Collections.singletonList(new Person("Robot", hostName))),
+                folder.getPath(), 0, freePortPair());
+        serverModel.setUploadPortBase(serverModel.getDataPort());
+        File outbox = new File(folder, "outbox");
+        outbox.mkdir();
+        File upload = new File(outbox, "upload.bag");
+        Files.write(upload.toPath(), "telemetry".getBytes("UTF-8"));
+        File downloads = new File(folder, "downloads");
+        downloads.mkdir();
+        ClientModel clientModel = new ClientModel("localhost", serverModel.getControlPort(),
+                serverModel.getDataPort());
+        clientModel.setDownloadsFolder(downloads.getPath());
+        final CountDownLatch received = new CountDownLatch(1);
+        clientModel.addListener(new TransferListener() {
+            @Override
+            public void onEvent(TransferEvent event) {
+                if (event.getType() == TransferEvent.Type.FILES_RECEIVED) {
+                    received.countDown();
+                }
+            }
+        });
+        clientModel.getList();
+        for (int i = 0; i < 50 && clientModel.getClientList().isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertEquals(clientModel.getClientList().size(), 1);
+        // Past the fetch made on connecting, so only PENDING can bring the file before the fallback poll
+        Thread.sleep(500);
+        // Sent to itself through the server, which signals it once the upload is spooled
+        clientModel.send(Collections.singletonList(upload), new int[]{0});
+        Assert.assertTrue(received.await(15, TimeUnit.SECONDS));
+        Assert.assertEquals(new String(Files.readAllBytes(new File(downloads, "upload.bag").toPath()), "UTF-8"),
+                "telemetry");
+    }
+
+    @Test
+    public void syncListChanges() throws Exception {
+        Person first = new Person("Robot 1", "Robo1");
+        serverModel = new ServerModel(new ArrayList<>(Collections.singletonList(first)), folder.getPath(), 0, 0);
+        Socket socket = new Socket("localhost", serverModel.getControlPort());
+        socket.setSoTimeout(30000);
+        try {
+            PrintWriter printWriter = new PrintWriter(socket.getOutputStream());
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            printWriter.println("slots");
+            printWriter.println("getlist");
+            printWriter.flush();
+            Assert.assertEquals(bufferedReader.readLine(), "SIZE 1");
+            Assert.assertEquals(bufferedReader.readLine(), "Robot 1");
+            Assert.assertEquals(bufferedReader.readLine(), "Robo1");
+            Assert.assertEquals(bufferedReader.readLine(), "VERSION 1");
+            // Told of the change, then sent only what changed
+            serverModel.setClientList(Arrays.asList(first, new Person("Robot 2", "Robo2")));
+            Assert.assertEquals(bufferedReader.readLine(), "ROSTER 2");
+            printWriter.println("getlist 1");
+            printWriter.flush();
+            Assert.assertEquals(bufferedReader.readLine(), "DELTA 1 2 1");
+            Assert.assertEquals(bufferedReader.readLine(), "ADD");
+            Assert.assertEquals(bufferedReader.readLine(), "Robot 2");
+            Assert.assertEquals(bufferedReader.readLine(), "Robo2");
+            // A version the server does not know gets the whole list
+            printWriter.println("getlist 7");
+            printWriter.flush();
+            Assert.assertEquals(bufferedReader.readLine(), "SIZE 2");
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void portsOfOlderClients() throws Exception {
+        String hostName = InetAddress.getLocalHost().getHostName();
+        Person first = new Person("Robot 1", "Robo1");
+        Person me = new Person("Robot 2", hostName);
+        serverModel = new ServerModel(new ArrayList<>(Arrays.asList(first, me)), folder.getPath(), 0, 0);
+        serverModel.setUploadPortBase(30000);
+        Socket socket = new Socket("localhost", serverModel.getControlPort());
+        socket.setSoTimeout(30000);
+        try {
+            PrintWriter printWriter = new PrintWriter(socket.getOutputStream());
+            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // A client from before slots, which listens at the port of its place in the list
+            printWriter.println("getlist");
+            printWriter.flush();
+            Assert.assertEquals(bufferedReader.readLine(), "SIZE 2");
+            for (int i = 0; i < 5; i++) {
+                bufferedReader.readLine();
+            }
+            Assert.assertEquals(serverModel.getUploadPort(hostName), 30002);
+            // Its slot stays 2 once the first robot is gone, but its place in the new list is 1
+            serverModel.setClientList(Collections.singletonList(me));
+            Assert.assertEquals(bufferedReader.readLine(), "ROSTER 2");
+            Assert.assertEquals(serverModel.getUploadPort(hostName), 30002);
+            // Sent the whole list even when asking for changes, and polled where it now listens
+            printWriter.println("getlist 1");
+            printWriter.flush();
+            Assert.assertEquals(bufferedReader.readLine(), "SIZE 1");
+            Assert.assertEquals(bufferedReader.readLine(), "Robot 2");
+            Assert.assertEquals(bufferedReader.readLine(), hostName);
+            Assert.assertEquals(bufferedReader.readLine(), "VERSION 2");
+            Assert.assertEquals(serverModel.getUploadPort(hostName), 30001);
+            // Once it says it knows slots, it is told its slot and polled there
+            printWriter.println("slots");
+            printWriter.println("getlist 2");
+            printWriter.flush();
+            Assert.assertEquals(bufferedReader.readLine(), "DELTA 2 2 0");
+            Assert.assertEquals(bufferedReader.readLine(), "SLOT 2");
+            Assert.assertEquals(serverModel.getUploadPort(hostName), 30002);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void manyClients() throws Exception {
+        int threadsBefore = Thread.activeCount();
+        long memoryBefore = usedMemory();
+        // Every client is listed, so every one is polled; its upload port never answers,
+        // as its backlog is full, so that the polls stay in flight until they time out
+        ServerSocketChannel uploadChannel = ServerSocketChannel.open();
+        uploadChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1);
+        List<Socket> backlogList = new ArrayList<>();
+        List<Socket> socketList = new ArrayList<>();
+        try {
+            while (true) {
+                Socket socket = new Socket();
+                try {
+                    socket.connect(uploadChannel.getLocalAddress(), 500);
+                } catch (SocketTimeoutException e) {
+                    socket.close();
+                    break;
+                }
+                backlogList.add(socket);
+            }
+            String hostName = InetAddress.getLocalHost().getHostName();
+            serverModel = new ServerModel(new ArrayList<>(Collections.singletonList(new Person("Robot", hostName))),
+                    folder.getPath(), 0, 0);
+            serverModel.setUploadPortBase(uploadChannel.socket().getLocalPort() - 1);
+            for (int i = 0; i < CLIENTS; i++) {
+                Socket socket = new Socket("localhost", serverModel.getControlPort());
+                socket.setSoTimeout(30000);
+                socketList.add(socket);
+            }
+            for (Socket socket : socketList) {
+                PrintWriter printWriter = new PrintWriter(socket.getOutputStream());
+                printWriter.println("getlist");
+                printWriter.flush();
+            }
+            for (Socket socket : socketList) {
+                BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                Assert.assertEquals(bufferedReader.readLine(), "SIZE 1");
+            }
+            long deadline = System.currentTimeMillis() + 10000;
+            while (serverModel.getPendingFetches() < CLIENTS / 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(serverModel.getPendingFetches() >= CLIENTS / 4);
+            // One event loop, the timer and the lookup threads, however many clients are connected and polled
+            Assert.assertTrue(Thread.activeCount() - threadsBefore <= ServerModel.LOOKUP_THREADS + 2);
+            Assert.assertTrue(usedMemory() - memoryBefore < 32 * 1024 * 1024);
+        } finally {
+            for (Socket socket : socketList) {
+                socket.close();
+            }
+            for (Socket socket : backlogList) {
+                socket.close();
+            }
+            uploadChannel.close();
+        }
+    }
+}
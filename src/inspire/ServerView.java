@@ -1,12 +1,13 @@
 package inspire;
 
 import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -30,10 +31,6 @@ class ServerView extends Observable {
      * Notifies change of downloads folder
      */
     static final char DOWNLOADS_FOLDER = '1';
-    /**
-     * Format for log history timestamping
-     */
-    private static final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("h:mm a");
 
     /**
      * Root panel for holding all GUI elements
@@ -58,7 +55,11 @@ class ServerView extends Observable {
     /**
      * Log of the application activity
      */
-    private JTextArea logHistory;
+    private JList<String> logHistory;
+    /**
+     * Latest entries of the log, and the status bar, updated on the event dispatch thread
+     */
+    private final LogModel logModel;
     /**
      * Clear log history
      */
@@ -93,12 +94,31 @@ class ServerView extends Observable {
         clearLogButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent actionEvent) {
-                logHistory.setText("");
+                logModel.clear();
             }
         });
         // Initialise client list table and status bar
         clientListTable.setModel(new CustomTableModel(new ArrayList<>()));
         statusBar.setText("");
+        logModel = new LogModel(LogModel.DEFAULT_CAPACITY, statusBar);
+        logHistory.setModel(logModel);
+        // Every row the same height, so that only the rows in view are measured
+        logHistory.setFixedCellHeight(logHistory.getFontMetrics(logHistory.getFont()).getHeight() + 2);
+        // Keep the latest entry in view
+        logModel.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                logHistory.ensureIndexIsVisible(e.getIndex1());
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+            }
+        });
         // Display the GUI frame
         JFrame frame = new JFrame("Server");
         frame.setContentPane(rootPanel);
@@ -176,31 +196,34 @@ class ServerView extends Observable {
     void setServerModel(ServerModel serverModel) {
         setStatus("Server started");
         clientListTable.setModel(new CustomTableModel(serverModel.getClientList()));
-        serverModel.addObserver(new Observer() {
+        serverModel.addListener(new TransferListener() {
             @Override
-            public void update(Observable observable, Object o) {
-                String action = (String) o;
-                switch (action.charAt(0)) {
-                    case ServerModel.FILE_RECEIVE_STARTED:
-                        setStatus("Receiving " + action.substring(2));
+            public void onEvent(TransferEvent event) {
+                switch (event.getType()) {
+                    case FILE_RECEIVE_STARTED:
+                        setStatus("Receiving " + event.getSubject());
+                        break;
+                    case FILE_RECEIVE_FINISHED:
+                        setStatus("Received " + event.getSubject());
                         break;
-                    case ServerModel.FILE_RECEIVE_FINISHED:
-                        setStatus("Received " + action.substring(2));
+                    case FILES_RECEIVED:
+                        setStatus("Received all files from '" + event.getSubject() + "'");
                         break;
-                    case ServerModel.FILES_RECEIVED:
-                        setStatus("Received all files from '" + action.substring(2) + "'");
+                    case FILE_SEND_STARTED:
+                        setStatus("Transferring " + event.getSubject());
                         break;
-                    case ServerModel.FILE_SEND_STARTED:
-                        setStatus("Transferring " + action.substring(2));
+                    case FILE_SEND_FINISHED:
+                        setStatus("Transferred " + event.getSubject());
                         break;
-                    case ServerModel.FILE_SEND_FINISHED:
-                        setStatus("Transferred " + action.substring(2));
+                    case FILES_SENT:
+                        setStatus("Transferred all files to '" + event.getSubject() + "'");
                         break;
-                    case ServerModel.FILES_SENT:
-                        setStatus("Transferred all files to '" + action.substring(2) + "'");
+                    case CLIENT_CONNECTED:
+                        setStatus("Connected to client '" + event.getSubject() + "'");
                         break;
-                    case ServerModel.CLIENT_CONNECTED:
-                        setStatus("Connected to client '" + action.substring(2) + "'");
+                    case PROGRESS:
+                        // Too frequent for the log
+                        logModel.setStatus(((ProgressEvent) event).describe());
                         break;
                 }
             }
@@ -213,8 +236,7 @@ class ServerView extends Observable {
      * @param status Status of the application
      */
     private void setStatus(String status) {
-        statusBar.setText(status);
-        logHistory.append(simpleDateFormat.format(new Date()) + "   " + status + "\n");
+        logModel.log(status);
     }
 
     /**
@@ -0,0 +1,116 @@
+package inspire;
+
+import java.io.File;
+import java.util.Objects;
+
+/**
+ * A file waiting in the Server's spool to be delivered, with the
+ * name it was sent under and the blob holding its contents.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see BlobSpool
+ * @since 18-10-2026
+ */
+class SpooledFile {
+    /**
+     * Name the file was sent under
+     */
+    private final String name;
+    /**
+     * Blob holding the file's contents
+     */
+    private final File blob;
+    /**
+     * Host name of the client which sent the file ({@code null} if not known)
+     */
+    private final String sender;
+
+    /**
+     * Initialises a spooled file
+     *
+     * @param name Name the file was sent under
+     * @param blob Blob holding the file's contents
+     */
+    SpooledFile(String name, File blob) {
+        this(name, blob, null);
+    }
+
+    /**
+     * Initialises a spooled file
+     *
+     * @param name   Name the file was sent under
+     * @param blob   Blob holding the file's contents
+     * @param sender Host name of the client which sent the file
+     */
+    SpooledFile(String name, File blob, String sender) {
+        this.name = name;
+        this.blob = blob;
+        this.sender = sender;
+    }
+
+    /**
+     * Get file name
+     *
+     * @return Name the file was sent under
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get blob
+     *
+     * @return Blob holding the file's contents
+     */
+    File getBlob() {
+        return blob;
+    }
+
+    /**
+     * Get sender
+     *
+     * @return Host name of the client which sent the file ({@code null} if not known)
+     */
+    String getSender() {
+        return sender;
+    }
+
+    /**
+     * Compares two spooled files by their name and blob (whoever sent them)
+     *
+     * @param o Object to be compared
+     * @return {@code true} if equal, {@code false} if not
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SpooledFile spooledFile = (SpooledFile) o;
+        return name.equals(spooledFile.name) && blob.equals(spooledFile.blob);
+    }
+
+    /**
+     * Get object hash code
+     *
+     * @return Object hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, blob);
+    }
+
+    /**
+     * Get string representation
+     *
+     * @return String representation
+     */
+    @Override
+    public String toString() {
+        return name + ": " + blob.getName();
+    }
+}
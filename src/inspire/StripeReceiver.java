@@ -0,0 +1,286 @@
+package inspire;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Receives a file body of a {@code MiniClient} sent over stripes: opens
+ * stripe connections to the sender as it is asked to, and writes the
+ * ranges arriving on each stripe at their own offsets of the
+ * preallocated file. Every range is checked against the checksum which
+ * follows it as it is written; with chunk checksums, the damaged chunks
+ * are noted, to be asked for again, and without them a damaged range
+ * breaks off its stripe.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniClient
+ * @see StripeSender
+ * @since 18-10-2026
+ */
+class StripeReceiver {
+    /**
+     * Address of the sender
+     */
+    private final InetAddress address;
+    /**
+     * Port the sender listens on
+     */
+    private final int port;
+    /**
+     * Token of the file
+     */
+    private final long token;
+    /**
+     * Path of the preallocated file
+     */
+    private final Path path;
+    /**
+     * Offset in the file the body starts from
+     */
+    private final long position;
+    /**
+     * Size of the file
+     */
+    private final long size;
+    /**
+     * Protocol version negotiated with the sender
+     */
+    private final int protocolVersion;
+    /**
+     * Flag to indicate whether the chunks of the ranges are followed by their checksums
+     */
+    private final boolean chunkChecksums;
+    /**
+     * Transfer parameters
+     */
+    private final TransferSettings settings;
+    /**
+     * Counter of the body bytes received, shared with the first connection
+     */
+    private final AtomicLong bytesReceived;
+    /**
+     * Stripes opened (guarded by {@code this})
+     */
+    private final List<Socket> sockets;
+    /**
+     * Offset and length of each damaged chunk of the ranges received (guarded by {@code this})
+     */
+    private final List<long[]> damagedChunks;
+    /**
+     * Number of stripes started (guarded by {@code this})
+     */
+    private int started;
+    /**
+     * Number of stripes finished, whether or not they connected (guarded by {@code this})
+     */
+    private int finished;
+    /**
+     * Number of stripes which received all their ranges (guarded by {@code this})
+     */
+    private int completed;
+    /**
+     * Error which broke off a stripe ({@code null} if none, guarded by {@code this})
+     */
+    private IOException failure;
+    /**
+     * Flag to indicate whether the stripes have been closed (guarded by {@code this})
+     */
+    private boolean closed;
+
+    /**
+     * Constructs a receiver for one file body
+     *
+     * @param address         Address of the sender
+     * @param port            Port the sender listens on
+     * @param token           Token of the file
+     * @param path            Path of the preallocated file
+     * @param position        Offset in the file the body starts from
+     * @param size            Size of the file
+     * @param protocolVersion Protocol version negotiated with the sender
+     * @param chunkChecksums  {@code true} if chunk checksums were negotiated
+     * @param settings        Transfer parameters
+     * @param bytesReceived   Counter of the body bytes received
+     */
+    StripeReceiver(InetAddress address, int port, long token, Path path, long position, long size,
+                   int protocolVersion, boolean chunkChecksums, TransferSettings settings,
+                   AtomicLong bytesReceived) {
+        this.address = address;
+        this.port = port;
+        this.token = token;
+        this.path = path;
+        this.position = position;
+        this.size = size;
+        this.protocolVersion = protocolVersion;
+        this.chunkChecksums = chunkChecksums;
+        this.settings = settings;
+        this.bytesReceived = bytesReceived;
+        this.sockets = new ArrayList<>();
+        this.damagedChunks = new ArrayList<>();
+    }
+
+    /**
+     * Opens stripes, each receiving on a thread of its own
+     *
+     * @param count Number of stripes to open
+     */
+    void open(int count) {
+        for (int i = 0; i < count; i++) {
+            synchronized (this) {
+                started++;
+            }
+            TaskExecutor.start(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        receive();
+                    } finally {
+                        synchronized (StripeReceiver.this) {
+                            finished++;
+                            StripeReceiver.this.notifyAll();
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Opens a stripe and writes the ranges arriving on it to the file
+     */
+    private void receive() {
+        // Set once the stripe has said hello, after which the sender may count on it
+        boolean joined = false;
+        try {
+            Socket socket = MiniClient.connect(address.getHostAddress(), port, settings.getHandshakeTimeout());
+            synchronized (this) {
+                if (closed) {
+                    socket.close();
+                    return;
+                }
+                sockets.add(socket);
+            }
+            SocketChannel socketChannel = socket.getChannel();
+            FrameWriter helloWriter = new FrameWriter(socketChannel, 12);
+            helloWriter.writeInt(Protocol.STRIPE_MAGIC);
+            helloWriter.writeLong(token);
+            helloWriter.flush();
+            joined = true;
+            FrameReader reader = new FrameReader(socketChannel);
+            FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE);
+            try {
+                reader.setVersion(protocolVersion);
+                reader.setChunkChecksums(chunkChecksums);
+                CRC32C crc = new CRC32C();
+                while (true) {
+                    long start = reader.readLong();
+                    if (start < 0) {
+                        break;
+                    }
+                    long length = reader.readSize();
+                    if (start < position || length < 0 || length > size - start) {
+                        throw new IOException("Range outside the file: " + length + " bytes from " + start);
+                    }
+                    fileChannel.position(start);
+                    if (chunkChecksums) {
+                        reader.readTo(fileChannel, length, null);
+                        List<long[]> damaged = reader.finishBody();
+                        synchronized (this) {
+                            damagedChunks.addAll(damaged);
+                        }
+                    } else {
+                        crc.reset();
+                        reader.readTo(fileChannel, length, crc);
+                        if ((int) crc.getValue() != reader.readInt()) {
+                            throw new IOException("Checksum mismatch in the range of " + length + " bytes from "
+                                    + start);
+                        }
+                    }
+                    bytesReceived.addAndGet(length);
+                }
+            } finally {
+                fileChannel.close();
+                reader.close();
+            }
+            synchronized (this) {
+                completed++;
+            }
+            socket.close();
+        } catch (IOException e) {
+            if (!joined) {
+                // Never used by the sender, which carries on without it
+                return;
+            }
+            synchronized (this) {
+                if (failure == null && !closed) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the stripes the sender used to receive all their ranges
+     *
+     * @param used Number of stripes the sender used
+     * @throws IOException If a stripe broke off
+     */
+    synchronized void await(int used) throws IOException {
+        while (completed < used && finished < started && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting for stripes");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (completed < used) {
+            throw new IOException("Only " + completed + " of " + used + " stripes completed");
+        }
+    }
+
+    /**
+     * Get the chunks of the ranges which did not match their checksums
+     * (chunk checksums only)
+     *
+     * @return Offset and length of each damaged chunk, ordered by offset (empty if none)
+     */
+    synchronized List<long[]> getDamagedChunks() {
+        List<long[]> damaged = new ArrayList<>(damagedChunks);
+        Collections.sort(damaged, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] first, long[] second) {
+                return Long.compare(first[0], second[0]);
+            }
+        });
+        return damaged;
+    }
+
+    /**
+     * Closes every stripe, including any the sender never used
+     */
+    synchronized void close() {
+        closed = true;
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package inspire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends large file bodies of a {@code MiniServer} as ranges over several
+ * connections at once, for links whose round trip is too long for one
+ * TCP window to fill the pipe. The receiver opens the stripe connections
+ * to the port the sender listens on; ranges are handed out to whichever
+ * stripe is free. While the throughput keeps rising by a worthwhile
+ * margin with every stripe added, one more is opened, up to the limit
+ * set; the next file starts with the number of stripes which paid off.
+ * Every range is followed by its checksum, and with chunk checksums
+ * every chunk of it too, so that a damaged chunk is sent again on its
+ * own rather than the whole file.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniServer
+ * @see StripeReceiver
+ * @since 18-10-2026
+ */
+class StripeSender {
+    /**
+     * Time in milliseconds over which the throughput is measured before deciding on another stripe
+     */
+    private static final long INTERVAL = 500;
+    /**
+     * Factor by which the throughput must rise for another stripe to be opened
+     */
+    private static final double GAIN = 1.1;
+    /**
+     * Stripes accepted by a listener other than the sender's own, by the token of their file
+     */
+    private static final Map<Long, BlockingQueue<Socket>> waitingMap = new ConcurrentHashMap<>();
+    /**
+     * Source of the tokens, which are not to be guessed by other connections
+     */
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Writer over the first connection
+     */
+    private final FrameWriter control;
+    /**
+     * Server socket the stripes are accepted from ({@code null} if they arrive through {@code join})
+     */
+    private final ServerSocket serverSocket;
+    /**
+     * Protocol version negotiated with the receiver
+     */
+    private final int protocolVersion;
+    /**
+     * Flag to indicate whether the chunks of the ranges are followed by their checksums
+     */
+    private final boolean chunkChecksums;
+    /**
+     * Transfer parameters
+     */
+    private final TransferSettings settings;
+    /**
+     * Bytes of all striped bodies sent so far
+     */
+    private final AtomicLong bytesSent;
+    /**
+     * Number of stripes to start the next file with
+     */
+    private int stripes;
+    /**
+     * Largest number of stripes a body has been sent over
+     */
+    private volatile int peakStripes;
+    /**
+     * Channel of the file being sent
+     */
+    private FileChannel fileChannel;
+    /**
+     * End of the file being sent
+     */
+    private long size;
+    /**
+     * Token of the file being sent
+     */
+    private long token;
+    /**
+     * Start of the next range to be handed out
+     */
+    private AtomicLong next;
+    /**
+     * Stripes of the file being sent (guarded by {@code this})
+     */
+    private final List<Socket> sockets;
+    /**
+     * Number of stripes started for the file (guarded by {@code this})
+     */
+    private int started;
+    /**
+     * Number of stripes finished, whether or not they connected (guarded by {@code this})
+     */
+    private int finished;
+    /**
+     * Error which broke off a stripe ({@code null} if none, guarded by {@code this})
+     */
+    private IOException failure;
+
+    /**
+     * Constructs a sender for the large bodies of a batch
+     *
+     * @param control         Writer over the first connection
+     * @param serverSocket    Server socket the stripes are accepted from
+     *                        ({@code null} if they arrive through {@code join})
+     * @param protocolVersion Protocol version negotiated with the receiver
+     * @param chunkChecksums  {@code true} if chunk checksums were negotiated, so that
+     *                        the damaged chunks of a range alone are sent again
+     * @param settings        Transfer parameters
+     */
+    StripeSender(FrameWriter control, ServerSocket serverSocket, int protocolVersion, boolean chunkChecksums,
+                 TransferSettings settings) {
+        this.control = control;
+        this.serverSocket = serverSocket;
+        this.protocolVersion = protocolVersion;
+        this.chunkChecksums = chunkChecksums;
+        this.settings = settings;
+        this.bytesSent = new AtomicLong();
+        this.stripes = Math.min(2, settings.getMaxStripes());
+        this.sockets = new ArrayList<>();
+    }
+
+    /**
+     * Reads the hello of a connection, if it is a stripe
+     *
+     * @param socket  Socket of the connection
+     * @param timeout Time to wait for the hello in milliseconds
+     * @return Token the stripe is for (0 if the connection is not a stripe)
+     * @throws IOException If the connection cannot be read
+     */
+    private static long readHello(Socket socket, long timeout) throws IOException {
+        SocketChannel socketChannel = socket.getChannel();
+        if (socketChannel == null || !Protocol.waitForData(socketChannel, timeout)) {
+            return 0;
+        }
+        // Small enough not to read past the hello
+        FrameReader helloReader = new FrameReader(socketChannel, 12);
+        if (helloReader.readInt() != Protocol.STRIPE_MAGIC) {
+            return 0;
+        }
+        return helloReader.readLong();
+    }
+
+    /**
+     * Hands a connection accepted by a listener to the sender waiting for it,
+     * if it is a stripe of a file being sent
+     *
+     * @param socket  Socket of the connection
+     * @param timeout Time to wait for the hello in milliseconds
+     * @return {@code true} if the connection is now owned by a sender
+     * @throws IOException If the connection cannot be read
+     */
+    static boolean join(Socket socket, long timeout) throws IOException {
+        long token = readHello(socket, timeout);
+        BlockingQueue<Socket> queue = token == 0 ? null : waitingMap.get(token);
+        if (queue == null) {
+            return false;
+        }
+        queue.add(socket);
+        return true;
+    }
+
+    /**
+     * Get the number of striped body bytes sent so far
+     *
+     * @return Bytes sent
+     */
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Get the largest number of stripes a body has been sent over
+     *
+     * @return Number of stripes (0 if no body has been striped)
+     */
+    int getPeakStripes() {
+        return peakStripes;
+    }
+
+    /**
+     * Sends the rest of a file body over stripes, after its name and size
+     * have been written to the first connection
+     *
+     * @param fileChannel Channel of the file
+     * @param position    Offset in the file to start from
+     * @param size        Size of the file
+     * @throws IOException If a stripe breaks off, or none can be opened
+     */
+    void send(FileChannel fileChannel, long position, long size) throws IOException {
+        do {
+            token = random.nextLong();
+        } while (token == 0 || waitingMap.putIfAbsent(token, new LinkedBlockingQueue<Socket>()) != null);
+        this.fileChannel = fileChannel;
+        this.size = size;
+        this.next = new AtomicLong(position);
+        synchronized (this) {
+            sockets.clear();
+            started = 0;
+            finished = 0;
+            failure = null;
+        }
+        try {
+            control.writeCount(stripes);
+            control.writeLong(token);
+            control.flush();
+            for (int i = 0; i < stripes; i++) {
+                startStripe();
+            }
+            adapt();
+        } finally {
+            for (Socket socket : waitingMap.remove(token)) {
+                // Arrived too late to be used
+                socket.close();
+            }
+            if (serverSocket != null) {
+                serverSocket.setSoTimeout(0);
+            }
+        }
+        int used;
+        synchronized (this) {
+            if (failure != null) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+                throw failure;
+            }
+            used = sockets.size();
+        }
+        if (next.get() < size) {
+            throw new IOException("No stripe could be opened");
+        }
+        peakStripes = Math.max(peakStripes, used);
+        control.writeByte(Protocol.STRIPE_DONE);
+        control.writeCount(used);
+        control.flush();
+    }
+
+    /**
+     * Waits for the stripes to finish, measuring the throughput meanwhile
+     * and asking for one more stripe while the last one paid off
+     *
+     * @throws IOException If the first connection cannot be written
+     */
+    private void adapt() throws IOException {
+        boolean growing = true;
+        double lastRate = 0;
+        long mark = System.nanoTime();
+        long markBytes = bytesSent.get();
+        while (true) {
+            int running;
+            synchronized (this) {
+                long wait = INTERVAL - (System.nanoTime() - mark) / 1000000;
+                if (finished == started || failure != null) {
+                    break;
+                }
+                if (wait > 0) {
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Interrupted while striping");
+                    }
+                    continue;
+                }
+                running = started;
+            }
+            long now = System.nanoTime();
+            long bytes = bytesSent.get();
+            double rate = (bytes - markBytes) * 1e9 / (now - mark);
+            mark = now;
+            markBytes = bytes;
+            if (!growing || next.get() >= size) {
+                continue;
+            }
+            if (rate <= lastRate * GAIN) {
+                // The last stripe did not pay off
+                growing = false;
+                stripes = Math.max(1, running - 1);
+            } else if (running < settings.getMaxStripes()) {
+                lastRate = rate;
+                control.writeByte(Protocol.STRIPE_OPEN);
+                control.flush();
+                startStripe();
+            } else {
+                growing = false;
+                stripes = running;
+            }
+        }
+        if (growing) {
+            synchronized (this) {
+                stripes = Math.max(1, sockets.size());
+            }
+        }
+    }
+
+    /**
+     * Starts a thread which waits for a stripe and sends ranges over it
+     */
+    private void startStripe() {
+        synchronized (this) {
+            started++;
+        }
+        TaskExecutor.start(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = accept();
+                    if (socket != null) {
+                        sendRanges(socket);
+                    }
+                } catch (IOException e) {
+                    synchronized (StripeSender.this) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                    }
+                } finally {
+                    synchronized (StripeSender.this) {
+                        finished++;
+                        StripeSender.this.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for the receiver to open a stripe of the file being sent
+     *
+     * @return Socket of the stripe ({@code null} if none arrived in time)
+     * @throws IOException If the server socket fails
+     */
+    private Socket accept() throws IOException {
+        long timeout = settings.getHandshakeTimeout();
+        Socket socket = null;
+        if (serverSocket == null) {
+            BlockingQueue<Socket> queue = waitingMap.get(token);
+            try {
+                socket = queue == null ? null : queue.poll(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while waiting for a stripe");
+            }
+        } else {
+            long deadline = System.nanoTime() + timeout * 1000000;
+            while (socket == null) {
+                long remaining = (deadline - System.nanoTime()) / 1000000;
+                if (remaining <= 0) {
+                    return null;
+                }
+                serverSocket.setSoTimeout((int) remaining);
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketTimeoutException e) {
+                    return null;
+                }
+                if (readHello(socket, remaining) != token) {
+                    // Not a stripe of this file
+                    socket.close();
+                    socket = null;
+                }
+            }
+        }
+        if (socket == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (failure != null) {
+                socket.close();
+                return null;
+            }
+            sockets.add(socket);
+        }
+        return socket;
+    }
+
+    /**
+     * Sends ranges over a stripe until none are left, each framed as a
+     * body and followed by its checksum, then waits for the receiver to
+     * close the stripe, so that it is known to have read them all
+     *
+     * @param socket Socket of the stripe
+     * @throws IOException If the stripe or the file cannot be accessed
+     */
+    private void sendRanges(Socket socket) throws IOException {
+        if (settings.getSendBufferSize() > 0) {
+            socket.setSendBufferSize(settings.getSendBufferSize());
+        }
+        socket.setTcpNoDelay(settings.isTcpNoDelay());
+        SocketChannel socketChannel = socket.getChannel();
+        WritableByteChannel channel = socketChannel;
+        if (channel == null) {
+            channel = Channels.newChannel(socket.getOutputStream());
+        }
+        FrameWriter writer = new FrameWriter(channel, socketChannel != null && settings.isZeroCopy());
+        try {
+            writer.setVersion(protocolVersion);
+            writer.setBodyChecksums(true);
+            writer.setChunkChecksums(chunkChecksums);
+            int segment = settings.getStripeSegment();
+            long start;
+            while ((start = next.getAndAdd(segment)) < size) {
+                long end = Math.min(start + segment, size);
+                writer.writeLong(start);
+                writer.writeSize(end - start);
+                writer.writeFile(fileChannel, start, end);
+                bytesSent.addAndGet(end - start);
+            }
+            writer.writeLong(-1);
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+        socket.shutdownOutput();
+        InputStream inputStream = socket.getInputStream();
+        while (inputStream.read() >= 0) {
+            // Nothing is expected but the end of the stream
+        }
+        socket.close();
+    }
+}
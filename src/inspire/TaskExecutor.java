@@ -0,0 +1,158 @@
+package inspire;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Starts every thread of the application, on platform threads or on
+ * virtual threads as selected by {@link TransferSettings#isVirtualThreads()}.
+ * Virtual threads are looked up reflectively, so the application still
+ * builds and runs on Java versions without them, falling back to
+ * platform threads.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see TransferSettings
+ * @since 18-10-2026
+ */
+final class TaskExecutor {
+    /**
+     * Factory of platform threads, as started by {@code new Thread(task)}
+     */
+    private static final ThreadFactory platformFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable task) {
+            return new Thread(task);
+        }
+    };
+    /**
+     * Factory of virtual threads ({@code null} if the runtime has none)
+     */
+    private static final ThreadFactory virtualFactory = lookupVirtualFactory();
+
+    /**
+     * Not to be instantiated
+     */
+    private TaskExecutor() {
+    }
+
+    /**
+     * Looks up the factory of virtual threads
+     *
+     * @return Factory of virtual threads ({@code null} if the runtime has none)
+     */
+    private static ThreadFactory lookupVirtualFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether the runtime has virtual threads
+     *
+     * @return {@code true} if virtual threads can be used
+     */
+    static boolean isVirtualAvailable() {
+        return virtualFactory != null;
+    }
+
+    /**
+     * Get the factory of threads of a mode
+     *
+     * @param virtual {@code true} for virtual threads (if available), {@code false} for platform threads
+     * @return Thread factory
+     */
+    static ThreadFactory getThreadFactory(boolean virtual) {
+        return virtual && virtualFactory != null ? virtualFactory : platformFactory;
+    }
+
+    /**
+     * Get the factory of threads of the mode selected in the default settings
+     *
+     * @return Thread factory
+     */
+    static ThreadFactory getThreadFactory() {
+        return getThreadFactory(TransferSettings.getDefault().isVirtualThreads());
+    }
+
+    /**
+     * Get a factory of named daemon threads of the mode selected in the
+     * default settings, for services which must not keep the application
+     * running
+     *
+     * @param name Name of the threads
+     * @return Thread factory
+     */
+    static ThreadFactory getDaemonFactory(final String name) {
+        final ThreadFactory factory = getThreadFactory();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = factory.newThread(task);
+                thread.setName(name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Creates a timer running its tasks one at a time on a daemon thread
+     *
+     * @param name Name of the timer thread
+     * @return Timer running the scheduled tasks
+     */
+    static ScheduledExecutorService newTimer(String name) {
+        return Executors.newSingleThreadScheduledExecutor(getDaemonFactory(name));
+    }
+
+    /**
+     * Starts a task on a thread of its own
+     *
+     * @param task Task to be run
+     * @return The started thread
+     */
+    static Thread start(Runnable task) {
+        Thread thread = getThreadFactory().newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Creates a pool to run tasks on. Platform threads are pooled, as
+     * they are costly to start and to keep; virtual threads are cheap,
+     * so every task gets one of its own.
+     *
+     * @param virtual {@code true} for virtual threads (if available), {@code false} for platform threads
+     * @param threads Number of platform threads in the pool
+     * @return Pool running the tasks
+     */
+    static ExecutorService newPool(boolean virtual, int threads) {
+        if (virtual && virtualFactory != null) {
+            try {
+                Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) method.invoke(null, virtualFactory);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool(virtualFactory);
+            }
+        }
+        return Executors.newFixedThreadPool(threads, platformFactory);
+    }
+
+    /**
+     * Creates a pool of the mode selected in the default settings
+     *
+     * @param threads Number of platform threads in the pool
+     * @return Pool running the tasks
+     */
+    static ExecutorService newPool(int threads) {
+        return newPool(TransferSettings.getDefault().isVirtualThreads(), threads);
+    }
+}
@@ -0,0 +1,75 @@
+package inspire;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test for {@link TaskExecutor} class
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+public class TaskExecutorTest {
+    private boolean virtualThreads;
+
+    @Before
+    public void setUp() throws Exception {
+        virtualThreads = TransferSettings.getDefault().isVirtualThreads();
+        // As selected by -Dinspire.virtualThreads=true
+        TransferSettings.getDefault().setVirtualThreads(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TransferSettings.getDefault().setVirtualThreads(virtualThreads);
+    }
+
+    @Test
+    public void startWhenVirtualSelected() throws Exception {
+        final AtomicReference<Thread> ranOn = new AtomicReference<>();
+        Thread thread = TaskExecutor.start(new Runnable() {
+            @Override
+            public void run() {
+                ranOn.set(Thread.currentThread());
+            }
+        });
+        thread.join(5000);
+        Assert.assertSame(ranOn.get(), thread);
+        // Virtual threads are a subclass of their own; without them the task runs on a plain platform thread
+        Assert.assertEquals(thread.getClass() == Thread.class, !TaskExecutor.isVirtualAvailable());
+    }
+
+    @Test
+    public void poolWhenVirtualSelected() throws Exception {
+        ExecutorService pool = TaskExecutor.newPool(3);
+        try {
+            final AtomicReference<Thread> ranOn = new AtomicReference<>();
+            Future<?> future = pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    ranOn.set(Thread.currentThread());
+                }
+            });
+            future.get(5, TimeUnit.SECONDS);
+            if (TaskExecutor.isVirtualAvailable()) {
+                Assert.assertTrue(ranOn.get().getClass() != Thread.class);
+            } else {
+                // Falls back to the bounded pool of platform threads
+                Assert.assertSame(ranOn.get().getClass(), Thread.class);
+                Assert.assertTrue(pool instanceof ThreadPoolExecutor);
+                Assert.assertEquals(((ThreadPoolExecutor) pool).getMaximumPoolSize(), 3);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
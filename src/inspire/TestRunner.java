@@ -14,6 +14,10 @@ class TestRunner {
     public static void main(String[] args) {
         JUnitCore runner = new JUnitCore();
         runner.addListener(new AllureRunListener());
-        runner.run(CustomTableModelTest.class, MiniClientTest.class, MiniServerTest.class, PersonTest.class);
+        runner.run(BlobSpoolTest.class, BufferPoolTest.class, CustomTableModelTest.class, DeliveryLogTest.class,
+                DigestCacheTest.class, DiskWriterTest.class, EventSourceTest.class, FrameWriterTest.class,
+                LogModelTest.class, MiniClientTest.class, MiniServerTest.class, PartialStoreTest.class,
+                PendingIndexTest.class, PersonTest.class, ProgressMeterTest.class, RosterTest.class,
+                ServerModelTest.class, TaskExecutorTest.class);
     }
 }
\ No newline at end of file
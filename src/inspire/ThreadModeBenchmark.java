@@ -0,0 +1,151 @@
+package inspire;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback comparison of platform and virtual threads running many
+ * small transfers at once, each sender and each receiver blocking on
+ * a thread of its own. Virtual threads need Java 21 or later.
+ * Usage: {@code ThreadModeBenchmark [transfers] [fileSizeKiB] [rounds]}
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see TaskExecutor
+ * @since 18-10-2026
+ */
+class ThreadModeBenchmark {
+    public static void main(String[] args) throws Exception {
+        int transfers = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int fileSizeKiB = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        File file = TransferBenchmark.createFile(fileSizeKiB * 1024L);
+        try {
+            // Warm up both modes before measuring
+            run(Collections.singletonList(file), transfers, false);
+            report("Platform threads", file, transfers, rounds, false);
+            if (TaskExecutor.isVirtualAvailable()) {
+                run(Collections.singletonList(file), transfers, true);
+                report("Virtual threads", file, transfers, rounds, true);
+            } else {
+                System.out.println("Virtual threads are not available on this runtime");
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Runs a number of rounds of a thread mode and prints the transfer rate
+     *
+     * @param name      Name of the thread mode
+     * @param file      File sent by every transfer
+     * @param transfers Number of transfers running at once
+     * @param rounds    Number of rounds
+     * @param virtual   Flag to select virtual threads
+     * @throws Exception If a transfer fails
+     */
+    private static void report(String name, File file, int transfers, int rounds, boolean virtual)
+            throws Exception {
+        long totalNanos = 0;
+        int peakThreads = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            peakThreads = Math.max(peakThreads, run(Collections.singletonList(file), transfers, virtual));
+            totalNanos += System.nanoTime() - start;
+        }
+        double seconds = totalNanos / 1e9;
+        System.out.printf("%-18s %10.0f transfers/s %8d peak platform threads%n", name,
+                transfers * rounds / seconds, peakThreads);
+    }
+
+    /**
+     * Runs a number of transfers at once over loopback, each to a
+     * receiver which discards the data
+     *
+     * @param files     Files sent by every transfer
+     * @param transfers Number of transfers
+     * @param virtual   Flag to select virtual threads
+     * @return Largest number of live platform threads seen
+     * @throws Exception If a transfer fails
+     */
+    private static int run(final List<File> files, int transfers, boolean virtual) throws Exception {
+        final ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), transfers);
+        final InetSocketAddress address = (InetSocketAddress) serverSocketChannel.getLocalAddress();
+        // Every sender and every receiver blocks on a thread of its own
+        ExecutorService executorService = TaskExecutor.newPool(virtual, 2 * transfers);
+        final CountDownLatch done = new CountDownLatch(2 * transfers);
+        final AtomicInteger failures = new AtomicInteger();
+        final TransferSettings settings = new TransferSettings();
+        // The draining receivers do not say hello, so skip waiting for them
+        settings.setProtocolVersion(Protocol.VERSION_1);
+        int peakThreads = 0;
+        try {
+            for (int i = 0; i < transfers; i++) {
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Socket socket = SocketChannel.open(address).socket();
+                            MiniServer miniServer = new MiniServer(socket, files, null, null, false, settings);
+                            miniServer.run();
+                            if (!miniServer.isCompleted()) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            failures.incrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            for (int i = 0; i < transfers; i++) {
+                final SocketChannel receiver = serverSocketChannel.accept();
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            InputStream inputStream = receiver.socket().getInputStream();
+                            byte[] buffer = new byte[8 * 1024];
+                            while (inputStream.read(buffer) >= 0) {
+                                // Discard the data
+                            }
+                            receiver.close();
+                        } catch (IOException e) {
+                            failures.incrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+                peakThreads = Math.max(peakThreads, Thread.activeCount());
+            }
+            while (!done.await(10, TimeUnit.MILLISECONDS)) {
+                peakThreads = Math.max(peakThreads, Thread.activeCount());
+            }
+        } finally {
+            executorService.shutdown();
+            // Let the pooled threads go before the next run counts threads
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+            serverSocketChannel.close();
+        }
+        if (failures.get() > 0) {
+            throw new IOException(failures.get() + " transfers failed");
+        }
+        return peakThreads;
+    }
+}
@@ -0,0 +1,239 @@
+package inspire;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback throughput comparison of the transfer modes: version 1 to a
+ * receiver which discards the data, and the default version 2 settings
+ * (compression and chunk checksums on) to a {@code MiniClient}.
+ * Usage: {@code TransferBenchmark [fileSizeMiB] [rounds]}
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @since 18-10-2026
+ */
+class TransferBenchmark {
+    public static void main(String[] args) throws Exception {
+        int fileSizeMiB = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File file = createFile(fileSizeMiB);
+        List<File> smallFiles = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            smallFiles.add(createFile(4 * 1024L));
+        }
+        try {
+            // Warm up both paths before measuring
+            send(Collections.singletonList(file), false);
+            send(Collections.singletonList(file), true);
+            report("Buffered copy", Collections.singletonList(file), rounds, false);
+            report("Zero-copy transferTo", Collections.singletonList(file), rounds, true);
+            report("2000 x 4 KiB files", smallFiles, rounds, true);
+            receive(Collections.singletonList(file), true, new AtomicLong());
+            reportDefaults("v2 buffered copy", Collections.singletonList(file), rounds, false);
+            reportDefaults("v2 zero-copy", Collections.singletonList(file), rounds, true);
+            reportDefaults("v2 2000 x 4 KiB files", smallFiles, rounds, true);
+        } finally {
+            file.delete();
+            for (File smallFile : smallFiles) {
+                smallFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Creates a temporary file filled with random data
+     *
+     * @param fileSizeMiB Size of the file in MiB
+     * @return The created file
+     * @throws IOException If the file cannot be written
+     */
+    static File createFile(int fileSizeMiB) throws IOException {
+        return createFile((long) fileSizeMiB * 1024 * 1024);
+    }
+
+    /**
+     * Creates a temporary file filled with random data
+     *
+     * @param size Size of the file in bytes
+     * @return The created file
+     * @throws IOException If the file cannot be written
+     */
+    static File createFile(long size) throws IOException {
+        File file = File.createTempFile("__TransferBenchmark__", ".bin");
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        for (long written = 0; written < size; written += block.length) {
+            randomAccessFile.write(block, 0, (int) Math.min(block.length, size - written));
+        }
+        randomAccessFile.close();
+        return file;
+    }
+
+    /**
+     * Runs a number of rounds of a transfer mode and prints the throughput
+     *
+     * @param name     Name of the transfer mode
+     * @param files    Files to be sent in one batch
+     * @param rounds   Number of rounds
+     * @param zeroCopy Flag to select the zero-copy mode
+     * @throws Exception If a transfer fails
+     */
+    private static void report(String name, List<File> files, int rounds, boolean zeroCopy) throws Exception {
+        long totalNanos = 0;
+        for (int i = 0; i < rounds; i++) {
+            totalNanos += send(files, zeroCopy);
+        }
+        long batchSize = 0;
+        for (File file : files) {
+            batchSize += file.length();
+        }
+        double seconds = totalNanos / 1e9;
+        double mebibytes = (double) batchSize * rounds / (1024 * 1024);
+        System.out.printf("%-24s %10.1f MiB/s %10.0f files/s%n", name, mebibytes / seconds,
+                files.size() * rounds / seconds);
+    }
+
+    /**
+     * Runs a number of rounds of a transfer with the default version 2
+     * settings and prints the throughput, and the sender's CPU time per GiB
+     *
+     * @param name     Name of the transfer mode
+     * @param files    Files to be sent in one batch
+     * @param rounds   Number of rounds
+     * @param zeroCopy Flag to select the zero-copy mode
+     * @throws Exception If a transfer fails
+     */
+    private static void reportDefaults(String name, List<File> files, int rounds, boolean zeroCopy)
+            throws Exception {
+        long totalNanos = 0;
+        AtomicLong cpuNanos = new AtomicLong();
+        for (int i = 0; i < rounds; i++) {
+            totalNanos += receive(files, zeroCopy, cpuNanos);
+        }
+        long batchSize = 0;
+        for (File file : files) {
+            batchSize += file.length();
+        }
+        double seconds = totalNanos / 1e9;
+        double mebibytes = (double) batchSize * rounds / (1024 * 1024);
+        System.out.printf("%-24s %10.1f MiB/s %10.0f files/s %8.0f sender CPU ms/GiB%n", name,
+                mebibytes / seconds, files.size() * rounds / seconds, cpuNanos.get() / 1e6 / (mebibytes / 1024));
+    }
+
+    /**
+     * Sends a batch once over loopback to a {@code MiniClient}, both with
+     * the default version 2 settings apart from the zero-copy mode
+     *
+     * @param files    Files to be sent
+     * @param zeroCopy Flag to select the zero-copy mode
+     * @param cpuNanos Counter the CPU time of the sending thread is added to
+     * @return Time taken in nanoseconds
+     * @throws Exception If the transfer fails
+     */
+    private static long receive(List<File> files, boolean zeroCopy, final AtomicLong cpuNanos) throws Exception {
+        File folder = Files.createTempDirectory("__TransferBenchmark__").toFile();
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Socket socket = MiniClient.connect(InetAddress.getLoopbackAddress().getHostAddress(),
+                serverSocket.getLocalPort());
+        TransferSettings settings = new TransferSettings();
+        settings.setZeroCopy(zeroCopy);
+        // Unique names, so that received files do not clash
+        List<String> fileNames = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            fileNames.add(i + "_" + files.get(i).getName());
+        }
+        final MiniServer miniServer = new MiniServer(serverSocket.accept(), files, fileNames, null, null, null,
+                false, settings);
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+                long start = threadMXBean.getCurrentThreadCpuTime();
+                miniServer.run();
+                cpuNanos.addAndGet(threadMXBean.getCurrentThreadCpuTime() - start);
+            }
+        });
+        long start = System.nanoTime();
+        sender.start();
+        new MiniClient(socket, folder.getPath(), new TransferSettings()).run();
+        sender.join();
+        long nanos = System.nanoTime() - start;
+        serverSocket.close();
+        File partialFolder = new File(folder, PartialStore.FOLDER);
+        File[] partials = partialFolder.listFiles();
+        if (partials != null) {
+            for (File partial : partials) {
+                partial.delete();
+            }
+        }
+        partialFolder.delete();
+        File[] received = folder.listFiles();
+        if (received == null || received.length != files.size()) {
+            throw new IOException("Batch not received");
+        }
+        for (File file : received) {
+            file.delete();
+        }
+        folder.delete();
+        return nanos;
+    }
+
+    /**
+     * Sends a batch once over loopback to a receiver which discards the data
+     *
+     * @param files    Files to be sent
+     * @param zeroCopy Flag to select the zero-copy mode
+     * @return Time taken in nanoseconds
+     * @throws Exception If the transfer fails
+     */
+    private static long send(List<File> files, boolean zeroCopy) throws Exception {
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        final SocketChannel receiver = SocketChannel.open(serverSocket.getLocalSocketAddress());
+        Thread drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InputStream inputStream = receiver.socket().getInputStream();
+                    byte[] buffer = new byte[1024 * 1024];
+                    while (inputStream.read(buffer) >= 0) {
+                        // Discard the data
+                    }
+                    receiver.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        drainer.start();
+        Socket socket = serverSocket.accept();
+        TransferSettings settings = new TransferSettings();
+        settings.setZeroCopy(zeroCopy);
+        // The draining receiver does not say hello, so skip waiting for it
+        settings.setProtocolVersion(Protocol.VERSION_1);
+        MiniServer miniServer = new MiniServer(socket, files, null, serverSocket, false, settings);
+        long start = System.nanoTime();
+        miniServer.run();
+        drainer.join();
+        return System.nanoTime() - start;
+    }
+}
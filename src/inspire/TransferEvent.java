@@ -0,0 +1,200 @@
+package inspire;
+
+/**
+ * A progress notification of a transfer or of the application, as
+ * published by an {@code EventSource}. Events are never changed once
+ * built, so a relay passes on the event it was given rather than a new
+ * one, and events which carry nothing but their type are built once.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see EventSource
+ * @see TransferListener
+ * @since 18-10-2026
+ */
+class TransferEvent {
+    /**
+     * Kinds of event
+     */
+    enum Type {
+        /**
+         * A file is being received (subject: file name)
+         */
+        FILE_RECEIVE_STARTED,
+        /**
+         * A file has been received (subject: file name)
+         */
+        FILE_RECEIVE_FINISHED,
+        /**
+         * A batch has been received (subject: host name of the sender, if known)
+         */
+        FILES_RECEIVED,
+        /**
+         * A receiver of the batch being received is known (subject: host name of the receiver)
+         */
+        RECEIVER_ADDED,
+        /**
+         * The manifest of the batch being received has been accepted (file count and byte count)
+         */
+        MANIFEST_RECEIVED,
+        /**
+         * A file is being sent (subject: file name)
+         */
+        FILE_SEND_STARTED,
+        /**
+         * A file has been sent (subject: file name)
+         */
+        FILE_SEND_FINISHED,
+        /**
+         * A batch has been sent (subject: host name of the receiver)
+         */
+        FILES_SENT,
+        /**
+         * A transfer broke off (subject: host name of the receiver)
+         */
+        TRANSFER_FAILED,
+        /**
+         * A batch is about to be sent
+         */
+        TRANSFER_STARTED,
+        /**
+         * A client has connected (subject: host name of the client)
+         */
+        CLIENT_CONNECTED,
+        /**
+         * The client list has changed
+         */
+        LIST_CHANGED,
+        /**
+         * The connection to the server has been lost
+         */
+        DISCONNECTED,
+        /**
+         * Bytes of a transfer have been sent or received (a {@code ProgressEvent})
+         */
+        PROGRESS
+    }
+
+    /**
+     * Events without a subject, one per type
+     */
+    private static final TransferEvent[] bareEvents = new TransferEvent[Type.values().length];
+
+    static {
+        for (Type type : Type.values()) {
+            bareEvents[type.ordinal()] = new TransferEvent(type, null);
+        }
+    }
+
+    /**
+     * Kind of event
+     */
+    private final Type type;
+    /**
+     * File or host name the event is about ({@code null} if none)
+     */
+    private final String subject;
+    /**
+     * Number of files (only used for {@code MANIFEST_RECEIVED})
+     */
+    private final int fileCount;
+    /**
+     * Number of bytes (only used for {@code MANIFEST_RECEIVED})
+     */
+    private final long byteCount;
+
+    /**
+     * Initialises an event about a file or a host
+     *
+     * @param type    Kind of event
+     * @param subject File or host name the event is about ({@code null} if none)
+     */
+    TransferEvent(Type type, String subject) {
+        this(type, subject, 0, 0);
+    }
+
+    /**
+     * Initialises an event with counts
+     *
+     * @param type      Kind of event
+     * @param subject   File or host name the event is about ({@code null} if none)
+     * @param fileCount Number of files
+     * @param byteCount Number of bytes
+     */
+    TransferEvent(Type type, String subject, int fileCount, long byteCount) {
+        this.type = type;
+        this.subject = subject;
+        this.fileCount = fileCount;
+        this.byteCount = byteCount;
+    }
+
+    /**
+     * Get the event of a type which carries nothing else
+     *
+     * @param type Kind of event
+     * @return Shared event of that type
+     */
+    static TransferEvent of(Type type) {
+        return bareEvents[type.ordinal()];
+    }
+
+    /**
+     * Get kind of event
+     *
+     * @return Kind of event
+     */
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * Get file or host name the event is about
+     *
+     * @return Subject ({@code null} if none)
+     */
+    String getSubject() {
+        return subject;
+    }
+
+    /**
+     * Get number of files
+     *
+     * @return File count (only set for {@code MANIFEST_RECEIVED})
+     */
+    int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Get number of bytes
+     *
+     * @return Byte count (only set for {@code MANIFEST_RECEIVED})
+     */
+    long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Formats the event as the string notified to {@code Observer}s:
+     * the code, followed by the subject, or the counts of a manifest
+     *
+     * @param code Code of the event's type for its publisher
+     * @return Notification string
+     */
+    String toNotification(char code) {
+        if (type == Type.MANIFEST_RECEIVED) {
+            return code + " " + fileCount + " " + byteCount;
+        }
+        return subject == null ? String.valueOf(code) : code + " " + subject;
+    }
+
+    /**
+     * Get string representation
+     *
+     * @return String representation
+     */
+    @Override
+    public String toString() {
+        return "TransferEvent[" + type + (subject == null ? "" : ", " + subject) + "]";
+    }
+}
@@ -0,0 +1,20 @@
+package inspire;
+
+/**
+ * Receives the events published by an {@code EventSource}. It is called
+ * on the thread which published the event, so it should return quickly.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see EventSource
+ * @see TransferEvent
+ * @since 18-10-2026
+ */
+interface TransferListener {
+    /**
+     * Called for every event published
+     *
+     * @param event The event
+     */
+    void onEvent(TransferEvent event);
+}
@@ -0,0 +1,528 @@
+package inspire;
+
+/**
+ * Tunable parameters shared by the {@code MiniServer} and
+ * {@code MiniClient} instances. The defaults can be overridden
+ * with system properties of the form {@code -Dinspire.<name>=<value>}.
+ *
+ * @author Abhinav Baid, Atishay Jain
+ * @version 1.0
+ * @see MiniServer
+ * @see MiniClient
+ * @since 18-10-2026
+ */
+class TransferSettings {
+    /**
+     * Settings used when none are passed explicitly
+     */
+    private static final TransferSettings defaultSettings = new TransferSettings();
+
+    /**
+     * Flag to indicate whether file bodies should be sent with
+     * {@code FileChannel.transferTo} when the socket has a channel
+     */
+    private volatile boolean zeroCopy;
+    /**
+     * Socket send buffer size in bytes (0 to keep the system default)
+     */
+    private volatile int sendBufferSize;
+    /**
+     * Flag to indicate whether Nagle's algorithm is disabled on transfer sockets
+     * (headers and small files are coalesced by the sender itself)
+     */
+    private volatile boolean tcpNoDelay;
+    /**
+     * Highest protocol version to offer or accept
+     */
+    private volatile int protocolVersion;
+    /**
+     * Time in milliseconds a receiver waits for the sender to speak
+     * first (as a version 1 sender does) before saying hello
+     */
+    private volatile int handshakeDelay;
+    /**
+     * Time in milliseconds a sender waits for the receiver's hello
+     * before falling back to version 1
+     */
+    private volatile int handshakeTimeout;
+    /**
+     * Flag to indicate whether batches start with a manifest (version 2 only)
+     */
+    private volatile boolean manifest;
+    /**
+     * Flag to indicate whether file bodies are compressed (version 2 only)
+     */
+    private volatile boolean compression;
+    /**
+     * Compression level to start a connection with (adapted while sending)
+     */
+    private volatile int compressionLevel;
+    /**
+     * Flag to indicate whether interrupted files are resumed (needs the manifest)
+     */
+    private volatile boolean resume;
+    /**
+     * Number of bytes a receiver writes between two commits of a resumable file
+     */
+    private volatile int checkpointInterval;
+    /**
+     * Age in milliseconds after which a partial file no manifest has named is deleted
+     */
+    private volatile long partialExpiry;
+    /**
+     * Number of worker threads the Server runs transfers and lookups on
+     */
+    private volatile int workerThreads;
+    /**
+     * Flag to indicate whether threads are virtual (where the runtime has them)
+     */
+    private volatile boolean virtualThreads;
+    /**
+     * Largest number of connections a file body is striped over (1 to send every body on one connection)
+     */
+    private volatile int maxStripes;
+    /**
+     * Smallest number of body bytes worth striping
+     */
+    private volatile long stripeThreshold;
+    /**
+     * Number of bytes in each range of a striped body
+     */
+    private volatile int stripeSegment;
+    /**
+     * Flag to indicate whether every chunk of a body is checked and repaired on its own
+     */
+    private volatile boolean chunkChecksums;
+    /**
+     * Number of buffers queued between the network and the disk on the receiving side (0 for no queue)
+     */
+    private volatile int writeQueueDepth;
+    /**
+     * Interval between progress events of a transfer in milliseconds (0 for none)
+     */
+    private volatile long progressInterval;
+
+    /**
+     * Constructs settings initialised from the system properties
+     */
+    TransferSettings() {
+        this.zeroCopy = Boolean.parseBoolean(System.getProperty("inspire.zeroCopy", "true"));
+        this.sendBufferSize = Integer.getInteger("inspire.sendBufferSize", 0);
+        this.tcpNoDelay = Boolean.parseBoolean(System.getProperty("inspire.tcpNoDelay", "true"));
+        this.protocolVersion = Integer.getInteger("inspire.protocolVersion", Protocol.LATEST_VERSION);
+        this.handshakeDelay = Integer.getInteger("inspire.handshakeDelay", 150);
+        this.handshakeTimeout = Integer.getInteger("inspire.handshakeTimeout", 2000);
+        this.manifest = Boolean.parseBoolean(System.getProperty("inspire.manifest", "true"));
+        this.compression = Boolean.parseBoolean(System.getProperty("inspire.compression", "true"));
+        this.compressionLevel = Integer.getInteger("inspire.compressionLevel", 6);
+        this.resume = Boolean.parseBoolean(System.getProperty("inspire.resume", "true"));
+        this.checkpointInterval = Integer.getInteger("inspire.checkpointInterval", 4 * 1024 * 1024);
+        this.partialExpiry = Long.getLong("inspire.partialExpiry", 7L * 24 * 60 * 60 * 1000);
+        this.workerThreads = Integer.getInteger("inspire.workerThreads", 16);
+        this.virtualThreads = Boolean.parseBoolean(System.getProperty("inspire.virtualThreads", "false"));
+        this.maxStripes = Integer.getInteger("inspire.maxStripes", 1);
+        this.stripeThreshold = Long.getLong("inspire.stripeThreshold", 64L * 1024 * 1024);
+        this.stripeSegment = Integer.getInteger("inspire.stripeSegment", 4 * 1024 * 1024);
+        this.chunkChecksums = Boolean.parseBoolean(System.getProperty("inspire.chunkChecksums", "true"));
+        this.writeQueueDepth = Integer.getInteger("inspire.writeQueueDepth", 4);
+        this.progressInterval = Long.getLong("inspire.progressInterval", 250);
+    }
+
+    /**
+     * Get the settings shared by all transfers which were not given their own
+     *
+     * @return Default settings
+     */
+    static TransferSettings getDefault() {
+        return defaultSettings;
+    }
+
+    /**
+     * Get zero-copy send flag
+     *
+     * @return {@code true} if file bodies are sent with {@code FileChannel.transferTo}
+     */
+    boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    /**
+     * Set zero-copy send flag
+     *
+     * @param zeroCopy {@code true} to send file bodies with {@code FileChannel.transferTo},
+     *                 {@code false} to copy them through a pooled buffer
+     */
+    void setZeroCopy(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    /**
+     * Get socket send buffer size
+     *
+     * @return Send buffer size in bytes (0 for the system default)
+     */
+    int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * Set socket send buffer size
+     *
+     * @param sendBufferSize Send buffer size in bytes (0 for the system default)
+     */
+    void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    /**
+     * Get TCP_NODELAY flag
+     *
+     * @return {@code true} if Nagle's algorithm is disabled on transfer sockets
+     */
+    boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Set TCP_NODELAY flag
+     *
+     * @param tcpNoDelay {@code true} to disable Nagle's algorithm on transfer sockets
+     */
+    void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * Get highest protocol version to offer or accept
+     *
+     * @return Protocol version
+     */
+    int getProtocolVersion() {
+        return Math.min(protocolVersion, Protocol.LATEST_VERSION);
+    }
+
+    /**
+     * Set highest protocol version to offer or accept
+     *
+     * @param protocolVersion Protocol version ({@code Protocol.VERSION_1} to disable the handshake)
+     */
+    void setProtocolVersion(int protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    /**
+     * Get time a receiver waits for the sender to speak first
+     *
+     * @return Delay in milliseconds
+     */
+    int getHandshakeDelay() {
+        return handshakeDelay;
+    }
+
+    /**
+     * Set time a receiver waits for the sender to speak first
+     *
+     * @param handshakeDelay Delay in milliseconds
+     */
+    void setHandshakeDelay(int handshakeDelay) {
+        this.handshakeDelay = handshakeDelay;
+    }
+
+    /**
+     * Get time a sender waits for the receiver's hello
+     *
+     * @return Timeout in milliseconds
+     */
+    int getHandshakeTimeout() {
+        return handshakeTimeout;
+    }
+
+    /**
+     * Set time a sender waits for the receiver's hello
+     *
+     * @param handshakeTimeout Timeout in milliseconds
+     */
+    void setHandshakeTimeout(int handshakeTimeout) {
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /**
+     * Get manifest flag
+     *
+     * @return {@code true} if batches start with a manifest
+     */
+    boolean isManifest() {
+        return manifest;
+    }
+
+    /**
+     * Set manifest flag
+     *
+     * @param manifest {@code true} to start batches with a manifest
+     */
+    void setManifest(boolean manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Get compression flag
+     *
+     * @return {@code true} if file bodies are compressed
+     */
+    boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Set compression flag
+     *
+     * @param compression {@code true} to compress file bodies
+     */
+    void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Get initial compression level
+     *
+     * @return Compression level (1 to 9)
+     */
+    int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Set initial compression level
+     *
+     * @param compressionLevel Compression level (1 to 9)
+     */
+    void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Get resume flag
+     *
+     * @return {@code true} if interrupted files are resumed from their last commit
+     */
+    boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Set resume flag
+     *
+     * @param resume {@code true} to resume interrupted files from their last commit
+     */
+    void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Get number of bytes written between two commits of a resumable file
+     *
+     * @return Checkpoint interval in bytes
+     */
+    int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Set number of bytes written between two commits of a resumable file
+     *
+     * @param checkpointInterval Checkpoint interval in bytes (rounded up to whole chunks)
+     */
+    void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Get age after which a partial file no manifest has named is deleted
+     *
+     * @return Expiry age in milliseconds
+     */
+    long getPartialExpiry() {
+        return partialExpiry;
+    }
+
+    /**
+     * Set age after which a partial file no manifest has named is deleted
+     *
+     * @param partialExpiry Expiry age in milliseconds
+     */
+    void setPartialExpiry(long partialExpiry) {
+        this.partialExpiry = partialExpiry;
+    }
+
+    /**
+     * Get number of worker threads the Server runs transfers and lookups on
+     *
+     * @return Number of worker threads
+     */
+    int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * Set number of worker threads the Server runs transfers and lookups on
+     * (read when a Server starts)
+     *
+     * @param workerThreads Number of worker threads
+     */
+    void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Get virtual threads flag
+     *
+     * @return {@code true} if threads started from now on are virtual (where the runtime has them)
+     */
+    boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Set virtual threads flag
+     *
+     * @param virtualThreads {@code true} to start virtual threads (where the runtime has them)
+     */
+    void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Get largest number of connections a file body is striped over
+     *
+     * @return Largest number of stripes (1 if bodies are not striped)
+     */
+    int getMaxStripes() {
+        return maxStripes;
+    }
+
+    /**
+     * Set largest number of connections a file body is striped over
+     * (striping is used only if both sides allow more than 1)
+     *
+     * @param maxStripes Largest number of stripes (1 to send every body on one connection)
+     */
+    void setMaxStripes(int maxStripes) {
+        this.maxStripes = maxStripes;
+    }
+
+    /**
+     * Get smallest number of body bytes worth striping
+     *
+     * @return Threshold in bytes
+     */
+    long getStripeThreshold() {
+        return stripeThreshold;
+    }
+
+    /**
+     * Set smallest number of body bytes worth striping
+     *
+     * @param stripeThreshold Threshold in bytes
+     */
+    void setStripeThreshold(long stripeThreshold) {
+        this.stripeThreshold = stripeThreshold;
+    }
+
+    /**
+     * Get number of bytes in each range of a striped body
+     *
+     * @return Range size in bytes
+     */
+    int getStripeSegment() {
+        return stripeSegment;
+    }
+
+    /**
+     * Set number of bytes in each range of a striped body
+     *
+     * @param stripeSegment Range size in bytes
+     */
+    void setStripeSegment(int stripeSegment) {
+        this.stripeSegment = stripeSegment;
+    }
+
+    /**
+     * Get chunk checksums flag
+     *
+     * @return {@code true} if every chunk of a body is checked and repaired on its own
+     */
+    boolean isChunkChecksums() {
+        return chunkChecksums;
+    }
+
+    /**
+     * Set chunk checksums flag (used only with resume)
+     *
+     * @param chunkChecksums {@code true} to check and repair every chunk of a body on its own
+     */
+    void setChunkChecksums(boolean chunkChecksums) {
+        this.chunkChecksums = chunkChecksums;
+    }
+
+    /**
+     * Get number of buffers queued between the network and the disk on the receiving side
+     *
+     * @return Queue depth (0 if the network thread writes to the disk itself)
+     */
+    int getWriteQueueDepth() {
+        return writeQueueDepth;
+    }
+
+    /**
+     * Set number of buffers queued between the network and the disk on the receiving side
+     *
+     * @param writeQueueDepth Queue depth (0 for the network thread to write to the disk itself)
+     */
+    void setWriteQueueDepth(int writeQueueDepth) {
+        this.writeQueueDepth = writeQueueDepth;
+    }
+
+    /**
+     * Get interval between progress events of a transfer
+     *
+     * @return Interval in milliseconds (0 if no progress events are published)
+     */
+    long getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * Set interval between progress events of a transfer, which bounds
+     * their rate whatever the rate of the chunks
+     *
+     * @param progressInterval Interval in milliseconds (0 to publish no progress events)
+     */
+    void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Get the protocol features to offer or accept in the handshake
+     *
+     * @return Bitmask of {@code Protocol.FEATURE_*} values
+     */
+    long getFeatures() {
+        long features = 0;
+        if (manifest) {
+            features |= Protocol.FEATURE_MANIFEST;
+            if (resume) {
+                features |= Protocol.FEATURE_RESUME;
+                if (chunkChecksums) {
+                    features |= Protocol.FEATURE_CHUNK_CRC;
+                }
+            }
+            if (maxStripes > 1) {
+                features |= Protocol.FEATURE_STRIPE;
+            }
+        }
+        if (compression) {
+            features |= Protocol.FEATURE_DEFLATE;
+        }
+        return features & Protocol.SUPPORTED_FEATURES;
+    }
+}